@@ -0,0 +1,157 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import org.realtors.rets.server.metadata.MetadataManager;
+
+/**
+ * Keeps recently rendered GetMetadata responses, so the same metadata is
+ * not formatted again for every client that logs in.  A response is keyed
+ * by everything that goes into rendering it: the metadata type and IDs,
+ * the format, the RETS version, whether it is recursive, the groups of the
+ * user, and the version and date of the system metadata.  See
+ * {@link GetMetadataTransaction#getCacheKey}.
+ * <p>
+ * Responses are only used with the metadata manager they were rendered
+ * from, and the cache is cleared whenever the metadata or configuration
+ * changes.  The cache holds at most a fixed number of characters, and the
+ * least recently used responses are evicted to make room.  Responses larger
+ * than a fraction of the budget are never cached.
+ */
+public class GetMetadataCache
+{
+    public GetMetadataCache(long maxChars)
+    {
+        mMaxChars = maxChars;
+        mMaxResponseChars = maxChars / MAX_RESPONSE_FRACTION;
+        mResponses = new LinkedHashMap<String, String>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a rendered response, or <code>null</code> if it has not been
+     * rendered from this metadata since the cache was last cleared.
+     *
+     * @param metadataManager metadata the response is rendered from
+     * @param key cache key of the request
+     * @return the rendered response, or <code>null</code>
+     */
+    public synchronized String get(MetadataManager metadataManager,
+                                   String key)
+    {
+        if (metadataManager != mMetadataManager)
+        {
+            clear();
+            mMetadataManager = metadataManager;
+        }
+        String response = mResponses.get(key);
+        if (response == null)
+        {
+            mMisses++;
+        }
+        else
+        {
+            mHits++;
+        }
+        return response;
+    }
+
+    public synchronized void put(MetadataManager metadataManager, String key,
+                                 String response)
+    {
+        if ((metadataManager != mMetadataManager) ||
+            (response.length() > mMaxResponseChars))
+        {
+            return;
+        }
+        remove(key);
+        mResponses.put(key, response);
+        mChars += response.length();
+        Iterator<String> eldest = mResponses.values().iterator();
+        while (mChars > mMaxChars)
+        {
+            mChars -= eldest.next().length();
+            eldest.remove();
+            mEvictions++;
+        }
+    }
+
+    private void remove(String key)
+    {
+        String response = mResponses.remove(key);
+        if (response != null)
+        {
+            mChars -= response.length();
+        }
+    }
+
+    public synchronized void clear()
+    {
+        mResponses.clear();
+        mChars = 0;
+    }
+
+    /**
+     * Returns the number of responses cached.
+     */
+    public synchronized int size()
+    {
+        return mResponses.size();
+    }
+
+    /**
+     * Returns the total length of the responses cached, in characters.
+     */
+    public synchronized long getChars()
+    {
+        return mChars;
+    }
+
+    public synchronized long getHits()
+    {
+        return mHits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return mMisses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return mEvictions;
+    }
+
+    public synchronized String toString()
+    {
+        return new ToStringBuilder(this, Util.SHORT_STYLE)
+            .append("responses", mResponses.size())
+            .append("chars", mChars)
+            .append("max chars", mMaxChars)
+            .append("hits", mHits)
+            .append("misses", mMisses)
+            .append("evictions", mEvictions)
+            .toString();
+    }
+
+    /** Responses larger than this fraction of the cache are not cached. */
+    private static final int MAX_RESPONSE_FRACTION = 4;
+
+    private long mMaxChars;
+    private long mMaxResponseChars;
+    private MetadataManager mMetadataManager;
+    private Map<String, String> mResponses;
+    private long mChars;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+}
@@ -11,9 +11,14 @@
 package org.realtors.rets.server;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.StopWatch;
 import org.apache.log4j.Logger;
 
@@ -25,6 +30,7 @@ import org.realtors.rets.server.metadata.format.ClassFormatterLookup;
 import org.realtors.rets.server.metadata.format.FormatterLookup;
 import org.realtors.rets.server.metadata.format.MetadataFormatter;
 import org.realtors.rets.server.metadata.format.MutableFormatterContext;
+import org.realtors.rets.server.protocol.TableGroupFilter;
 import org.hibernate.HibernateException;
 
 public class GetMetadataTransaction
@@ -32,28 +38,118 @@ public class GetMetadataTransaction
     public GetMetadataTransaction(PrintWriter out,
                                   GetMetadataParameters parameters,
                                   MetadataManager metadataManager,
+                                  TableGroupFilter tableGroupFilter,
                                   RetsVersion retsVersion)
     {
         mOut = out;
         mParameters = parameters;
         mMetadataManager = metadataManager;
+        mTableGroupFilter = tableGroupFilter;
         mRetsVersion = retsVersion;
     }
 
     public void execute()
         throws RetsServerException
     {
-        // Fetch metadata before starting to print, so any exceptions can be
-        // handled and reported to the user better.
-        String type = mParameters.getType();
-        String[] ids = mParameters.getIds();
-        List<MetadataSegment> segments = mMetadataManager.fetchMetadata(type, ids);
+        GetMetadataCache cache = RetsServer.getGetMetadataCache();
+        String key = null;
+        String metadata = null;
+        if (cache != null)
+        {
+            key = getCacheKey();
+            metadata = cache.get(mMetadataManager, key);
+        }
+
+        if (metadata == null)
+        {
+            // Fetch metadata before starting to print, so any exceptions can
+            // be handled and reported to the user better.
+            String type = mParameters.getType();
+            String[] ids = mParameters.getIds();
+            List<MetadataSegment> segments =
+                mMetadataManager.fetchMetadata(type, ids);
+            if (cache == null)
+            {
+                printHeaders();
+                printMetadata(segments, mOut);
+                printFooters();
+                return;
+            }
+            StringWriter writer = new StringWriter();
+            printMetadata(segments, new PrintWriter(writer));
+            metadata = writer.toString();
+            cache.put(mMetadataManager, key, metadata);
+        }
 
         printHeaders();
-        printMetadata(segments);
+        mOut.print(metadata);
         printFooters();
     }
 
+    /**
+     * Returns the key of the rendered response in the
+     * {@link GetMetadataCache}.  It holds everything the response depends
+     * on, including the version and date of the system metadata, so a
+     * response is never mistaken for one rendered from other metadata.
+     *
+     * @return the cache key
+     * @throws RetsServerException if the user's groups could not be read
+     */
+    public String getCacheKey() throws RetsServerException
+    {
+        StringBuffer key = new StringBuffer();
+        SortedSet groups = getGroups();
+        if (groups != null)
+        {
+            for (Iterator i = groups.iterator(); i.hasNext();)
+            {
+                key.append(((Group) i.next()).getName()).append(',');
+            }
+        }
+        key.append('\n');
+        key.append(mParameters.getType()).append('\n');
+        key.append(StringUtils.join(mParameters.getIds(), ':')).append('\n');
+        key.append(mParameters.getFormat()).append('\n');
+        key.append(mParameters.isRecursive()).append('\n');
+        key.append(mRetsVersion).append('\n');
+        key.append(mMetadataManager.getSystemVersion()).append('\n');
+        Date systemDate = mMetadataManager.getSystemDate();
+        key.append((systemDate == null) ? 0 : systemDate.getTime());
+        return key.toString();
+    }
+
+    /**
+     * Returns an HTTP entity tag for the response, so clients can ask for
+     * metadata only if it has changed since they last fetched it.  It
+     * changes whenever the metadata version or date changes, and whenever
+     * the configuration is loaded, as the tables and fields a group sees
+     * may change without the metadata version changing.
+     *
+     * @return a quoted entity tag
+     * @throws RetsServerException if the user's groups could not be read
+     */
+    public String getEntityTag() throws RetsServerException
+    {
+        String tag = getCacheKey() + "\n" + RetsServer.getCacheGeneration();
+        return "\"" + DigestUtils.md5Hex(tag) + "\"";
+    }
+
+    private SortedSet getGroups() throws RetsServerException
+    {
+        if (mGroups == null)
+        {
+            try
+            {
+                mGroups = UserUtils.getGroups(mParameters.getUser());
+            }
+            catch (HibernateException e)
+            {
+                throw new RetsServerException(e);
+            }
+        }
+        return mGroups;
+    }
+
     private void printHeaders()
     {
         RetsUtils.printXmlHeader(mOut);
@@ -64,7 +160,9 @@ public class GetMetadataTransaction
         }
     }
 
-    private void printMetadata(List<MetadataSegment> segments) throws RetsServerException
+    private void printMetadata(List<MetadataSegment> segments,
+                               PrintWriter out)
+        throws RetsServerException
     {
         try
         {
@@ -75,12 +173,10 @@ public class GetMetadataTransaction
             stopWatch.start();
             MutableFormatterContext context = new MutableFormatterContext();
             context.setRecursive(mParameters.isRecursive());
-            context.setWriter(mOut);
+            context.setWriter(out);
             context.setLookup(lookup);
-            User user = mParameters.getUser();
-            SortedSet groups = UserUtils.getGroups(user);
-            context.setTableFilter(RetsServer.getTableGroupFilter(),
-                                   groups);
+            SortedSet groups = getGroups();
+            context.setTableFilter(mTableGroupFilter, groups);
             for (int i = 0; i < segments.size(); i++)
             {
                 MetadataSegment segment = segments.get(i);
@@ -112,5 +208,7 @@ public class GetMetadataTransaction
     private PrintWriter mOut;
     private GetMetadataParameters mParameters;
     private MetadataManager mMetadataManager;
+    private TableGroupFilter mTableGroupFilter;
     private RetsVersion mRetsVersion;
+    private SortedSet mGroups;
 }
@@ -346,7 +346,23 @@ public class IOUtils
                                   int bufferSize)
         throws IOException
     {
-        byte[] buffer = new byte[bufferSize];
+        copyStream(source, destination, new byte[bufferSize]);
+    }
+
+    /**
+     * Copies the contents of an input stream to an output stream, using a
+     * buffer supplied by the caller, so one buffer may be used for many
+     * copies.  The output stream is not closed or flushed upon completion.
+     *
+     * @param source stream to copy from
+     * @param destination stream to copy to
+     * @param buffer buffer used when reading
+     * @throws IOException if an error occurs
+     */
+    public static void copyStream(InputStream source, OutputStream destination,
+                                  byte[] buffer)
+        throws IOException
+    {
         int bytesRead;
         while ((bytesRead = source.read(buffer)) != -1)
         {
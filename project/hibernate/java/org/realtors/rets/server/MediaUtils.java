@@ -7,7 +7,11 @@
  */
 package org.realtors.rets.server;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
@@ -214,6 +218,78 @@ public class MediaUtils
         return query.list();
     }
 
+    /**
+     * Find the Media of many Resource Keys at once, in one session.
+     * @param mediaType A String containing the media type well known name.
+     * @param resourceKeys The Resource Keys.
+     * @return A Map from each Resource Key to its List of <code>Media</code>s,
+     *         ordered by object ID. Resource Keys with no Media are left out.
+     * @throws HibernateException
+     */
+    public static Map<String, List<Media>> findByResourceKeys(String mediaType, Collection<String> resourceKeys)
+        throws HibernateException
+    {
+        SessionHelper helper = RetsServer.createSessionHelper();
+        try
+        {
+            return findByResourceKeys(mediaType, resourceKeys, helper);
+        }
+        finally
+        {
+            helper.close(LOG);
+        }
+    }
+
+    /**
+     * Find the Media of many Resource Keys at once, with an <code>IN</code>
+     * query for every <code>MAX_KEYS_PER_QUERY</code> keys.
+     * @param mediaType A String containing the media type well known name.
+     * @param resourceKeys The Resource Keys.
+     * @param helper The <code>SessionHelper</code> for this database session.
+     * @return A Map from each Resource Key to its List of <code>Media</code>s,
+     *         ordered by object ID. Resource Keys with no Media are left out.
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, List<Media>> findByResourceKeys(String mediaType, Collection<String> resourceKeys,
+                                                              SessionHelper helper)
+        throws HibernateException
+    {
+        Map<String, List<Media>> mediaByResourceKey = new LinkedHashMap<String, List<Media>>();
+        List<String> keys = new ArrayList<String>(resourceKeys);
+        for (int start = 0; start < keys.size(); start += MAX_KEYS_PER_QUERY)
+        {
+            List<String> batch = keys.subList(start, Math.min(keys.size(), start + MAX_KEYS_PER_QUERY));
+            Query query = helper.createQuery(
+                " From Media aMedia " +
+                "WHERE aMedia.mediaKey.resourceKey in (:resourceKeys) " +
+                "and aMedia.mediaKey.mediaType = :mediaType " +
+                "order by aMedia.mediaKey.resourceKey, aMedia.mediaKey.objectID");
+            query.setParameterList("resourceKeys", batch);
+            query.setString("mediaType", mediaType);
+            LOG.debug("Query: " + query.toString() + ", resourceKeys: " + batch.size());
+            List<Media> media = query.list();
+            for (Media aMedia : media)
+            {
+                String resourceKey = aMedia.getMediaKey().getResourceKey();
+                List<Media> list = mediaByResourceKey.get(resourceKey);
+                if (list == null)
+                {
+                    list = new ArrayList<Media>();
+                    mediaByResourceKey.put(resourceKey, list);
+                }
+                list.add(aMedia);
+            }
+        }
+        return mediaByResourceKey;
+    }
+
+    /**
+     * Most databases limit the size of an <code>IN</code> list, for example
+     * to 1000 on Oracle and 2100 parameters on SQL Server.
+     */
+    private static final int MAX_KEYS_PER_QUERY = 500;
+
     private static final Logger LOG =
         Logger.getLogger(MediaUtils.class);
 }
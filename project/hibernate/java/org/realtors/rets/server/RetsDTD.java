@@ -13,10 +13,17 @@ import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.DailyRollingFileAppender;
@@ -52,12 +59,22 @@ import com.wutka.dtd.DTDSequence;
 public class RetsDTD
 {
     private static String                           sBastPath;
-    private static Map<RetsVersion, RetsDTD>        sRetsDTDMap = new LinkedHashMap<RetsVersion, RetsDTD>();
+    /**
+     * The loaded DTDs.  The map is never modified once published, so
+     * searches can read it without locking.  It is replaced, while holding
+     * <code>sLoadLock</code>, whenever a DTD is loaded.
+     */
+    private static volatile Map<RetsVersion, RetsDTD> sRetsDTDMap = Collections.emptyMap();
+    private static final Object                     sLoadLock = new Object();
+    private static volatile long                    sNextChangeCheck = 0;
     
     private static final Logger LOG = Logger.getLogger(RetsDTD.class);
 
     private Map<String, RetsDTDElement>     mElementMap;
     private Map<String, RetsDTDElement>     mElementMetadataMap;
+    private volatile Map<String, RetsDTDElement> mPublishedMetadataMap = Collections.emptyMap();
+    private File                            mFile;
+    private long                            mLastModified;
     private int                             mLevel = 0;
     private MetadataManager                 mMetadataManager;
     private PrintWriter                     mOut = null;
@@ -67,6 +84,14 @@ public class RetsDTD
     
     private static final Map<String, String> RESOURCES_MAP;
 
+    /** The RETS versions whose DTDs are loaded at startup. */
+    private static final RetsVersion[] SUPPORTED_VERSIONS = {
+        RetsVersion.RETS_1_0, RetsVersion.RETS_1_5, RetsVersion.RETS_1_7,
+        RetsVersion.RETS_1_7_2};
+
+    /** How often, in milliseconds, to check whether a DTD file changed. */
+    private static final long CHANGE_CHECK_INTERVAL = 60 * 1000;
+
     static
     {
         RESOURCES_MAP = new HashMap<String, String>();
@@ -102,6 +127,21 @@ public class RetsDTD
         else
             loadDTD("REData-20080829.dtd");
     }
+    /**
+     * Add all the DTD Elements to the standard names map. The map is shared by
+     * all DTDs, so this is done when the DTD is published instead of while it
+     * is being parsed.
+     */
+    private void addToStandardNames()
+    {
+        /*
+         * Everything in the DTD can be considered a "StandardName", so add them to the
+         * StandardNames table. We can ignore the root element.
+         */
+        for (RetsDTDElement child : mElementMap.get(mRootElementName).getChildren())
+            addToStandardNames(child, null);
+    }
+    
     /**
      * Add the DTD Element and path to to the standard names map. This is a recursive 
      * procedure. 
@@ -331,29 +371,141 @@ public class RetsDTD
     
     /**
      * Return the <code>RetsDTD</code> for the given <code>RetsVersion</code>.
+     * DTDs that are already loaded are returned without locking.
      * @param retsVersion The <code>RetsVersion</code>.
      * @return The <code>RetsDTD</code>.
      * @throws RetsServerException
      */   
-    public static synchronized RetsDTD getRetsDTD(RetsVersion retsVersion) throws RetsServerException
+    public static RetsDTD getRetsDTD(RetsVersion retsVersion) throws RetsServerException
     {
-        RetsDTD retsDTD = null;
+        reloadChangedDTDs();
         
-        StandardNameManager.loadStandardNames();
+        RetsDTD retsDTD = sRetsDTDMap.get(retsVersion);
+        if (retsDTD != null)
+            return retsDTD;
         
-        synchronized(sRetsDTDMap)
+        synchronized (sLoadLock)
         {
             retsDTD = sRetsDTDMap.get(retsVersion);
             if (retsDTD == null)
             {
+                StandardNameManager.loadStandardNames();
                 retsDTD = new RetsDTD(retsVersion);
-                sRetsDTDMap.put(retsVersion, retsDTD);
-                retsDTD.syncDTDToMetadata();
+                publish(retsDTD);
             }
         }
         return retsDTD;
     }
     
+    /**
+     * Load the DTDs of all supported RETS versions that are not loaded yet.
+     * The DTDs are parsed in parallel, so this is meant to be called at
+     * startup, before the first STANDARD-XML search.
+     * @throws RetsServerException if a DTD could not be loaded
+     */
+    public static void preloadRetsDTDs() throws RetsServerException
+    {
+        synchronized (sLoadLock)
+        {
+            StandardNameManager.loadStandardNames();
+            
+            List<Future<RetsDTD>> futures = new ArrayList<Future<RetsDTD>>();
+            ExecutorService executor =
+                Executors.newFixedThreadPool(SUPPORTED_VERSIONS.length);
+            try
+            {
+                for (final RetsVersion retsVersion : SUPPORTED_VERSIONS)
+                {
+                    if (sRetsDTDMap.containsKey(retsVersion))
+                        continue;
+                    
+                    futures.add(executor.submit(new Callable<RetsDTD>()
+                    {
+                        public RetsDTD call() throws RetsServerException
+                        {
+                            return new RetsDTD(retsVersion);
+                        }
+                    }));
+                }
+                /*
+                 * Standard names and metadata are shared, so the parsed DTDs are
+                 * published one at a time, in version order.
+                 */
+                for (Future<RetsDTD> future : futures)
+                    publish(future.get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RetsServerException("Interrupted loading DTDs", e);
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof RetsServerException)
+                    throw (RetsServerException) e.getCause();
+                throw new RetsServerException(e.getCause());
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Make a newly loaded DTD available to searches. Must be called while
+     * holding <code>sLoadLock</code>.
+     * @param retsDTD The <code>RetsDTD</code> to publish.
+     */
+    private static void publish(RetsDTD retsDTD)
+    {
+        retsDTD.addToStandardNames();
+        retsDTD.syncDTDToMetadata();
+        
+        Map<RetsVersion, RetsDTD> retsDTDMap =
+            new LinkedHashMap<RetsVersion, RetsDTD>(sRetsDTDMap);
+        retsDTDMap.put(retsDTD.mRetsVersion, retsDTD);
+        sRetsDTDMap = Collections.unmodifiableMap(retsDTDMap);
+    }
+    
+    /**
+     * Reload any DTD whose file has changed since it was loaded. The files
+     * are only checked once every <code>CHANGE_CHECK_INTERVAL</code>.
+     */
+    private static void reloadChangedDTDs()
+    {
+        long now = System.currentTimeMillis();
+        if (now < sNextChangeCheck)
+            return;
+        
+        synchronized (sLoadLock)
+        {
+            if (now < sNextChangeCheck)
+                return;
+            sNextChangeCheck = now + CHANGE_CHECK_INTERVAL;
+            
+            for (RetsDTD retsDTD : sRetsDTDMap.values())
+            {
+                if (retsDTD.mFile.lastModified() == retsDTD.mLastModified)
+                    continue;
+                
+                LOG.info("Reloading changed DTD " + retsDTD.mFile);
+                try
+                {
+                    publish(new RetsDTD(retsDTD.mRetsVersion));
+                }
+                catch (RetsServerException e)
+                {
+                    /*
+                     * Keep using the old DTD. The file may be half written, so
+                     * it is tried again on the next check.
+                     */
+                    LOG.warn("Unable to reload DTD " + retsDTD.mFile, e);
+                }
+            }
+        }
+    }
+    
     /**
      * Fetch the <code>RetsDTDElement</code> for the given Element Name. This is
      * from the intersection of the DTD and the metadata.
@@ -362,7 +514,7 @@ public class RetsDTD
      */
     public RetsDTDElement getDTDElement(String elementName)
     {
-        return mElementMetadataMap.get(elementName);
+        return mPublishedMetadataMap.get(elementName);
     }
     
     /**
@@ -459,6 +611,8 @@ public class RetsDTD
             configFile = sBastPath + FS + "WEB-INF" + FS + "rets" + FS + filename;
         
         LOG.debug ("Loading DTD " + configFile);
+        mFile = new File(configFile);
+        mLastModified = mFile.lastModified();
         
         try
         {
@@ -498,13 +652,6 @@ public class RetsDTD
             RetsDTDElement rootRetsDTDElement = mElementMap.get(mRootElementName);
     
             linkDTDItem(rootRetsDTDElement.getElement().getContent(), rootRetsDTDElement);
-            
-            /*
-             * Everything in the DTD can be considered a "StandardName", so add them to the
-             * StandardNames table. We can ignore the root element.
-             */
-            for (RetsDTDElement child : rootRetsDTDElement.getChildren())
-                addToStandardNames(child, null);
         }
         catch (Exception e)
         {
@@ -621,7 +768,7 @@ public class RetsDTD
      */
     public static void metadataChanged()
     {
-        synchronized (sRetsDTDMap)
+        synchronized (sLoadLock)
         {
             for (RetsDTD retsDTD : sRetsDTDMap.values())
                 retsDTD.syncDTDToMetadata();
@@ -790,8 +937,10 @@ public class RetsDTD
      */
     private void syncDTDToMetadata()
     {
+        // The manager is replaced when the configuration is reloaded
+        mMetadataManager = RetsServer.getMetadataManager();
         mSystem = mMetadataManager.getSystem();
-        mElementMetadataMap.clear();
+        mElementMetadataMap = new LinkedHashMap<String, RetsDTDElement>();
         RetsDTDElement rootRetsDTDElement = mElementMap.get(mRootElementName).clone();
 
         matchMetadataToDTD(mSystem, null);
@@ -815,6 +964,7 @@ public class RetsDTD
          * compliant with the DTD, the elements in the map must now be reordered into DTD order.
          */
         reorderMetadata();
+        mPublishedMetadataMap = mElementMetadataMap;
         
         if (LOG.isDebugEnabled())
         {
@@ -13,6 +13,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.hibernate.SessionFactory;
 import org.realtors.rets.common.metadata.Metadata;
@@ -21,6 +22,7 @@ import org.realtors.rets.common.metadata.types.MClass;
 import org.realtors.rets.common.metadata.types.MResource;
 import org.realtors.rets.common.metadata.types.MSystem;
 import org.realtors.rets.common.metadata.types.MTable;
+import org.realtors.rets.server.config.DatabaseConfig;
 import org.realtors.rets.server.config.GroupRules;
 import org.realtors.rets.server.config.RetsConfig;
 import org.realtors.rets.server.config.RetsConfigDao;
@@ -29,8 +31,15 @@ import org.realtors.rets.server.metadata.MetadataDao;
 import org.realtors.rets.server.metadata.MetadataManager;
 import org.realtors.rets.server.metadata.StandardNameDao;
 import org.realtors.rets.server.protocol.ConditionRuleSet;
+import org.realtors.rets.server.protocol.CountCache;
+import org.realtors.rets.server.protocol.DerivedObjectGenerator;
+import org.realtors.rets.server.protocol.DmqlPlanCache;
+import org.realtors.rets.server.protocol.KeysetCursorTable;
+import org.realtors.rets.server.protocol.ObjectCache;
+import org.realtors.rets.server.protocol.ObjectSetCache;
 import org.realtors.rets.server.protocol.ObjectSet;
 import org.realtors.rets.server.protocol.SearchTransaction;
+import org.realtors.rets.server.protocol.ServerDmqlMetadataCache;
 import org.realtors.rets.server.protocol.TableGroupFilter;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
@@ -92,59 +101,215 @@ public class RetsServer implements ApplicationContextAware
     public static void setTableGroupFilter(TableGroupFilter tableGroupFilter)
     {
         synchronized (sLock) {
-            sTableGroupFilter = tableGroupFilter;
+            sSnapshot = sSnapshot.withTableGroupFilter(tableGroupFilter);
         }
     }
 
     public static TableGroupFilter getTableGroupFilter()
     {
-        synchronized (sLock) {
-            return sTableGroupFilter;
-        }
+        return sSnapshot.getTableGroupFilter();
     }
 
     public static void setConditionRuleSet(ConditionRuleSet conditionRuleSet)
     {
         synchronized (sLock) {
-            sConditionRuleSet = conditionRuleSet;
+            sSnapshot = sSnapshot.withConditionRuleSet(conditionRuleSet);
         }
     }
 
     public static ConditionRuleSet getConditionRuleSet()
     {
-        synchronized (sLock) {
-            return sConditionRuleSet;
-        }
+        return sSnapshot.getConditionRuleSet();
     }
 
     public static void setSecurityConstraints(
         SecurityConstraints securityConstraints)
     {
         synchronized (sLock) {
-            sSecurityConstraints = securityConstraints;
+            sSnapshot =
+                sSnapshot.withSecurityConstraints(securityConstraints);
         }
     }
 
     public static SecurityConstraints getSecurityConstraints() {
+        return sSnapshot.getSecurityConstraints();
+    }
+
+    /**
+     * Returns the configuration and the objects built from it, as they were
+     * when last published.  Requests that need more than one of them should
+     * take the snapshot once, so they do not mix objects from before and
+     * after a reload.
+     *
+     * @return the current snapshot, never <code>null</code>
+     */
+    public static ServerSnapshot getSnapshot()
+    {
+        return sSnapshot;
+    }
+
+    public static QueryCountTable getQueryCountTable()
+    {
+        return sQueryCountTable;
+    }
+
+    public static void setQueryCountTable(QueryCountTable queryCountTable)
+    {
         synchronized (sLock) {
-            return sSecurityConstraints;
+            sQueryCountTable = queryCountTable;
         }
     }
 
-    public static QueryCountTable getQueryCountTable()
+    public static KeysetCursorTable getKeysetCursorTable()
+    {
+        return sKeysetCursorTable;
+    }
+
+    public static void setKeysetCursorTable(
+        KeysetCursorTable keysetCursorTable)
     {
         synchronized (sLock) {
-            return sQueryCountTable;
+            sKeysetCursorTable = keysetCursorTable;
         }
     }
 
-    public static void setQueryCountTable(QueryCountTable queryCountTable)
+    public static CountCache getCountCache()
+    {
+        return sCountCache;
+    }
+
+    public static void setCountCache(CountCache countCache)
     {
         synchronized (sLock) {
-            sQueryCountTable = queryCountTable;
+            sCountCache = countCache;
+        }
+    }
+
+    public static DmqlPlanCache getDmqlPlanCache()
+    {
+        return sDmqlPlanCache;
+    }
+
+    public static void setDmqlPlanCache(DmqlPlanCache dmqlPlanCache)
+    {
+        synchronized (sLock) {
+            sDmqlPlanCache = dmqlPlanCache;
         }
     }
 
+    public static ServerDmqlMetadataCache getDmqlMetadataCache()
+    {
+        return sDmqlMetadataCache;
+    }
+
+    public static void setDmqlMetadataCache(
+        ServerDmqlMetadataCache dmqlMetadataCache)
+    {
+        synchronized (sLock) {
+            sDmqlMetadataCache = dmqlMetadataCache;
+        }
+    }
+
+    /**
+     * Returns the cache of object files for GetObject, or <code>null</code>
+     * if objects are not cached.
+     */
+    public static ObjectCache getObjectCache()
+    {
+        return sObjectCache;
+    }
+
+    public static void setObjectCache(ObjectCache objectCache)
+    {
+        synchronized (sLock) {
+            sObjectCache = objectCache;
+        }
+    }
+
+    /**
+     * Returns the cache of parsed object sets and missing object files for
+     * GetObject, or <code>null</code> if object sets are not cached.
+     */
+    public static ObjectSetCache getObjectSetCache()
+    {
+        return sObjectSetCache;
+    }
+
+    public static void setObjectSetCache(ObjectSetCache objectSetCache)
+    {
+        synchronized (sLock) {
+            sObjectSetCache = objectSetCache;
+        }
+    }
+
+    /**
+     * Returns the cache of rendered GetMetadata responses, or
+     * <code>null</code> if responses are not cached.
+     */
+    public static GetMetadataCache getGetMetadataCache()
+    {
+        return sGetMetadataCache;
+    }
+
+    public static void setGetMetadataCache(GetMetadataCache getMetadataCache)
+    {
+        synchronized (sLock) {
+            sGetMetadataCache = getMetadataCache;
+        }
+    }
+
+    /**
+     * Returns the generator of derived GetObject types, such as thumbnails,
+     * or <code>null</code> if no types are derived.
+     */
+    public static DerivedObjectGenerator getDerivedObjectGenerator()
+    {
+        return sDerivedObjectGenerator;
+    }
+
+    public static void setDerivedObjectGenerator(
+        DerivedObjectGenerator derivedObjectGenerator)
+    {
+        DerivedObjectGenerator oldGenerator;
+        synchronized (sLock) {
+            oldGenerator = sDerivedObjectGenerator;
+            sDerivedObjectGenerator = derivedObjectGenerator;
+        }
+        if (oldGenerator != null)
+        {
+            oldGenerator.shutdown();
+        }
+    }
+
+    /**
+     * Discards the parsed queries and DMQL metadata cached for searches,
+     * and the rendered GetMetadata responses.  They refer to the metadata
+     * and table groups in effect when they were created, so they must be
+     * cleared whenever either changes.
+     */
+    public static void clearSearchCaches()
+    {
+        synchronized (sLock) {
+            sCacheGeneration++;
+            sDmqlPlanCache.clear();
+            sDmqlMetadataCache.clear();
+            if (sGetMetadataCache != null)
+            {
+                sGetMetadataCache.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns a number that changes every time the search caches are
+     * cleared.  It starts from the time the server started, so it also
+     * changes when the server is restarted.
+     */
+    public static long getCacheGeneration()
+    {
+        return sCacheGeneration;
+    }
+
     public void setApplicationContext(ApplicationContext applicationContext)
         throws BeansException
     {
@@ -173,38 +338,111 @@ public class RetsServer implements ApplicationContextAware
         }
     }
 
+    /**
+     * Loads a configuration.  The metadata, table group filter and condition
+     * rules are built before anything is changed, and published together
+     * with the configuration in one step, so requests carry on with the old
+     * snapshot while the new one is built.
+     *
+     * @param retsConfig configuration to load
+     * @throws RetsServerException if the metadata could not be loaded
+     */
     public static void setRetsConfiguration(RetsConfig retsConfig) throws RetsServerException
     {
-        synchronized (sLock)
+        synchronized (sReloadLock)
         {
-            sRetsConfig = retsConfig;
-            setSecurityConstraints(retsConfig.getSecurityConstraints());
-
             ConditionRuleSet ruleSet = getConditionRuleSet(retsConfig);
-            setConditionRuleSet(ruleSet);
-
             MetadataManager manager = createMetadataManager();
-            sMetadataManager = manager;
-
             TableGroupFilter groupFilter = getTableGroupFilter(retsConfig, manager);
-            setTableGroupFilter(groupFilter);
+            ServerSnapshot snapshot = new ServerSnapshot(
+                retsConfig, manager, groupFilter, ruleSet,
+                retsConfig.getSecurityConstraints());
+            publishSnapshot(snapshot);
         }
     }
 
-    public static RetsConfig getRetsConfiguration()
+    /**
+     * Publishes a snapshot along with new caches for it.  The caches are
+     * built first, so the lock is only held to swap them in, and readers,
+     * which take no lock, never wait on a reload.
+     */
+    private static void publishSnapshot(ServerSnapshot snapshot)
     {
+        RetsConfig retsConfig = snapshot.getRetsConfig();
+        GetMetadataCache getMetadataCache = null;
+        int getMetadataCacheSize = retsConfig.getMetadataCacheSize();
+        if (getMetadataCacheSize > 0)
+        {
+            getMetadataCache =
+                new GetMetadataCache(getMetadataCacheSize * 1024L);
+        }
+
+        // The object root or patterns may have changed, so start over
+        ObjectCache objectCache = null;
+        int objectCacheSize = retsConfig.getObjectCacheSize();
+        if (objectCacheSize > 0)
+        {
+            objectCache = new ObjectCache(objectCacheSize * 1024L);
+        }
+        ObjectSetCache objectSetCache = new ObjectSetCache(
+            ObjectSetCache.DEFAULT_MAX_OBJECT_SETS,
+            retsConfig.getMissingObjectTimeout() * 1000L);
+
+        DerivedObjectGenerator derivedObjectGenerator = null;
+        if (!retsConfig.getDerivedObjectTypes().isEmpty() &&
+            StringUtils.isNotBlank(retsConfig.getGetObjectRoot()))
+        {
+            derivedObjectGenerator = new DerivedObjectGenerator(
+                retsConfig.getGetObjectRoot(),
+                retsConfig.getDerivedObjectTypes());
+        }
+
+        DerivedObjectGenerator oldGenerator;
         synchronized (sLock)
         {
-            return sRetsConfig;
+            sSnapshot = snapshot;
+            clearSearchCaches();
+            sGetMetadataCache = getMetadataCache;
+            sObjectCache = objectCache;
+            sObjectSetCache = objectSetCache;
+            oldGenerator = sDerivedObjectGenerator;
+            sDerivedObjectGenerator = derivedObjectGenerator;
+        }
+        if (oldGenerator != null)
+        {
+            oldGenerator.shutdown();
         }
     }
 
-    public static MetadataManager getMetadataManager()
+    public static RetsConfig getRetsConfiguration()
     {
-        synchronized (sLock)
+        return sSnapshot.getRetsConfig();
+    }
+
+    /**
+     * Returns the database configuration from rets-config.xml, or
+     * <code>null</code> if the database is configured some other way, for
+     * example with a Hibernate session factory in the Spring configuration.
+     */
+    public static DatabaseConfig getDatabaseConfig()
+    {
+        RetsConfig retsConfig = getRetsConfiguration();
+        if (retsConfig == null)
+        {
+            return null;
+        }
+        DatabaseConfig databaseConfig = retsConfig.getDatabase();
+        if ((databaseConfig == null) ||
+            (databaseConfig.getDatabaseType() == null))
         {
-            return sMetadataManager;
+            return null;
         }
+        return databaseConfig;
+    }
+
+    public static MetadataManager getMetadataManager()
+    {
+        return sSnapshot.getMetadataManager();
     }
 
     private static MetadataManager createMetadataManager() throws RetsServerException
@@ -290,12 +528,26 @@ public class RetsServer implements ApplicationContextAware
     private static final Logger LOG =
         Logger.getLogger(RetsServer.class);
     private static SessionFactory sSessions;
-    private static TableGroupFilter sTableGroupFilter;
-    private static ConditionRuleSet sConditionRuleSet;
-    private static SecurityConstraints sSecurityConstraints;
-    private static QueryCountTable sQueryCountTable = new QueryCountTable();
+    // The tables and caches used by requests are volatile, so requests
+    // read them without a lock.  They are only replaced under sLock.
+    private static volatile QueryCountTable sQueryCountTable =
+        new QueryCountTable();
+    private static volatile KeysetCursorTable sKeysetCursorTable =
+        new KeysetCursorTable();
+    private static volatile CountCache sCountCache = new CountCache();
+    private static volatile DmqlPlanCache sDmqlPlanCache =
+        new DmqlPlanCache();
+    private static volatile GetMetadataCache sGetMetadataCache;
+    private static volatile ObjectCache sObjectCache;
+    private static volatile ObjectSetCache sObjectSetCache;
+    private static volatile DerivedObjectGenerator sDerivedObjectGenerator;
+    private static volatile ServerDmqlMetadataCache sDmqlMetadataCache =
+        new ServerDmqlMetadataCache();
     private static ApplicationContext sApplicationContext;
-    private static RetsConfig sRetsConfig;
-    private static MetadataManager sMetadataManager;
+    private static volatile long sCacheGeneration = System.currentTimeMillis();
+    /** Replaced, never changed, so it can be read without a lock. */
+    private static volatile ServerSnapshot sSnapshot = ServerSnapshot.EMPTY;
     private static Object sLock = new Object();
+    /** Held while a configuration is loaded, so loads do not overlap. */
+    private static Object sReloadLock = new Object();
 }
@@ -0,0 +1,96 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server;
+
+import org.realtors.rets.server.config.RetsConfig;
+import org.realtors.rets.server.config.SecurityConstraints;
+import org.realtors.rets.server.metadata.MetadataManager;
+import org.realtors.rets.server.protocol.ConditionRuleSet;
+import org.realtors.rets.server.protocol.TableGroupFilter;
+
+/**
+ * The configuration of the server and everything built from it: the
+ * metadata, the table group filter, the condition rules and the security
+ * constraints.  A snapshot never changes.  A new one is built whenever the
+ * configuration is loaded, and {@link RetsServer} publishes it in one step,
+ * so a request that takes the snapshot once sees objects that belong
+ * together, without taking a lock.
+ */
+public class ServerSnapshot
+{
+    public ServerSnapshot(RetsConfig retsConfig,
+                          MetadataManager metadataManager,
+                          TableGroupFilter tableGroupFilter,
+                          ConditionRuleSet conditionRuleSet,
+                          SecurityConstraints securityConstraints)
+    {
+        mRetsConfig = retsConfig;
+        mMetadataManager = metadataManager;
+        mTableGroupFilter = tableGroupFilter;
+        mConditionRuleSet = conditionRuleSet;
+        mSecurityConstraints = securityConstraints;
+    }
+
+    public RetsConfig getRetsConfig()
+    {
+        return mRetsConfig;
+    }
+
+    public MetadataManager getMetadataManager()
+    {
+        return mMetadataManager;
+    }
+
+    public TableGroupFilter getTableGroupFilter()
+    {
+        return mTableGroupFilter;
+    }
+
+    public ConditionRuleSet getConditionRuleSet()
+    {
+        return mConditionRuleSet;
+    }
+
+    public SecurityConstraints getSecurityConstraints()
+    {
+        return mSecurityConstraints;
+    }
+
+    public ServerSnapshot withTableGroupFilter(
+        TableGroupFilter tableGroupFilter)
+    {
+        return new ServerSnapshot(mRetsConfig, mMetadataManager,
+                                  tableGroupFilter, mConditionRuleSet,
+                                  mSecurityConstraints);
+    }
+
+    public ServerSnapshot withConditionRuleSet(
+        ConditionRuleSet conditionRuleSet)
+    {
+        return new ServerSnapshot(mRetsConfig, mMetadataManager,
+                                  mTableGroupFilter, conditionRuleSet,
+                                  mSecurityConstraints);
+    }
+
+    public ServerSnapshot withSecurityConstraints(
+        SecurityConstraints securityConstraints)
+    {
+        return new ServerSnapshot(mRetsConfig, mMetadataManager,
+                                  mTableGroupFilter, mConditionRuleSet,
+                                  securityConstraints);
+    }
+
+    /** A snapshot of a server that has not been configured yet. */
+    public static final ServerSnapshot EMPTY =
+        new ServerSnapshot(null, null, null, null, null);
+
+    private final RetsConfig mRetsConfig;
+    private final MetadataManager mMetadataManager;
+    private final TableGroupFilter mTableGroupFilter;
+    private final ConditionRuleSet mConditionRuleSet;
+    private final SecurityConstraints mSecurityConstraints;
+}
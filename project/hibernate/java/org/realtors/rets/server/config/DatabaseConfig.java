@@ -9,12 +9,26 @@
 package org.realtors.rets.server.config;
 
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
 import org.realtors.rets.server.Util;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 public class DatabaseConfig implements Serializable
 {
+    /**
+     * Fetch size meaning "use the database type's default".
+     */
+    public static final int DEFAULT_FETCH_SIZE = -1;
+
+    public DatabaseConfig()
+    {
+        mFetchSize = DEFAULT_FETCH_SIZE;
+    }
+
     public int getMaxActive()
     {
         return mMaxActive;
@@ -140,6 +154,91 @@ public class DatabaseConfig implements Serializable
         mPassword = password;
     }
 
+    public int getFetchSize()
+    {
+        return mFetchSize;
+    }
+
+    public void setFetchSize(int fetchSize)
+    {
+        mFetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the configured fetch size, falling back to the default of the
+     * database type if none was configured.
+     */
+    public int getEffectiveFetchSize()
+    {
+        if (mFetchSize == DEFAULT_FETCH_SIZE)
+        {
+            return mDatabaseType.getDefaultFetchSize();
+        }
+        return mFetchSize;
+    }
+
+    /**
+     * Prepares a forward-only, read-only statement that streams its results
+     * using the effective fetch size.
+     *
+     * @see DatabaseType#prepareStreamingStatement
+     */
+    public PreparedStatement prepareStreamingStatement(Connection connection,
+                                                       String sql)
+        throws SQLException
+    {
+        return mDatabaseType.prepareStreamingStatement(connection, sql,
+                                                       getEffectiveFetchSize());
+    }
+
+    /**
+     * Returns true if search values should be sent to the database as bind
+     * parameters of a prepared statement instead of as SQL literals.
+     */
+    public boolean isParameterizedQueries()
+    {
+        return mParameterizedQueries;
+    }
+
+    public void setParameterizedQueries(boolean parameterizedQueries)
+    {
+        mParameterizedQueries = parameterizedQueries;
+    }
+
+    /**
+     * Returns true if searches should get their count from a windowed count
+     * in the data query, where the database type supports it, instead of
+     * from a separate COUNT(*) query.
+     *
+     * @see DatabaseType#getWindowedCount
+     */
+    public boolean isWindowedCount()
+    {
+        return mWindowedCount;
+    }
+
+    public void setWindowedCount(boolean windowedCount)
+    {
+        mWindowedCount = windowedCount;
+    }
+
+    /**
+     * Returns true if count-only searches may return the database's
+     * estimate of the number of matching rows, where the database type
+     * provides one, instead of an exact count.
+     *
+     * @see DatabaseType#getRowEstimateSql
+     */
+    public boolean isApproximateCounts()
+    {
+        return mApproximateCounts;
+    }
+
+    public void setApproximateCounts(boolean approximateCounts)
+    {
+        mApproximateCounts = approximateCounts;
+    }
+
     public void setShowSql(boolean showSql)
     {
         mShowSql = showSql;
@@ -164,6 +263,10 @@ public class DatabaseConfig implements Serializable
             .append("max ps active", mMaxPsActive)
             .append("max ps wait", mMaxPsWait)
             .append("max ps idle", mMaxPsIdle)
+            .append("fetch size", mFetchSize)
+            .append("parameterized queries", mParameterizedQueries)
+            .append("windowed count", mWindowedCount)
+            .append("approximate counts", mApproximateCounts)
             .append("show sql", mShowSql)
             .toString();
     }
@@ -179,5 +282,9 @@ public class DatabaseConfig implements Serializable
     private int mMaxPsActive;
     private int mMaxPsWait;
     private int mMaxPsIdle;
+    private int mFetchSize;
+    private boolean mParameterizedQueries;
+    private boolean mWindowedCount;
+    private boolean mApproximateCounts;
     private boolean mShowSql;
 }
@@ -8,6 +8,10 @@
 
 package org.realtors.rets.server.config;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -23,6 +27,138 @@ public abstract class DatabaseType
 
     public abstract String getUrl(String hostName, String databaseName);
 
+    /**
+     * Returns the fetch size used for streaming result sets when the
+     * configuration does not specify one.  A fetch size of zero leaves the
+     * decision to the JDBC driver.
+     *
+     * @return the default streaming fetch size
+     */
+    public int getDefaultFetchSize()
+    {
+        return 0;
+    }
+
+    /**
+     * Prepares a forward-only, read-only statement that fetches rows from
+     * the database in batches of <code>fetchSize</code> rather than
+     * buffering the whole result set in memory.
+     *
+     * @param connection Connection to prepare the statement on
+     * @param sql SQL of the statement
+     * @param fetchSize Number of rows to fetch per round trip
+     * @return a streaming statement
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepareStreamingStatement(Connection connection,
+                                                       String sql,
+                                                       int fetchSize)
+        throws SQLException
+    {
+        prepareConnectionForStreaming(connection, fetchSize);
+        PreparedStatement statement =
+            connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                        ResultSet.CONCUR_READ_ONLY);
+        if (fetchSize != 0)
+        {
+            statement.setFetchSize(fetchSize);
+        }
+        return statement;
+    }
+
+    /**
+     * Hook for subclasses whose driver needs extra connection state to honor
+     * the fetch size.  Does nothing by default.
+     */
+    protected void prepareConnectionForStreaming(Connection connection,
+                                                 int fetchSize)
+        throws SQLException
+    {
+    }
+
+    /**
+     * Returns a SELECT statement that skips the first <code>offset</code>
+     * rows and returns at most <code>limit</code> rows, or
+     * <code>null</code> if this database cannot page in SQL.  When
+     * <code>null</code> is returned, the caller must skip and limit rows
+     * itself while reading the result set.
+     *
+     * @param selectClause Comma separated list of columns to select
+     * @param fromClause Table to select from
+     * @param whereClause WHERE clause, without the WHERE keyword
+     * @param orderByClause ORDER BY clause, without the ORDER BY keywords,
+     *        or <code>null</code> if the rows are not ordered
+     * @param offset Number of rows to skip
+     * @param limit Maximum number of rows to return, or
+     *        <code>Integer.MAX_VALUE</code> for no limit
+     * @return a paged SELECT statement, or <code>null</code>
+     */
+    public String getPagedSelect(String selectClause, String fromClause,
+                                 String whereClause, String orderByClause,
+                                 int offset, int limit)
+    {
+        return null;
+    }
+
+    /**
+     * Returns an expression that counts all rows matching the WHERE clause
+     * on every row of the result, regardless of any paging, or
+     * <code>null</code> if this database has no such expression.  This lets
+     * a search get its count from the same query as its data.
+     *
+     * @return a windowed count expression, or <code>null</code>
+     */
+    public String getWindowedCount()
+    {
+        return null;
+    }
+
+    /**
+     * Returns a statement asking the query planner how many rows match the
+     * WHERE clause, without counting them, or <code>null</code> if this
+     * database does not provide an estimate.
+     *
+     * @param fromClause Table to select from
+     * @param whereClause WHERE clause, without the WHERE keyword
+     * @return a statement whose results are read by
+     *         {@link #getRowEstimate}, or <code>null</code>
+     */
+    public String getRowEstimateSql(String fromClause, String whereClause)
+    {
+        return null;
+    }
+
+    /**
+     * Returns the estimated number of rows from the results of the
+     * statement returned by {@link #getRowEstimateSql}, or -1 if the
+     * results contain no estimate.
+     *
+     * @param resultSet Results of the estimate statement
+     * @return the estimated row count, or -1
+     * @throws SQLException if the results could not be read
+     */
+    public int getRowEstimate(ResultSet resultSet) throws SQLException
+    {
+        return -1;
+    }
+
+    /**
+     * Returns a SELECT statement without any paging.
+     */
+    protected String getSelect(String selectClause, String fromClause,
+                               String whereClause, String orderByClause)
+    {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("SELECT ").append(selectClause);
+        buffer.append(" FROM ").append(fromClause);
+        buffer.append(" WHERE ").append(whereClause);
+        if (orderByClause != null)
+        {
+            buffer.append(" ORDER BY ").append(orderByClause);
+        }
+        return buffer.toString();
+    }
+
     public static DatabaseType getType(String name)
     {
         return (DatabaseType) sKnownTypes.get(name);
@@ -0,0 +1,76 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.config;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import org.realtors.rets.server.Util;
+
+/**
+ * A GetObject type whose objects are generated from the objects of another
+ * type, by scaling the images down to fit a maximum size.  For example, a
+ * Thumbnail type that is made from the Photo objects.
+ */
+public class DerivedObjectType
+{
+    public DerivedObjectType(String name, String sourceName, int maxWidth,
+                             int maxHeight)
+    {
+        mName = name;
+        mSourceName = sourceName;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+    }
+
+    public String getName()
+    {
+        return mName;
+    }
+
+    /**
+     * Returns the name of the type the objects are generated from.
+     */
+    public String getSourceName()
+    {
+        return mSourceName;
+    }
+
+    /**
+     * Returns the largest width of a generated image, in pixels, or zero
+     * or less if the width is not limited.
+     */
+    public int getMaxWidth()
+    {
+        return mMaxWidth;
+    }
+
+    /**
+     * Returns the largest height of a generated image, in pixels, or zero
+     * or less if the height is not limited.
+     */
+    public int getMaxHeight()
+    {
+        return mMaxHeight;
+    }
+
+    public String toString()
+    {
+        return new ToStringBuilder(this, Util.SHORT_STYLE)
+            .append(mName)
+            .append(mSourceName)
+            .append(mMaxWidth)
+            .append(mMaxHeight)
+            .toString();
+    }
+
+    public static final String DEFAULT_SOURCE_NAME = "Photo";
+
+    private String mName;
+    private String mSourceName;
+    private int mMaxWidth;
+    private int mMaxHeight;
+}
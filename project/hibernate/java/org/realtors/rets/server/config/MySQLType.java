@@ -4,6 +4,9 @@
 
 package org.realtors.rets.server.config;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 public class MySQLType extends DatabaseType
 {
     public static final String NAME = "mysql";
@@ -11,6 +14,17 @@ public class MySQLType extends DatabaseType
     public static final String DRIVER = "com.mysql.jdbc.Driver";
     public static final String DIALECT =
         "org.hibernate.dialect.MySQLDialect";
+    /**
+     * Connector/J only streams rows one at a time, instead of reading the
+     * entire result set into memory, when the fetch size is
+     * Integer.MIN_VALUE on a forward-only, read-only statement.
+     */
+    public static final int DEFAULT_FETCH_SIZE = Integer.MIN_VALUE;
+    /**
+     * MySQL has no way to specify an offset without a row count, so the
+     * documented workaround is to use the largest possible row count.
+     */
+    private static final String NO_LIMIT = "18446744073709551615";
 
     public String getName()
     {
@@ -48,4 +62,86 @@ public class MySQLType extends DatabaseType
         url.append(hostName).append("/").append(databaseName);
         return url.toString();
     }
+
+    public int getDefaultFetchSize()
+    {
+        return DEFAULT_FETCH_SIZE;
+    }
+
+    /**
+     * Estimates using the plan from <code>EXPLAIN</code>.
+     */
+    public String getRowEstimateSql(String fromClause, String whereClause)
+    {
+        return "EXPLAIN " + getSelect("1", fromClause, whereClause, null);
+    }
+
+    /**
+     * Searches read a single table, so the plan has one row.  Its
+     * <code>rows</code> column is the number of rows MySQL expects to
+     * examine, and its <code>filtered</code> column the percentage of those
+     * it expects to match.  Servers whose plan has no <code>filtered</code>
+     * column give no estimate, as <code>rows</code> alone is the table size
+     * for any filter that is not indexed.
+     */
+    public int getRowEstimate(ResultSet resultSet) throws SQLException
+    {
+        if (!resultSet.next())
+        {
+            return -1;
+        }
+        try
+        {
+            resultSet.findColumn("filtered");
+        }
+        catch (SQLException e)
+        {
+            return -1;
+        }
+        String rows = resultSet.getString("rows");
+        String filtered = resultSet.getString("filtered");
+        if ((rows == null) || (filtered == null))
+        {
+            return -1;
+        }
+        try
+        {
+            double estimate = Double.parseDouble(rows) *
+                Double.parseDouble(filtered) / 100;
+            if (estimate > Integer.MAX_VALUE)
+            {
+                return -1;
+            }
+            return (int) Math.round(estimate);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Pages using <code>LIMIT offset, count</code>.
+     */
+    public String getPagedSelect(String selectClause, String fromClause,
+                                 String whereClause, String orderByClause,
+                                 int offset, int limit)
+    {
+        StringBuffer buffer = new StringBuffer(
+            getSelect(selectClause, fromClause, whereClause, orderByClause));
+        buffer.append(" LIMIT ");
+        if (offset > 0)
+        {
+            buffer.append(offset).append(", ");
+        }
+        if (limit != Integer.MAX_VALUE)
+        {
+            buffer.append(limit);
+        }
+        else
+        {
+            buffer.append(NO_LIMIT);
+        }
+        return buffer.toString();
+    }
 }
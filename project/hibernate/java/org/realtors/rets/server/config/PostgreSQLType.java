@@ -8,6 +8,14 @@
 
 package org.realtors.rets.server.config;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.math.NumberUtils;
+
 public class PostgreSQLType extends DatabaseType
 {
     public static final String NAME = "postgresql";
@@ -15,6 +23,9 @@ public class PostgreSQLType extends DatabaseType
     public static final String DRIVER = "org.postgresql.Driver";
     public static final String DIALECT =
         "org.hibernate.dialect.PostgreSQLDialect";
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final Pattern ROWS_PATTERN =
+        Pattern.compile("\\brows=(\\d+)");
 
     public String getName()
     {
@@ -52,4 +63,78 @@ public class PostgreSQLType extends DatabaseType
         url.append(hostName).append("/").append(databaseName);
         return url.toString();
     }
-}
\ No newline at end of file
+
+    public int getDefaultFetchSize()
+    {
+        return DEFAULT_FETCH_SIZE;
+    }
+
+    /**
+     * The PostgreSQL driver only uses a server-side cursor, and thus only
+     * honors the fetch size, when auto-commit is turned off.  The caller is
+     * responsible for restoring auto-commit when done with the statement.
+     */
+    protected void prepareConnectionForStreaming(Connection connection,
+                                                 int fetchSize)
+        throws SQLException
+    {
+        if ((fetchSize > 0) && connection.getAutoCommit())
+        {
+            connection.setAutoCommit(false);
+        }
+    }
+
+    /**
+     * Window functions require PostgreSQL 8.4 or later.
+     */
+    public String getWindowedCount()
+    {
+        return "COUNT(*) OVER()";
+    }
+
+    /**
+     * Estimates using the plan from <code>EXPLAIN</code>.
+     */
+    public String getRowEstimateSql(String fromClause, String whereClause)
+    {
+        return "EXPLAIN " + getSelect("1", fromClause, whereClause, null);
+    }
+
+    /**
+     * The first line of the plan is the top node, whose row estimate is
+     * the number of rows the query returns.
+     */
+    public int getRowEstimate(ResultSet resultSet) throws SQLException
+    {
+        if (!resultSet.next())
+        {
+            return -1;
+        }
+        Matcher matcher = ROWS_PATTERN.matcher(resultSet.getString(1));
+        if (!matcher.find())
+        {
+            return -1;
+        }
+        return NumberUtils.toInt(matcher.group(1), -1);
+    }
+
+    /**
+     * Pages using <code>LIMIT</code> and <code>OFFSET</code>.
+     */
+    public String getPagedSelect(String selectClause, String fromClause,
+                                 String whereClause, String orderByClause,
+                                 int offset, int limit)
+    {
+        StringBuffer buffer = new StringBuffer(
+            getSelect(selectClause, fromClause, whereClause, orderByClause));
+        if (limit != Integer.MAX_VALUE)
+        {
+            buffer.append(" LIMIT ").append(limit);
+        }
+        if (offset > 0)
+        {
+            buffer.append(" OFFSET ").append(offset);
+        }
+        return buffer.toString();
+    }
+}
@@ -10,6 +10,7 @@
  */
 package org.realtors.rets.server.config;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,9 @@ public class RetsConfig
         mNonceSuccessTimeout = -1;
         mSecurityConstraints = new SecurityConstraints();
         mStrictParsing = true;
+        mCompressionMinSize = DEFAULT_COMPRESSION_MIN_SIZE;
+        mMissingObjectTimeout = DEFAULT_MISSING_OBJECT_TIMEOUT;
+        mDerivedObjectTypes = new ArrayList<DerivedObjectType>();
         
         /*
          * Store an instance so that static methods can get to this. This is
@@ -133,6 +137,154 @@ public class RetsConfig
         mStrictParsing = strict;
     }
     
+    /**
+     * Returns whether searches paging through results with an offset may
+     * seek past the key the previous page ended on, instead of skipping
+     * rows.
+     */
+    public boolean getKeysetPaging()
+    {
+        return mKeysetPaging;
+    }
+
+    public void setKeysetPaging(boolean keysetPaging)
+    {
+        mKeysetPaging = keysetPaging;
+    }
+
+    /**
+     * Returns whether the parsed metadata is saved to a binary snapshot in
+     * the metadata directory, and read from it at startup while the
+     * metadata files are unchanged.
+     */
+    public boolean getMetadataSnapshot()
+    {
+        return mMetadataSnapshot;
+    }
+
+    public void setMetadataSnapshot(boolean metadataSnapshot)
+    {
+        mMetadataSnapshot = metadataSnapshot;
+    }
+
+    /**
+     * Returns how long, in seconds, the result of a count-only search may be
+     * reused for the same search.  Zero or less disables reuse.
+     */
+    public int getCountCacheTimeout()
+    {
+        return mCountCacheTimeout;
+    }
+
+    public void setCountCacheTimeout(int countCacheTimeout)
+    {
+        mCountCacheTimeout = countCacheTimeout;
+    }
+
+    /**
+     * Returns the gzip/deflate level, from 1 to 9, that large responses are
+     * compressed with for clients that accept it.  Zero or less disables
+     * compression.
+     */
+    public int getCompressionLevel()
+    {
+        return mCompressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel)
+    {
+        mCompressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the size, in bytes, below which responses are not compressed.
+     */
+    public int getCompressionMinSize()
+    {
+        return mCompressionMinSize;
+    }
+
+    public void setCompressionMinSize(int compressionMinSize)
+    {
+        mCompressionMinSize = compressionMinSize;
+    }
+
+    /**
+     * Returns how much memory, in kilobytes, may be used to keep rendered
+     * GetMetadata responses.  Zero or less disables the metadata cache.
+     */
+    public int getMetadataCacheSize()
+    {
+        return mMetadataCacheSize;
+    }
+
+    public void setMetadataCacheSize(int metadataCacheSize)
+    {
+        mMetadataCacheSize = metadataCacheSize;
+    }
+
+    /**
+     * Returns how much memory, in kilobytes, may be used to keep recently
+     * requested objects in memory for GetObject.  Zero or less disables the
+     * object cache.
+     */
+    public int getObjectCacheSize()
+    {
+        return mObjectCacheSize;
+    }
+
+    public void setObjectCacheSize(int objectCacheSize)
+    {
+        mObjectCacheSize = objectCacheSize;
+    }
+
+    /**
+     * Returns how many objects of a multipart GetObject response are opened
+     * ahead of the one being written.  Zero or less opens each object as it
+     * is written.
+     */
+    public int getGetObjectReadAhead()
+    {
+        return mGetObjectReadAhead;
+    }
+
+    public void setGetObjectReadAhead(int getObjectReadAhead)
+    {
+        mGetObjectReadAhead = getObjectReadAhead;
+    }
+
+    /**
+     * Returns how long, in seconds, GetObject remembers that an object file
+     * or object set file is missing before checking for it again.  Zero or
+     * less checks every time.
+     */
+    public int getMissingObjectTimeout()
+    {
+        return mMissingObjectTimeout;
+    }
+
+    public void setMissingObjectTimeout(int missingObjectTimeout)
+    {
+        mMissingObjectTimeout = missingObjectTimeout;
+    }
+
+    /**
+     * Returns the GetObject types that are generated on demand from the
+     * objects of another type.
+     *
+     * @return a list of DerivedObjectType objects, never <code>null</code>
+     */
+    public List<DerivedObjectType> getDerivedObjectTypes()
+    {
+        return mDerivedObjectTypes;
+    }
+
+    public void setDerivedObjectTypes(
+        List<DerivedObjectType> derivedObjectTypes)
+    {
+        mDerivedObjectTypes = derivedObjectTypes;
+    }
+
     public String toString()
     {
         return new ToStringBuilder(this, Util.SHORT_STYLE)
@@ -143,6 +295,16 @@ public class RetsConfig
             .append("nonce initial timeout", mNonceInitialTimeout)
             .append("nonce success timeout", mNonceSuccessTimeout)
             .append("strict parsing", mStrictParsing)
+            .append("keyset paging", mKeysetPaging)
+            .append("metadata snapshot", mMetadataSnapshot)
+            .append("count cache timeout", mCountCacheTimeout)
+            .append("compression level", mCompressionLevel)
+            .append("compression min size", mCompressionMinSize)
+            .append("metadata cache size", mMetadataCacheSize)
+            .append("object cache size", mObjectCacheSize)
+            .append("GetObject read ahead", mGetObjectReadAhead)
+            .append("missing object timeout", mMissingObjectTimeout)
+            .append("derived object types", mDerivedObjectTypes)
             .append(mDatabase)
             .toString();
     }
@@ -272,8 +434,21 @@ public class RetsConfig
     private String mMetadataDir;
     private SecurityConstraints mSecurityConstraints;
     private boolean mStrictParsing;
+    private boolean mKeysetPaging;
+    private boolean mMetadataSnapshot;
+    private int mCountCacheTimeout;
+    private int mCompressionLevel;
+    private int mCompressionMinSize;
+    private int mMetadataCacheSize;
+    private int mObjectCacheSize;
+    private int mGetObjectReadAhead;
+    private int mMissingObjectTimeout;
+    private List<DerivedObjectType> mDerivedObjectTypes;
     private Integer mId;
     private Map mExtendableProperties;
 
     private static RetsConfig sRetsConfig;
+
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    public static final int DEFAULT_MISSING_OBJECT_TIMEOUT = 5;
 }
@@ -8,7 +8,7 @@
 
 package org.realtors.rets.server.config;
 
-public class SQLServerJSQLType extends DatabaseType
+public class SQLServerJSQLType extends SQLServerType
 {
     public static final String NAME = "sqlserver-jsql";
     public static final String LONG_NAME = "SQLServer (JSQLConnect)";
@@ -0,0 +1,90 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+
+package org.realtors.rets.server.config;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Common SQL generation for the SQL Server drivers.
+ */
+public abstract class SQLServerType extends DatabaseType
+{
+    /**
+     * Pages using <code>TOP</code> when there is no offset, and by
+     * numbering the rows with <code>ROW_NUMBER()</code> when there is one.
+     * <code>ROW_NUMBER()</code> requires SQL Server 2005 or later.
+     */
+    public String getPagedSelect(String selectClause, String fromClause,
+                                 String whereClause, String orderByClause,
+                                 int offset, int limit)
+    {
+        if (offset == 0)
+        {
+            if (limit == Integer.MAX_VALUE)
+            {
+                return getSelect(selectClause, fromClause, whereClause,
+                                 orderByClause);
+            }
+            return getSelect("TOP " + limit + " " + selectClause, fromClause,
+                             whereClause, orderByClause);
+        }
+
+        if (orderByClause == null)
+        {
+            // ROW_NUMBER() needs an ordering to be deterministic
+            return null;
+        }
+
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("SELECT ").append(getOuterSelectClause(selectClause));
+        buffer.append(" FROM (SELECT ").append(selectClause);
+        buffer.append(", ROW_NUMBER() OVER (ORDER BY ");
+        buffer.append(orderByClause).append(") AS ").append(ROW_NUMBER);
+        buffer.append(" FROM ").append(fromClause);
+        buffer.append(" WHERE ").append(whereClause);
+        buffer.append(") AS ").append(PAGE_ALIAS);
+        buffer.append(" WHERE ").append(ROW_NUMBER).append(" > ");
+        buffer.append(offset);
+        if (limit != Integer.MAX_VALUE)
+        {
+            buffer.append(" AND ").append(ROW_NUMBER).append(" <= ");
+            buffer.append((long) offset + limit);
+        }
+        buffer.append(" ORDER BY ").append(ROW_NUMBER);
+        return buffer.toString();
+    }
+
+    /**
+     * Window functions require SQL Server 2005 or later.
+     */
+    public String getWindowedCount()
+    {
+        return "COUNT(*) OVER()";
+    }
+
+    /**
+     * Returns the select clause for the outer query of a page, which must
+     * refer to aliased expressions of the inner query by their alias.
+     */
+    private String getOuterSelectClause(String selectClause)
+    {
+        String[] columns = StringUtils.split(selectClause, ",");
+        for (int i = 0; i < columns.length; i++)
+        {
+            int alias = columns[i].toUpperCase().lastIndexOf(" AS ");
+            if (alias != -1)
+            {
+                columns[i] = columns[i].substring(alias + 4).trim();
+            }
+        }
+        return StringUtils.join(columns, ",");
+    }
+
+    private static final String ROW_NUMBER = "rets_row_number";
+    private static final String PAGE_ALIAS = "rets_page";
+}
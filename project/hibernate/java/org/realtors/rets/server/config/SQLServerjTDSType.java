@@ -8,13 +8,14 @@
 
 package org.realtors.rets.server.config;
 
-public class SQLServerjTDSType extends DatabaseType
+public class SQLServerjTDSType extends SQLServerType
 {
     public static final String NAME = "sqlserver-jtds";
     public static final String LONG_NAME = "SQLServer (jTDS)";
     public static final String DIALECT =
         "org.hibernate.dialect.SQLServerDialect";
     public static final String DRIVER = "net.sourceforge.jtds.jdbc.Driver";
+    public static final int DEFAULT_FETCH_SIZE = 1000;
 
     public String getName()
     {
@@ -53,4 +54,9 @@ public class SQLServerjTDSType extends DatabaseType
         url.append("/").append(databaseName);
         return url.toString();
     }
+
+    public int getDefaultFetchSize()
+    {
+        return DEFAULT_FETCH_SIZE;
+    }
 }
@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
@@ -48,6 +49,57 @@ public class XmlRetsConfigUtils {
         addChild(retsCfgElmt, NONCE_INITIAL_TIMEOUT, retsConfig.getNonceInitialTimeout());
         addChild(retsCfgElmt, NONCE_SUCCESS_TIMEOUT, retsConfig.getNonceSuccessTimeout());
         addChild(retsCfgElmt, STRICT_PARSING, retsConfig.getStrictParsing());
+        if (retsConfig.getKeysetPaging()) {
+            addChild(retsCfgElmt, KEYSET_PAGING, true);
+        }
+        if (retsConfig.getMetadataSnapshot()) {
+            addChild(retsCfgElmt, METADATA_SNAPSHOT, true);
+        }
+        if (retsConfig.getCountCacheTimeout() > 0) {
+            addChild(retsCfgElmt, COUNT_CACHE_TIMEOUT,
+                     retsConfig.getCountCacheTimeout());
+        }
+        if (retsConfig.getCompressionLevel() > 0) {
+            addChild(retsCfgElmt, COMPRESSION_LEVEL,
+                     retsConfig.getCompressionLevel());
+        }
+        if (retsConfig.getCompressionMinSize() !=
+                RetsConfig.DEFAULT_COMPRESSION_MIN_SIZE) {
+            addChild(retsCfgElmt, COMPRESSION_MIN_SIZE,
+                     retsConfig.getCompressionMinSize());
+        }
+        if (retsConfig.getMetadataCacheSize() > 0) {
+            addChild(retsCfgElmt, METADATA_CACHE_SIZE,
+                     retsConfig.getMetadataCacheSize());
+        }
+        if (retsConfig.getObjectCacheSize() > 0) {
+            addChild(retsCfgElmt, OBJECT_CACHE_SIZE,
+                     retsConfig.getObjectCacheSize());
+        }
+        if (retsConfig.getGetObjectReadAhead() > 0) {
+            addChild(retsCfgElmt, GET_OBJECT_READ_AHEAD,
+                     retsConfig.getGetObjectReadAhead());
+        }
+        if (retsConfig.getMissingObjectTimeout() !=
+                RetsConfig.DEFAULT_MISSING_OBJECT_TIMEOUT) {
+            addChild(retsCfgElmt, MISSING_OBJECT_TIMEOUT,
+                     retsConfig.getMissingObjectTimeout());
+        }
+        List<DerivedObjectType> derivedObjectTypes =
+            retsConfig.getDerivedObjectTypes();
+        for (int i = 0; i < derivedObjectTypes.size(); i++) {
+            DerivedObjectType type = derivedObjectTypes.get(i);
+            Element typeElement = new Element(DERIVED_OBJECT_TYPE);
+            typeElement.setAttribute(NAME, type.getName());
+            typeElement.setAttribute(SOURCE, type.getSourceName());
+            if (type.getMaxWidth() > 0) {
+                typeElement.setAttribute(MAX_WIDTH, "" + type.getMaxWidth());
+            }
+            if (type.getMaxHeight() > 0) {
+                typeElement.setAttribute(MAX_HEIGHT, "" + type.getMaxHeight());
+            }
+            retsCfgElmt.addContent(typeElement);
+        }
 
         DatabaseConfig databaseConfig = retsConfig.getDatabase();
         Element database = new Element(DATABASE);
@@ -62,6 +114,18 @@ public class XmlRetsConfigUtils {
         addChild(database, MAX_PS_ACTIVE, databaseConfig.getMaxPsActive());
         addChild(database, MAX_PS_IDLE, databaseConfig.getMaxPsIdle());
         addChild(database, MAX_PS_WAIT, databaseConfig.getMaxPsWait());
+        if (databaseConfig.getFetchSize() != DatabaseConfig.DEFAULT_FETCH_SIZE) {
+            addChild(database, FETCH_SIZE, databaseConfig.getFetchSize());
+        }
+        if (databaseConfig.isParameterizedQueries()) {
+            addChild(database, PARAMETERIZED_QUERIES, true);
+        }
+        if (databaseConfig.isWindowedCount()) {
+            addChild(database, WINDOWED_COUNT, true);
+        }
+        if (databaseConfig.isApproximateCounts()) {
+            addChild(database, APPROXIMATE_COUNTS, true);
+        }
         addChild(database, SHOW_SQL, databaseConfig.getShowSql());
         retsCfgElmt.addContent(database);
         retsCfgElmt.addContent(getSecurityContraintsElement(retsConfig));
@@ -238,6 +302,29 @@ public class XmlRetsConfigUtils {
         config.setNonceInitialTimeout(getInt(element, NONCE_INITIAL_TIMEOUT));
         config.setNonceSuccessTimeout(getInt(element, NONCE_SUCCESS_TIMEOUT));
         config.setStrictParsing(getBoolean(element, STRICT_PARSING));
+        config.setKeysetPaging(getBoolean(element, KEYSET_PAGING));
+        config.setMetadataSnapshot(getBoolean(element, METADATA_SNAPSHOT));
+        config.setCountCacheTimeout(getInt(element, COUNT_CACHE_TIMEOUT));
+        int compressionLevel = getInt(element, COMPRESSION_LEVEL);
+        if (compressionLevel > Deflater.BEST_COMPRESSION) {
+            LOG.warn("Compression level must be " + Deflater.BEST_COMPRESSION +
+                     " or less, using " + Deflater.BEST_COMPRESSION + ": " +
+                     compressionLevel);
+            compressionLevel = Deflater.BEST_COMPRESSION;
+        }
+        config.setCompressionLevel(compressionLevel);
+        int compressionMinSize = getInt(element, COMPRESSION_MIN_SIZE);
+        if (compressionMinSize >= 0) {
+            config.setCompressionMinSize(compressionMinSize);
+        }
+        config.setMetadataCacheSize(getInt(element, METADATA_CACHE_SIZE));
+        config.setObjectCacheSize(getInt(element, OBJECT_CACHE_SIZE));
+        config.setGetObjectReadAhead(getInt(element, GET_OBJECT_READ_AHEAD));
+        int missingObjectTimeout = getInt(element, MISSING_OBJECT_TIMEOUT);
+        if (missingObjectTimeout >= 0) {
+            config.setMissingObjectTimeout(missingObjectTimeout);
+        }
+        elementToDerivedObjectTypes(element, config);
 
         elementToDatabaseConfig(element.getChild(DATABASE), config);
         elementToSecurityConstraints(element.getChild(SECURITY_CONSTRAINTS), config);
@@ -258,10 +345,37 @@ public class XmlRetsConfigUtils {
         database.setMaxPsActive(getInt(element, MAX_PS_ACTIVE));
         database.setMaxPsIdle(getInt(element, MAX_PS_IDLE));
         database.setMaxPsWait(getInt(element, MAX_PS_WAIT));
+        database.setFetchSize(getInt(element, FETCH_SIZE));
+        database.setParameterizedQueries(
+            getBoolean(element, PARAMETERIZED_QUERIES));
+        database.setWindowedCount(getBoolean(element, WINDOWED_COUNT));
+        database.setApproximateCounts(
+            getBoolean(element, APPROXIMATE_COUNTS));
         database.setShowSql(getBoolean(element, SHOW_SQL));
         config.setDatabase(database);
     }
 
+    private static void elementToDerivedObjectTypes(Element element, RetsConfig config) {
+        List<DerivedObjectType> derivedObjectTypes = new ArrayList<DerivedObjectType>();
+        List children = element.getChildren(DERIVED_OBJECT_TYPE);
+        for (int i = 0; i < children.size(); i++) {
+            Element child = (Element)children.get(i);
+            String name = child.getAttributeValue(NAME);
+            if (StringUtils.isBlank(name)) {
+                LOG.warn("Derived object type has no name: " + child.toString());
+                continue;
+            }
+            String source = child.getAttributeValue(SOURCE);
+            if (StringUtils.isBlank(source)) {
+                source = DerivedObjectType.DEFAULT_SOURCE_NAME;
+            }
+            int maxWidth = NumberUtils.toInt(child.getAttributeValue(MAX_WIDTH), -1);
+            int maxHeight = NumberUtils.toInt(child.getAttributeValue(MAX_HEIGHT), -1);
+            derivedObjectTypes.add(new DerivedObjectType(name, source, maxWidth, maxHeight));
+        }
+        config.setDerivedObjectTypes(derivedObjectTypes);
+    }
+
     private static void elementToSecurityConstraints(Element element, RetsConfig config) {
         if (element == null) {
             config.setSecurityConstraints(new ArrayList());
@@ -431,6 +545,10 @@ public class XmlRetsConfigUtils {
     private static final String MAX_PS_ACTIVE = "max-ps-active";
     private static final String MAX_PS_IDLE = "max-ps-idle";
     private static final String MAX_PS_WAIT = "max-ps-wait";
+    private static final String FETCH_SIZE = "fetch-size";
+    private static final String PARAMETERIZED_QUERIES = "parameterized-queries";
+    private static final String WINDOWED_COUNT = "windowed-count";
+    private static final String APPROXIMATE_COUNTS = "approximate-counts";
     private static final String DATABASE = "database";
     private static final String SHOW_SQL = "show-sql";
     private static final String SECURITY_CONSTRAINTS = "security-constraints";
@@ -454,4 +572,17 @@ public class XmlRetsConfigUtils {
     private static final String PER_HOUR = "per-hour";
     private static final String PER_MINUTE = "per-minute";
     private static final String STRICT_PARSING = "strict-parsing";
+    private static final String KEYSET_PAGING = "keyset-paging";
+    private static final String METADATA_SNAPSHOT = "metadata-snapshot";
+    private static final String COUNT_CACHE_TIMEOUT = "count-cache-timeout";
+    private static final String COMPRESSION_LEVEL = "compression-level";
+    private static final String COMPRESSION_MIN_SIZE = "compression-min-size";
+    private static final String METADATA_CACHE_SIZE = "metadata-cache-size";
+    private static final String OBJECT_CACHE_SIZE = "object-cache-size";
+    private static final String GET_OBJECT_READ_AHEAD = "get-object-read-ahead";
+    private static final String MISSING_OBJECT_TIMEOUT = "missing-object-timeout";
+    private static final String DERIVED_OBJECT_TYPE = "derived-object-type";
+    private static final String SOURCE = "source";
+    private static final String MAX_WIDTH = "max-width";
+    private static final String MAX_HEIGHT = "max-height";
 }
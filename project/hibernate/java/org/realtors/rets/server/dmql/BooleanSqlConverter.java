@@ -26,11 +26,9 @@ public class BooleanSqlConverter implements SqlConverter
 
     public void toSql(PrintWriter out)
     {
-        if (mString.equals("0"))
-            out.print("'0'");
-        else
-        if (mString.equals("1"))
-            out.print("'1'");
+        if (mString.equals("0") || mString.equals("1"))
+            ParameterizedSqlWriter.printValue(out, "'" + mString + "'",
+                                              mString);
         else
             out.print(mString); // Shouldn't happen and will cause failure.
     }
@@ -32,7 +32,9 @@ public class DateSqlConverter implements SqlConverter
 
     public void toSql(PrintWriter out)
     {
-        out.print(sToSql.format(getDateForFormatting()));
+        Date date = getDateForFormatting();
+        ParameterizedSqlWriter.printValue(out, sToSql.format(date),
+                                          new java.sql.Date(date.getTime()));
     }
 
     private Date getDateForFormatting()
@@ -1,6 +1,7 @@
 package org.realtors.rets.server.dmql;
 
 import java.io.PrintWriter;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.util.Date;
@@ -34,7 +35,9 @@ public class DateTimeSqlConverter implements SqlConverter
 
     public void toSql(PrintWriter out)
     {
-        out.print(sToSql.format(getDateForFormatting()));
+        Date date = getDateForFormatting();
+        ParameterizedSqlWriter.printValue(out, sToSql.format(date),
+                                          new Timestamp(date.getTime()));
     }
 
     private Date getDateForFormatting()
@@ -62,15 +62,16 @@ public class DmqlString implements SqlConverter
     public void toSql(PrintWriter out)
     {
         out.print(mStringMatchOperator);
-        out.print("'");
+        StringBuffer value = new StringBuffer();
         Iterator components = mComponents.iterator();
         while (components.hasNext())
         {
             DmqlStringComponent component =
                 (DmqlStringComponent) components.next();
-            out.print(component.toSql());
+            value.append(component.toSql());
         }
-        out.print("'");
+        ParameterizedSqlWriter.printValue(out, "'" + value + "'",
+                                          value.toString());
     }
 
     public String toString()
@@ -121,21 +121,21 @@ public class LookupList implements SqlConverter
     {
         out.print("(");
         out.print(mSqlColumn);
-        out.print(" = '");
-        out.print(lookup);
-        out.print("' OR ");
+        out.print(" = ");
+        printLookupValue(out, lookup);
+        out.print(" OR ");
         out.print(mSqlColumn);
-        out.print(" LIKE '");
-        out.print(lookup);
-        out.print(",%' OR ");
+        out.print(" LIKE ");
+        printLookupValue(out, lookup + ",%");
+        out.print(" OR ");
         out.print(mSqlColumn);
-        out.print(" LIKE '%,");
-        out.print(lookup);
-        out.print("' OR ");
+        out.print(" LIKE ");
+        printLookupValue(out, "%," + lookup);
+        out.print(" OR ");
         out.print(mSqlColumn);
-        out.print(" LIKE '%,");
-        out.print(lookup);
-        out.print(",%')");
+        out.print(" LIKE ");
+        printLookupValue(out, "%," + lookup + ",%");
+        out.print(")");
     }
 
     private void printLookupCondition(PrintWriter out, String lookup)
@@ -143,9 +143,8 @@ public class LookupList implements SqlConverter
         if (!lookup.equals(".ANY.") && !lookup.equals(".EMPTY."))
         {
             out.print(mSqlColumn);
-            out.print(" = '");
-            out.print(lookup);
-            out.print("'");
+            out.print(" = ");
+            printLookupValue(out, lookup);
         }
         else
         {
@@ -183,14 +182,18 @@ public class LookupList implements SqlConverter
         {
             String lookup = (String) mLookups.get(i);
             out.print(sqlOperator);
-            out.print("value = '");
-            out.print(lookup);
-            out.print("'");
+            out.print("value = ");
+            printLookupValue(out, lookup);
             sqlOperator = mType.getSqlOperator();
         }
         out.print("))");
     }
 
+    private void printLookupValue(PrintWriter out, String value)
+    {
+        ParameterizedSqlWriter.printValue(out, "'" + value + "'", value);
+    }
+
     public String toString()
     {
         return new ToStringBuilder(this, Util.SHORT_STYLE)
@@ -0,0 +1,64 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.dmql;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A writer that compiles a {@link SqlConverter} tree into SQL with
+ * <code>?</code> placeholders instead of literal values.  The values are
+ * collected, in order, as bind parameters for a prepared statement.
+ */
+public class ParameterizedSqlWriter extends PrintWriter
+{
+    public ParameterizedSqlWriter(Writer out)
+    {
+        super(out);
+        mParameters = new ArrayList<Object>();
+    }
+
+    /**
+     * Prints a placeholder and appends the value to the bind parameters.
+     */
+    public void printParameter(Object value)
+    {
+        print("?");
+        mParameters.add(value);
+    }
+
+    public List<Object> getParameters()
+    {
+        return Collections.unmodifiableList(mParameters);
+    }
+
+    /**
+     * Prints a value as a bind parameter if the writer is collecting
+     * parameters, or as the given SQL literal otherwise.
+     *
+     * @param out the writer to print to
+     * @param literal the value as an SQL literal
+     * @param value the value to bind
+     */
+    public static void printValue(PrintWriter out, String literal,
+                                  Object value)
+    {
+        if (out instanceof ParameterizedSqlWriter)
+        {
+            ((ParameterizedSqlWriter) out).printParameter(value);
+        }
+        else
+        {
+            out.print(literal);
+        }
+    }
+
+    private List<Object> mParameters;
+}
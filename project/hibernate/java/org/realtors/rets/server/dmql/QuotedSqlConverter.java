@@ -26,9 +26,7 @@ public class QuotedSqlConverter implements SqlConverter
 
     public void toSql(PrintWriter out)
     {
-        out.print("'");
-        out.print(mValue);
-        out.print("'");
+        ParameterizedSqlWriter.printValue(out, "'" + mValue + "'", mValue);
     }
 
     public String toString()
@@ -11,6 +11,7 @@
 package org.realtors.rets.server.dmql;
 
 import java.io.PrintWriter;
+import java.math.BigDecimal;
 
 import org.realtors.rets.server.Util;
 
@@ -26,6 +27,19 @@ public class StringSqlConverter implements SqlConverter
 
     public void toSql(PrintWriter out)
     {
+        if (out instanceof ParameterizedSqlWriter)
+        {
+            try
+            {
+                ((ParameterizedSqlWriter) out).printParameter(
+                    new BigDecimal(mString));
+                return;
+            }
+            catch (NumberFormatException e)
+            {
+                // Not a number, so leave it to the database to interpret
+            }
+        }
         out.print(mString);
     }
 
@@ -1,6 +1,7 @@
 package org.realtors.rets.server.dmql;
 
 import java.io.PrintWriter;
+import java.sql.Time;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.util.Date;
@@ -39,7 +40,9 @@ public class TimeSqlConverter implements SqlConverter
 
     public void toSql(PrintWriter out)
     {
-        out.print(sToSql.format(getDateForFormatting()));
+        Date date = getDateForFormatting();
+        ParameterizedSqlWriter.printValue(out, sToSql.format(date),
+                                          new Time(date.getTime()));
     }
 
     private Date getDateForFormatting()
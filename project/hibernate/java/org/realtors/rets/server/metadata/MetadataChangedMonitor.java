@@ -146,11 +146,17 @@ public class MetadataChangedMonitor implements Runnable {
 
     /**
      * Determines whether the metadata has changed since the last time checked.
+     * A {@link TrackedMetadataDao} is asked directly, as the date it changed
+     * may be later than the start of the check that found the change.
      * 
      * @return {@code true} if the metadata has changed since the last time
      *         checked, otherwise {@code false}.
      */
     protected boolean hasChanged() {
+        MetadataDao metadataDao = getMetadataDao();
+        if (metadataDao instanceof TrackedMetadataDao) {
+            return ((TrackedMetadataDao)metadataDao).checkForChanges();
+        }
         boolean needsUpdating = false;
         Date changedDate = getChangedDate();
         Date lastCheckDate = getLastCheckDate();
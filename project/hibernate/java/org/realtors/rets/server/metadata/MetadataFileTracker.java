@@ -0,0 +1,143 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+
+package org.realtors.rets.server.metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Tracks the files the metadata is read from, to tell when the metadata has
+ * really changed. Each file is remembered by its length, modification time
+ * and a checksum of its contents. The checksum is only worked out again
+ * when the length or modification time of a file changes, so checking for
+ * changes is cheap, and a file that was touched or copied again with the
+ * same contents does not count as a change.
+ * <p>
+ * Unlike the modification time of the metadata directory, this notices
+ * files that are edited in place, and ignores other files, such as backups
+ * and editor files, that come and go in the directory.
+ */
+public class MetadataFileTracker {
+
+    private static final Logger LOG = Logger.getLogger(MetadataFileTracker.class);
+
+    // State Variables -------------------------------------------------------
+    private Map<String, FileState> fileStates;
+    private Date changedDate;
+
+    /**
+     * Updates the state of the metadata files.
+     *
+     * @param files The files the metadata is read from. Must not be
+     *            {@code null}.
+     * @return {@code true} if the files differ from the last update, or if
+     *         this is the first update, otherwise {@code false}.
+     */
+    public synchronized boolean update(List<File> files) {
+        Map<String, FileState> newFileStates = new HashMap<String, FileState>();
+        boolean changed = (this.fileStates == null) || (this.fileStates.size() != files.size());
+        long newestModified = 0;
+        for (File file : files) {
+            String path = file.getPath();
+            FileState oldState = (this.fileStates == null) ? null : this.fileStates.get(path);
+            FileState newState = getFileState(file, oldState);
+            newFileStates.put(path, newState);
+            newestModified = Math.max(newestModified, newState.lastModified);
+            if ((oldState == null) || (oldState.checksum != newState.checksum)) {
+                changed = true;
+            }
+        }
+
+        if (this.fileStates == null) {
+            // The metadata is as old as its newest file
+            this.changedDate = new Date(newestModified);
+        } else if (changed) {
+            // A file may have been copied with an old modification time, so
+            // it changed no earlier than now
+            this.changedDate = new Date(Math.max(newestModified, currentTimeMillis()));
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Metadata files changed");
+            }
+        }
+        this.fileStates = newFileStates;
+        return changed;
+    }
+
+    /**
+     * @return The date the metadata files last changed, or {@code null} if
+     *         they have not been updated yet.
+     */
+    public synchronized Date getChangedDate() {
+        return this.changedDate;
+    }
+
+    /**
+     * @return The current time, in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private FileState getFileState(File file, FileState oldState) {
+        FileState state = new FileState();
+        state.length = file.length();
+        state.lastModified = file.lastModified();
+        if ((oldState != null) && (oldState.length == state.length) &&
+                (oldState.lastModified == state.lastModified)) {
+            state.checksum = oldState.checksum;
+        } else {
+            state.checksum = checksum(file);
+        }
+        return state;
+    }
+
+    private long checksum(File file) {
+        CRC32 crc = new CRC32();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            // An unreadable file has no checksum, so it counts as changed
+            // once it can be read
+            LOG.warn("Unable to read metadata file " + file + ": " + e);
+            return -1;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    LOG.warn("Unable to close metadata file " + file + ": " + e);
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static class FileState {
+        long length;
+        long lastModified;
+        long checksum;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+}
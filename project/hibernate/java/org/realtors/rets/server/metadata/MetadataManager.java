@@ -12,10 +12,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.realtors.rets.common.metadata.MetaObject;
@@ -30,12 +30,14 @@ public class MetadataManager
     {
         mMetadataByLevel = new LinkedHashMap<String, Map<String,List<MetaObject>>>();
         mMetadataByPath = new LinkedHashMap<String, Map<String,MetaObject>>();
+        mLevelIndexes = new HashMap<String, LevelNode>();
     }
 
     public void clear()
     {
         mMetadataByLevel.clear();
         mMetadataByPath.clear();
+        mLevelIndexes.clear();
     }
 
     public void add(MetaObject metadata)
@@ -57,10 +59,42 @@ public class MetadataManager
         if (metadataList == null) {
             metadataList = new ArrayList<MetaObject>();
             table.put(level, metadataList);
+            indexLevel(metadataTypeName, level, metadataList);
         }
         metadataList.add(metadata);
     }
 
+    /**
+     * Adds a new level to the level index of its metadata type.  The index
+     * is a tree with one node per level component, so a pattern only visits
+     * the levels it can match.
+     */
+    private void indexLevel(String metadataTypeName, String level,
+                            List<MetaObject> metadataList)
+    {
+        LevelNode node = mLevelIndexes.get(metadataTypeName);
+        if (node == null)
+        {
+            node = new LevelNode();
+            mLevelIndexes.put(metadataTypeName, node);
+        }
+        String[] levels = StringUtils.split(level, ":");
+        for (int i = 0; i < levels.length; i++)
+        {
+            LevelNode child = node.mChildren.get(levels[i]);
+            if (child == null)
+            {
+                child = new LevelNode();
+                node.mChildren.put(levels[i], child);
+            }
+            node = child;
+        }
+        // Components are split the same way levelsMatch splits them, so two
+        // levels may end at the same node
+        node.mEntries.add(new LevelEntry(level, levels, metadataList,
+                                         mLevelCount++));
+    }
+
     private void addByPath(MetaObject metadata)
     {
         String path = metadata.getPath();
@@ -146,16 +180,11 @@ public class MetadataManager
         if (pathName == null)
             return null;
         
-        String standardName = null;
-        String [] pathNames = pathName.split(":");
-
-        if (pathNames.length > 2 && pathNames[2] != null)
-        {
-            MTable table = (MTable) findByPath(MetadataType.TABLE.name(), pathName);
-            if (table != null)
-                standardName = table.getStandardName();
-        }
-        return standardName;
+        // Only tables, whose paths are resource:class:table, are found
+        MTable table = (MTable) findByPath(MetadataType.TABLE.name(), pathName);
+        if (table == null)
+            return null;
+        return table.getStandardName();
     }
     
     /**
@@ -168,16 +197,10 @@ public class MetadataManager
         if (pathName == null)
             return null;
         
-        String systemName = null;
-        String [] pathNames = pathName.split(":");
-
-        if (pathNames.length > 2 && pathNames[2] != null)
-        {
-            MTable table = (MTable) findByPath(MetadataType.TABLE.name(), pathName);
-            if (table != null)
-                systemName = table.getSystemName();
-        }
-        return systemName;
+        MTable table = (MTable) findByPath(MetadataType.TABLE.name(), pathName);
+        if (table == null)
+            return null;
+        return table.getSystemName();
     }
     
     /*
@@ -194,21 +217,67 @@ public class MetadataManager
     private Map<String, List<MetaObject>> findByPattern(String metadataTypeName, String[] patterns)
     {
         Map<String, List<MetaObject>> found = new LinkedHashMap<String, List<MetaObject>>();
+        for (LevelEntry entry : findLevels(metadataTypeName, patterns))
+        {
+            found.put(entry.mLevel, entry.mMetadataList);
+        }
+        return found;
+    }
 
-        Map<String, List<MetaObject>> table = mMetadataByLevel.get(metadataTypeName);
-        if (table != null)
+    /**
+     * Finds the levels that match a pattern, in the order they were added.
+     * Only the branches of the level index that match the pattern are
+     * visited, and a level matches if the pattern matches its first
+     * components, as in {@link #levelsMatch(String, String[])}.
+     */
+    private List<LevelEntry> findLevels(String metadataTypeName, String[] patterns)
+    {
+        List<LevelEntry> found = new ArrayList<LevelEntry>();
+        LevelNode root = mLevelIndexes.get(metadataTypeName);
+        if (root != null)
         {
-            Set<String> levels = table.keySet();
-            for (String level : levels)
+            findLevels(root, patterns, 0, found);
+        }
+        if (found.size() > 1)
+        {
+            Collections.sort(found);
+        }
+        return found;
+    }
+
+    private void findLevels(LevelNode node, String[] patterns, int index,
+                            List<LevelEntry> found)
+    {
+        if (index == patterns.length)
+        {
+            addAllLevels(node, found);
+            return;
+        }
+        String pattern = patterns[index];
+        if (pattern.equals("*"))
+        {
+            for (LevelNode child : node.mChildren.values())
             {
-                if (levelsMatch(level, patterns))
-                {
-                    List<MetaObject> metadataList = table.get(level);
-                    found.put(level, metadataList);
-                }
+                findLevels(child, patterns, index + 1, found);
+            }
+        }
+        else
+        {
+            LevelNode child = node.mChildren.get(pattern);
+            if (child != null)
+            {
+                findLevels(child, patterns, index + 1, found);
             }
         }
-        return found;
+    }
+
+    private void addAllLevels(LevelNode node, List<LevelEntry> found)
+    {
+        found.addAll(node.mEntries);
+        for (LevelNode child : node.mChildren.values())
+        {
+            addAllLevels(child, found);
+        }
     }
 
     /**
@@ -260,13 +329,9 @@ public class MetadataManager
         Date systemDate = system.getDate();
 
         List<MetadataSegment> metadataSegments = new ArrayList<MetadataSegment>();
-        Map<String, List<MetaObject>> table = findByPattern(type, patterns);
-        Set<String> levels = table.keySet();
-        for (String level : levels)
+        for (LevelEntry entry : findLevels(type, patterns))
         {
-            List<MetaObject> metadataList = table.get(level);
-            String[] levelArray = StringUtils.split(level, ":");
-            MetadataSegment metadataSegment = new MetadataSegment(metadataList, levelArray, systemVersion, systemDate);
+            MetadataSegment metadataSegment = new MetadataSegment(entry.mMetadataList, entry.mLevels, systemVersion, systemDate);
             metadataSegments.add(metadataSegment);
         }
         return metadataSegments;
@@ -322,4 +387,48 @@ public class MetadataManager
      *                           +-------+
      */
     private Map<String, Map<String, MetaObject>> mMetadataByPath;
+
+    /**
+     * The levels of each metadata type, as a tree of level components:
+     *
+     * +--------------------+
+     * | Metadata Type Name | -> root -> "Property" -> "RES" -> LevelEntry
+     * +--------------------+                       -> "LND" -> LevelEntry
+     * |    ...             |         -> "Agent" -> ...
+     * +--------------------+
+     */
+    private Map<String, LevelNode> mLevelIndexes;
+    private int mLevelCount;
+
+    private static class LevelNode
+    {
+        Map<String, LevelNode> mChildren =
+            new LinkedHashMap<String, LevelNode>();
+        List<LevelEntry> mEntries = new ArrayList<LevelEntry>(1);
+    }
+
+    private static class LevelEntry implements Comparable<LevelEntry>
+    {
+        LevelEntry(String level, String[] levels,
+                   List<MetaObject> metadataList, int order)
+        {
+            mLevel = level;
+            mLevels = levels;
+            mMetadataList = metadataList;
+            mOrder = order;
+        }
+
+        public int compareTo(LevelEntry other)
+        {
+            return (mOrder < other.mOrder) ? -1 :
+                ((mOrder == other.mOrder) ? 0 : 1);
+        }
+
+        String mLevel;
+        /** The level, already split into its components. */
+        String[] mLevels;
+        List<MetaObject> mMetadataList;
+        /** The order the level was added in. */
+        int mOrder;
+    }
 }
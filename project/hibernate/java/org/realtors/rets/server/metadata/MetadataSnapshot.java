@@ -0,0 +1,178 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+
+package org.realtors.rets.server.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.log4j.Logger;
+import org.realtors.rets.common.metadata.Metadata;
+
+/**
+ * A binary copy of parsed {@link Metadata}, so the metadata does not have to
+ * be parsed from XML again when the server restarts. The snapshot is the
+ * serialized metadata, preceded by a hash of the contents of the XML files
+ * it was parsed from. It is only used while the files still have that hash,
+ * and is read in a single pass.
+ * <p>
+ * A snapshot that is stale, cannot be read, or was written by an
+ * incompatible version of the metadata classes is ignored, and the metadata
+ * is parsed from XML as usual.
+ */
+public class MetadataSnapshot {
+
+    private static final Logger LOG = Logger.getLogger(MetadataSnapshot.class);
+
+    /** The name of the snapshot file in the metadata directory. */
+    public static final String FILE_NAME = "metadata.snapshot";
+
+    // Configuration Variables -----------------------------------------------
+    private final File file;
+
+    /**
+     * Constructs a new MetadataSnapshot.
+     *
+     * @param file The snapshot file. Must not be {@code null}.
+     */
+    public MetadataSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns a hash of the metadata files: their paths, their contents and
+     * how they are parsed.
+     *
+     * @param files The files the metadata is parsed from. Must not be
+     *            {@code null}.
+     * @param strictParsing Whether the metadata is parsed strictly.
+     * @return The hash, as hex digits.
+     * @throws IOException if a file could not be read
+     */
+    public static String hash(List<File> files, boolean strictParsing) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available: " + e);
+        }
+        digest.update((byte)FORMAT_VERSION);
+        digest.update((byte)(strictParsing ? 1 : 0));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (File file : files) {
+            digest.update(file.getPath().getBytes("UTF-8"));
+            digest.update((byte)0);
+            InputStream in = new FileInputStream(file);
+            try {
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                }
+            } finally {
+                in.close();
+            }
+            digest.update((byte)0);
+        }
+        return new String(Hex.encodeHex(digest.digest()));
+    }
+
+    /**
+     * Reads the metadata from the snapshot.
+     *
+     * @param hash The hash of the metadata files, from {@link #hash}.
+     * @return The metadata, or {@code null} if there is no snapshot of
+     *         metadata files with this hash.
+     */
+    public Metadata read(String hash) {
+        if (!this.file.isFile()) {
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(this.file), BUFFER_SIZE));
+            String snapshotHash = in.readUTF();
+            if (!snapshotHash.equals(hash)) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Metadata snapshot " + this.file + " is out of date");
+                }
+                return null;
+            }
+            Metadata metadata = (Metadata)in.readObject();
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Read metadata from snapshot " + this.file);
+            }
+            return metadata;
+        } catch (Exception e) {
+            // Most likely written by other versions of the metadata classes
+            LOG.warn("Unable to read metadata snapshot " + this.file + ": " + e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes metadata to the snapshot. The snapshot is written to a
+     * temporary file first, so a snapshot is never seen half written.
+     * Failures are logged, as the metadata can always be parsed again.
+     *
+     * @param hash The hash of the metadata files, from {@link #hash}.
+     * @param metadata The metadata parsed from the files. Must not be
+     *            {@code null}.
+     */
+    public void write(String hash, Metadata metadata) {
+        File tempFile = new File(this.file.getPath() + ".tmp");
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE));
+            out.writeUTF(hash);
+            out.writeObject(metadata);
+            out.close();
+            out = null;
+            this.file.delete();
+            if (!tempFile.renameTo(this.file)) {
+                throw new IOException("Unable to rename " + tempFile);
+            }
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Wrote metadata snapshot " + this.file);
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to write metadata snapshot " + this.file + ": " + e);
+            close(out);
+            tempFile.delete();
+        }
+    }
+
+    private void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close metadata snapshot " + this.file + ": " + e);
+        }
+    }
+
+    /** Changed whenever the layout of the snapshot changes. */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+}
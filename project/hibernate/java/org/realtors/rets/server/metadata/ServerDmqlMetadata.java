@@ -30,6 +30,11 @@ import org.realtors.rets.common.metadata.types.MTable;
 import org.realtors.rets.server.dmql.DmqlFieldType;
 import org.realtors.rets.server.dmql.DmqlParserMetadata;
 
+/**
+ * The fields, columns and lookups of a set of tables, as used to compile
+ * DMQL.  Instances are not modified after they are constructed, so they may
+ * be shared between searches.
+ */
 public class ServerDmqlMetadata implements DmqlParserMetadata
 {
     private ServerDmqlMetadata()
@@ -113,6 +118,7 @@ public class ServerDmqlMetadata implements DmqlParserMetadata
         }
 
         Collections.sort(mColumns);
+        mColumns = Collections.unmodifiableList(mColumns);
     }
 
     private boolean isLookup(MTable table)
@@ -0,0 +1,25 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+
+package org.realtors.rets.server.metadata;
+
+/**
+ * A {@link MetadataDao} that keeps track of what it has loaded, and so can
+ * tell whether the metadata has changed without comparing dates.
+ */
+public interface TrackedMetadataDao extends MetadataDao {
+
+    /**
+     * Checks whether the metadata has changed. Each change is only reported
+     * once.
+     *
+     * @return {@code true} if the metadata has changed since it was last
+     *         loaded or checked, otherwise {@code false}.
+     */
+    public boolean checkForChanges();
+
+}
@@ -12,6 +12,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -36,10 +37,12 @@ import org.realtors.rets.server.config.RetsConfig;
  * 
  * @author Danny
  */
-public class XmlMetadataDao implements MetadataDao {
+public class XmlMetadataDao implements TrackedMetadataDao {
 
     private static final Logger LOG = Logger.getLogger(XmlMetadataDao.class);
 
+    private final MetadataFileTracker fileTracker = new MetadataFileTracker();
+
     /*- (non-Javadoc)
      * @see org.realtors.rets.common.metadata.MetadataDao#getMetadata()
      */
@@ -98,6 +101,34 @@ public class XmlMetadataDao implements MetadataDao {
                     return metadata;
                 }
             }
+            /*
+             * Record the files before they are read, so a change made while
+             * they are read is still seen as a change afterwards. A change
+             * to any file reloads all of the metadata: the files of the old
+             * layout are merged into one document before it is built, so no
+             * part of it is rebuilt alone.
+             */
+            this.fileTracker.update(files);
+            MetadataSnapshot snapshot = null;
+            String hash = null;
+            if (retsConfig.getMetadataSnapshot())
+            {
+                snapshot = new MetadataSnapshot(new File(rootDir, MetadataSnapshot.FILE_NAME));
+                try
+                {
+                    hash = MetadataSnapshot.hash(files, strictParsing);
+                    metadata = snapshot.read(hash);
+                    if (metadata != null)
+                    {
+                        return metadata;
+                    }
+                }
+                catch (IOException e)
+                {
+                    LOG.warn("Unable to check metadata snapshot: " + e);
+                    snapshot = null;
+                }
+            }
             try
             {
                 if (LOG.isDebugEnabled()) {
@@ -114,6 +145,10 @@ public class XmlMetadataDao implements MetadataDao {
                 JDomCompactBuilder builder = new JDomCompactBuilder();
                 builder.setStrict(strictParsing);
                 metadata = builder.build(merged);
+                if (snapshot != null)
+                {
+                    snapshot.write(hash, metadata);
+                }
             }
             catch (Exception e)
             {
@@ -270,15 +305,60 @@ public class XmlMetadataDao implements MetadataDao {
         }
     }
 
-    /*- (non-Javadoc)
+    /**
+     * Returns the date the metadata files last changed. Only the files the
+     * metadata is read from are looked at, and a file only counts as changed
+     * if its contents have changed. See {@link MetadataFileTracker}.
+     *
      * @see org.realtors.rets.server.metadata.MetadataDao#getChangedDate()
      */
     public Date getChangedDate() {
         RetsConfig retsConfig = RetsConfig.getInstance();
         String metadataDir = retsConfig.getMetadataDir();
-        File metadataFile = new File(metadataDir);
-        Date changedDate = new Date(metadataFile.lastModified());
-        return changedDate;
+        File rootDir = new File(metadataDir);
+        if (!rootDir.isDirectory()) {
+            return new Date(rootDir.lastModified());
+        }
+        try {
+            this.fileTracker.update(listMetadataFiles(rootDir));
+        } catch (IOException e) {
+            LOG.warn("Unable to locate metadata: " + e);
+            return new Date(rootDir.lastModified());
+        }
+        return this.fileTracker.getChangedDate();
+    }
+
+    /**
+     * Checks whether the contents of the metadata files have changed since
+     * they were last loaded or checked. See {@link MetadataFileTracker}.
+     *
+     * @see org.realtors.rets.server.metadata.TrackedMetadataDao#checkForChanges()
+     */
+    public boolean checkForChanges() {
+        RetsConfig retsConfig = RetsConfig.getInstance();
+        String metadataDir = retsConfig.getMetadataDir();
+        File rootDir = new File(metadataDir);
+        if (!rootDir.isDirectory()) {
+            return false;
+        }
+        List<File> files;
+        try {
+            files = listMetadataFiles(rootDir);
+        } catch (IOException e) {
+            LOG.warn("Unable to locate metadata: " + e);
+            return false;
+        }
+        // Files seen for the first time are what is loaded, not a change
+        boolean tracked = (this.fileTracker.getChangedDate() != null);
+        return this.fileTracker.update(files) && tracked;
+    }
+
+    private static List<File> listMetadataFiles(File rootDir) throws IOException {
+        File metadataFile = new File(rootDir, "metadata.xml");
+        if (metadataFile.isFile()) {
+            return Collections.singletonList(metadataFile);
+        }
+        return IOUtils.listFilesRecursive(rootDir, new MetadataFileFilter());
     }
 
 }
@@ -0,0 +1,35 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.realtors.rets.server.RetsServerException;
+
+/**
+ * An object set that can find the objects of many resource entities at
+ * once, for example with one database query rather than one for each
+ * entity.  GetObject uses this when a request asks for all the objects of
+ * more than one entity.
+ */
+public interface BatchObjectSet extends ObjectSet
+{
+    /**
+     * Finds all objects of a type for each of many resource entities.
+     *
+     * @param type the object type
+     * @param resourceEntities the resource entities
+     * @return a map from resource entity to its list of ObjectDescriptors.
+     *         Entities with no objects may be left out.
+     * @throws RetsServerException if the objects could not be found
+     */
+    public Map<String, List<ObjectDescriptor>> findAllObjects(
+        String type, Collection<String> resourceEntities)
+        throws RetsServerException;
+}
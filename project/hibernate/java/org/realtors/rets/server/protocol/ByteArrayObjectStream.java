@@ -0,0 +1,46 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * An object that is already in memory.  The bytes are shared, not copied,
+ * so they must not be modified.
+ */
+public class ByteArrayObjectStream implements ObjectStream
+{
+    public ByteArrayObjectStream(byte[] bytes, String mimeType)
+    {
+        mBytes = bytes;
+        mMimeType = mimeType;
+        mInputStream = new ByteArrayInputStream(bytes);
+    }
+
+    public InputStream getInputStream()
+    {
+        return mInputStream;
+    }
+
+    public String getMimeType()
+    {
+        return mMimeType;
+    }
+
+    /**
+     * Returns the bytes of the object, so they can be written in one call.
+     */
+    public byte[] getBytes()
+    {
+        return mBytes;
+    }
+
+    private byte[] mBytes;
+    private String mMimeType;
+    private InputStream mInputStream;
+}
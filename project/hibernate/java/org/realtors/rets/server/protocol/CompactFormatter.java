@@ -10,7 +10,9 @@
  */
 package org.realtors.rets.server.protocol;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -23,11 +25,12 @@ import org.apache.commons.lang.enums.Enum;
 
 import org.realtors.rets.client.RetsVersion;
 import org.realtors.rets.common.metadata.attrib.AttrDate;
-import org.realtors.rets.common.util.DataRowBuilder;
+import org.realtors.rets.common.util.CompactRowEncoder;
 import org.realtors.rets.common.util.RetsDateTime;
 import org.realtors.rets.common.util.TagBuilder;
 
 import org.realtors.rets.server.RetsServerException;
+import org.realtors.rets.server.dmql.DmqlFieldType;
 import org.realtors.rets.server.dmql.DmqlParserMetadata;
 
 /**
@@ -55,11 +58,14 @@ public class CompactFormatter implements SearchResultsFormatter
             PrintWriter out = context.getWriter();
             out.print("<DELIMITER value=\"09\"/>\n");
             formatColumns(context);
-            int numColumns = context.getNumberOfColumns();
+            ColumnPlan plan = createColumnPlan(context);
+            CompactRowEncoder row = new CompactRowEncoder(
+                out, DELIMITER.charAt(0), DELIMITER_REPL);
             while (context.hasNext())
             {
-                formatRow(context, numColumns);
+                formatRow(context, row, plan);
             }
+            row.flush();
             if (context.exceededLimit())
             {
                 out.print("<MAXROWS/>\n");
@@ -69,6 +75,10 @@ public class CompactFormatter implements SearchResultsFormatter
         {
             throw new RetsServerException(e);
         }
+        catch (IOException e)
+        {
+            throw new RetsServerException(e);
+        }
     }
 
     private void formatColumns(SearchFormatterContext context)
@@ -87,56 +97,125 @@ public class CompactFormatter implements SearchResultsFormatter
      * Formats a single data row.
      *
      * @param context search context
-     * @param numColumns number of columns
+     * @param row builder for the row
+     * @param plan how to format each column
      * @throws SQLException if an error occurs
+     * @throws IOException if the row could not be written
      */
-    private void formatRow(SearchFormatterContext context, int numColumns)
-        throws SQLException
+    private void formatRow(SearchFormatterContext context,
+                           CompactRowEncoder row, ColumnPlan plan)
+        throws SQLException, IOException
     {
-        DataRowBuilder row = new DataRowBuilder(context.getWriter(), DELIMITER, DELIMITER_REPL);
-        
+        ResultSet resultSet = context.getResultSet();
+        RetsVersion retsVersion = context.getRetsVersion();
         row.begin();
+        for (int i = 0; i < plan.mTypes.length; i++)
+        {
+            String value;
+            switch (plan.mTypes[i])
+            {
+                case LOOKUP_COLUMN:
+                    value = context.decodeLookupValue(
+                        plan.mFieldNames[i], plan.mFieldTypes[i],
+                        resultSet.getString(i + 1));
+                    break;
+
+                case TEMPORAL_COLUMN:
+                    // Dates already held as a RetsDateTime render themselves
+                    if (resultSet.getObject(i + 1) instanceof RetsDateTime)
+                    {
+                        value = resultSet.getString(i + 1);
+                    }
+                    else
+                    {
+                        value = renderDateTime(resultSet.getString(i + 1),
+                                               retsVersion);
+                    }
+                    break;
+
+                default:
+                    value = resultSet.getString(i + 1);
+                    break;
+            }
+            row.append(value);
+        }
+        row.end();
+    }
+
+    /**
+     * Renders a date returned by the database in the format of the RETS
+     * version.
+     *
+     * @param value date as returned by the database
+     * @param retsVersion RETS version of the search
+     * @return the rendered date, or the original value if it cannot be parsed
+     */
+    private String renderDateTime(String value, RetsVersion retsVersion)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        // This is ugly, but got no choice. Try to convert the date
+        // and then properly render it. Let's try SQL format first in
+        // case this date is returned by a SQL query.
+        try
+        {
+            return RetsDateTime.render(RetsDateTime.parseSql(value),
+                                       retsVersion);
+        }
+        catch (ParseException e)
+        {
+            try
+            {
+                // Need to parse this as RETS_1_5.
+                RetsDateTime retsDateTime =
+                    new RetsDateTime(value, RetsVersion.RETS_1_5);
+                return retsDateTime.toString();
+            }
+            catch (ParseException f)
+            {
+                // Ignore the error. The timestamp as returned from the SQL
+                // engine will be used.
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Works out how to format each column from the metadata.  This is done
+     * once per search, so formatting a row only reads and writes values.
+     *
+     * @param context search context
+     * @return the plan for the columns of the search
+     */
+    private ColumnPlan createColumnPlan(SearchFormatterContext context)
+    {
+        DmqlParserMetadata metadata = context.getMetadata();
+        int numColumns = context.getNumberOfColumns();
+        ColumnPlan plan = new ColumnPlan(numColumns);
         for (int i = 0; i < numColumns; i++)
         {
-            String value = context.getResultString(i);
+            String field = metadata.columnToField(context.getColumn(i));
+            DmqlFieldType fieldType = metadata.getFieldType(field);
+            plan.mFieldNames[i] = field;
+            plan.mFieldTypes[i] = fieldType;
             if ((mLookupDecoding == DECODE_LOOKUPS) &&
-                context.isColumnALookup(i))
+                ((fieldType == DmqlFieldType.LOOKUP) ||
+                 (fieldType == DmqlFieldType.LOOKUP_MULTI)))
             {
-                value = context.decodeLookupValue(i, value);
+                plan.mTypes[i] = LOOKUP_COLUMN;
             }
-            if (context.isColumnDateTime(i) && !context.isColumnRetsDateTime(i))
+            else if (fieldType == DmqlFieldType.TEMPORAL)
             {
-            	// This is ugly, but got no choice. Try to convert the date
-            	// and then properly render it. Let's try SQL format first in 
-            	// case this date is returned by a SQL query.
-            	if (value != null)
-            	{
-	            	try
-	            	{
-	            	    String retsDateTime = RetsDateTime.render(RetsDateTime.parseSql(value),
-	            								context.getRetsVersion());
-	            	    value = retsDateTime;
-	            	}
-	            	catch (ParseException e)
-	            	{
-	            		try
-	            		{
-		        			// Need to parse this as RETS_1_5.
-		        			RetsDateTime retsDateTime = new RetsDateTime(value, RetsVersion.RETS_1_5);
-		
-		        			value = retsDateTime.toString();
-	            		}
-	            		catch (ParseException f)
-	            		{
-	            			// Ignore the error. The timestamp as returned from the SQL engine will be used.
-	            		}
-	            	}
-            	}
+                plan.mTypes[i] = TEMPORAL_COLUMN;
+            }
+            else
+            {
+                plan.mTypes[i] = PLAIN_COLUMN;
             }
-            
-            row.append(value);
         }
-        row.end();
+        return plan;
     }
 
     /**
@@ -158,6 +237,24 @@ public class CompactFormatter implements SearchResultsFormatter
         return fields;
     }
 
+    /**
+     * How each column of a search is formatted, indexed by the zero-based
+     * column index.
+     */
+    private static class ColumnPlan
+    {
+        ColumnPlan(int numColumns)
+        {
+            mTypes = new int[numColumns];
+            mFieldNames = new String[numColumns];
+            mFieldTypes = new DmqlFieldType[numColumns];
+        }
+
+        int[] mTypes;
+        String[] mFieldNames;
+        DmqlFieldType[] mFieldTypes;
+    }
+
     public static final class LookupDecoding extends Enum
     {
         private LookupDecoding(String s)
@@ -171,6 +268,10 @@ public class CompactFormatter implements SearchResultsFormatter
     public static final LookupDecoding DECODE_LOOKUPS =
         new LookupDecoding("decode lookups");
 
+    private static final int PLAIN_COLUMN = 0;
+    private static final int LOOKUP_COLUMN = 1;
+    private static final int TEMPORAL_COLUMN = 2;
+
     private static final String DELIMITER = "\t";
     private static final String DELIMITER_REPL = "    ";
     private LookupDecoding mLookupDecoding;
@@ -0,0 +1,97 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.realtors.rets.server.protocol.SqlStatements.Query;
+
+/**
+ * Remembers recent results of count queries, so clients polling for the
+ * same count do not each make the database count the rows again.  Counts
+ * are keyed by the SQL and parameters of the query, which include the DMQL
+ * and the group's condition rules.  A count is only used for a limited time
+ * after it was queried, so it may be slightly out of date.
+ */
+public class CountCache
+{
+    public CountCache()
+    {
+        this(DEFAULT_MAX_COUNTS);
+    }
+
+    public CountCache(final int maxCounts)
+    {
+        mCounts = new LinkedHashMap<String, Count>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxCounts;
+            }
+        };
+    }
+
+    /**
+     * Returns the count of a query if it was queried within the timeout, or
+     * -1 otherwise.
+     *
+     * @param query Count query
+     * @param timeoutMillis How old a count may be, in milliseconds
+     * @return the count, or -1
+     */
+    public synchronized int getCount(Query query, long timeoutMillis)
+    {
+        String key = getKey(query);
+        Count count = mCounts.get(key);
+        if (count == null)
+        {
+            return -1;
+        }
+        if (System.currentTimeMillis() - count.mTimestamp > timeoutMillis)
+        {
+            mCounts.remove(key);
+            return -1;
+        }
+        return count.mCount;
+    }
+
+    public synchronized void putCount(Query query, int rowCount)
+    {
+        Count count = new Count();
+        count.mCount = rowCount;
+        count.mTimestamp = System.currentTimeMillis();
+        mCounts.put(getKey(query), count);
+    }
+
+    public synchronized void clear()
+    {
+        mCounts.clear();
+    }
+
+    public synchronized int size()
+    {
+        return mCounts.size();
+    }
+
+    private String getKey(Query query)
+    {
+        StringBuffer key = new StringBuffer(query.getSql());
+        key.append('\n').append(query.getParameters());
+        return key.toString();
+    }
+
+    private static class Count
+    {
+        int mCount;
+        long mTimestamp;
+    }
+
+    public static final int DEFAULT_MAX_COUNTS = 1000;
+
+    private Map<String, Count> mCounts;
+}
@@ -11,9 +11,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
+import org.hibernate.HibernateException;
 
 import org.realtors.rets.server.Media;
 import org.realtors.rets.server.MediaUtils;
@@ -26,7 +31,7 @@ import org.realtors.rets.server.RetsServerException;
  * @author mklein
  *
  */
-public class DatabaseObjectSet implements ObjectSet
+public class DatabaseObjectSet implements BatchObjectSet
 {
 
     private static final Logger LOG =
@@ -42,6 +47,16 @@ public class DatabaseObjectSet implements ObjectSet
     {
     }
     
+    /**
+     * Set the directory the Media file paths are relative to. Defaults to
+     * the GetObject root of the RETS configuration.
+     * @param rootDirectory A string containing the directory.
+     */
+    public void setRootDirectory(String rootDirectory)
+    {
+        mRootDirectory = rootDirectory;
+    }
+    
     /**
      * Get the RETS resource for this ObjectSet.
      * @return A string containing the RETS Resource.
@@ -81,12 +96,13 @@ public class DatabaseObjectSet implements ObjectSet
     
     /**
      * Build the ObjectDescriptor for this <code>objectID</code>
+     * @param resourceEntity A string containing the Resource Entity key.
      * @param file A Java <code>FILE</code> referencing the object.
      * @param objectId An <code>int</code> containing the Object ID.
      * @return An <code>ObjectDescriptor</code>
      * @throws RetsServerException
      */
-    private ObjectDescriptor buildObjectDescriptor(File file, int objectId) 
+    private ObjectDescriptor buildObjectDescriptor(String resourceEntity, File file, int objectId) 
         throws RetsServerException
     {
         ObjectDescriptor objectDescriptor = null;
@@ -96,8 +112,8 @@ public class DatabaseObjectSet implements ObjectSet
             if (file.exists() && file.isFile())
             {
                 LOG.debug("File " + file.getCanonicalPath() + " exists for Listing " + 
-                        mResourceEntity + ", objectId: " + objectId);
-                return new ObjectDescriptor(mResourceEntity, objectId,
+                        resourceEntity + ", objectId: " + objectId);
+                return new ObjectDescriptor(resourceEntity, objectId,
                                             file.toURI().toURL());
             }
             else
@@ -139,7 +155,7 @@ public class DatabaseObjectSet implements ObjectSet
                             }
                         }
                     }
-                    objectDescriptor = new ObjectDescriptor(mResourceEntity, objectId,
+                    objectDescriptor = new ObjectDescriptor(resourceEntity, objectId,
                                                                     sNotFound.toURI().toURL(), null);
                     objectDescriptor.setRetsReplyCode(ReplyCode.NO_OBJECT_FOUND);
                     return objectDescriptor;
@@ -177,6 +193,90 @@ public class DatabaseObjectSet implements ObjectSet
             LOG.debug(e);
             throw new RetsServerException(e);
         }
+        return buildObjectDescriptors(mResourceEntity, photos);
+    }
+
+    /**
+     * Find all objects of type for many Resource Keys, with one query for
+     * all of them.
+     * @param mediaType A String containing the object type.
+     * @param resourceEntities The Resource Keys.
+     * @return A Map from Resource Key to its List of ObjectDescriptors.
+     */
+    public Map<String, List<ObjectDescriptor>> findAllObjects(String mediaType, Collection<String> resourceEntities)
+        throws RetsServerException
+    {
+        Map<String, List<Media>> photosByResourceEntity;
+        try
+        {
+            LOG.debug("FindAllObjects by Resource Keys: " + resourceEntities);
+            photosByResourceEntity = findMediaByResourceKeys(mediaType, resourceEntities);
+        }
+        catch (Exception e)
+        {
+            LOG.debug(e);
+            throw new RetsServerException(e);
+        }
+        /*
+         * Key the objects by the Resource Keys as they were asked for, as
+         * findAllObjects(String) does. The database may have matched a key
+         * ignoring case or padding, so a key that did not come back as it
+         * was asked for takes the Media of the keys that match it that way.
+         */
+        Map<String, List<String>> databaseKeys = new HashMap<String, List<String>>();
+        for (String databaseKey : photosByResourceEntity.keySet())
+        {
+            String matchKey = matchKey(databaseKey);
+            List<String> keys = databaseKeys.get(matchKey);
+            if (keys == null)
+            {
+                keys = new ArrayList<String>();
+                databaseKeys.put(matchKey, keys);
+            }
+            keys.add(databaseKey);
+        }
+        Map<String, List<ObjectDescriptor>> objects = new LinkedHashMap<String, List<ObjectDescriptor>>();
+        for (String resourceEntity : resourceEntities)
+        {
+            if (objects.containsKey(resourceEntity))
+                continue;
+            List<Media> photos = photosByResourceEntity.get(resourceEntity);
+            if (photos == null)
+            {
+                List<String> keys = databaseKeys.get(matchKey(resourceEntity));
+                if (keys == null)
+                    continue;
+                photos = new ArrayList<Media>();
+                for (String key : keys)
+                    photos.addAll(photosByResourceEntity.get(key));
+            }
+            objects.put(resourceEntity, buildObjectDescriptors(resourceEntity, photos));
+        }
+        return objects;
+    }
+
+    /**
+     * Find the Media of many Resource Keys, keyed as the database has them.
+     * @param mediaType A String containing the object type.
+     * @param resourceEntities The Resource Keys.
+     * @return A Map from Resource Key to its List of <code>Media</code>s.
+     * @throws HibernateException
+     */
+    protected Map<String, List<Media>> findMediaByResourceKeys(String mediaType, Collection<String> resourceEntities)
+        throws HibernateException
+    {
+        return MediaUtils.findByResourceKeys(mediaType, resourceEntities);
+    }
+
+    private static String matchKey(String resourceEntity)
+    {
+        return resourceEntity.trim().toUpperCase();
+    }
+
+    private List<ObjectDescriptor> buildObjectDescriptors(String resourceEntity, List<Media> photos)
+        throws RetsServerException
+    {
+        List<ObjectDescriptor> objects = new ArrayList<ObjectDescriptor>();
         for (Media photo : photos)
         {
             StringBuffer fileBuffer = new StringBuffer();
@@ -194,9 +294,9 @@ public class DatabaseObjectSet implements ObjectSet
             String filePath = fileBuffer.toString();
             File file = new File(filePath);
             LOG.debug("buildObjectDescriptor for photo.getObjectID(): " + photo.getObjectID() + 
-                                ", Resource Key: " + mResourceEntity + ", photo ResourceKey: " + 
+                                ", Resource Key: " + resourceEntity + ", photo ResourceKey: " + 
                                 photo.getMediaKey().getResourceKey());
-            ObjectDescriptor objectDescriptor = buildObjectDescriptor(file, photo.getObjectID());
+            ObjectDescriptor objectDescriptor = buildObjectDescriptor(resourceEntity, file, photo.getObjectID());
             if (objectDescriptor != null)
                 objects.add(objectDescriptor);
         }
@@ -239,6 +339,6 @@ public class DatabaseObjectSet implements ObjectSet
         LOG.debug("buildObjectDescriptor for media.getObjectID(): " + media.getObjectID() + 
                         ", Resource Key: " + mResourceEntity + 
                         ", media ResourceKey: " + media.getMediaKey().getResourceKey());
-        return buildObjectDescriptor(file, objectId);
+        return buildObjectDescriptor(mResourceEntity, file, objectId);
     }
 }
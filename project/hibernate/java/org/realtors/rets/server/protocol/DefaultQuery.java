@@ -10,6 +10,9 @@
  */
 package org.realtors.rets.server.protocol;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.commons.lang.StringUtils;
 import org.realtors.rets.server.protocol.SqlStatements.Query;
 
@@ -20,13 +23,23 @@ import org.realtors.rets.server.protocol.SqlStatements.Query;
 public class DefaultQuery implements Query
 {
     private String mSql;
+    private List<Object> mParameters;
     
     public DefaultQuery(final String sql)
+    {
+        this(sql, Collections.<Object>emptyList());
+    }
+
+    public DefaultQuery(final String sql, final List<Object> parameters)
     {
         if (StringUtils.isBlank(sql)) {
             throw new IllegalArgumentException("Query SQL must not be null or empty.");
         }
         mSql = sql;
+        if (parameters == null) {
+            throw new NullPointerException("Query parameters must not be null.");
+        }
+        mParameters = Collections.unmodifiableList(parameters);
     }
 
     /* (non-Javadoc)
@@ -35,5 +48,12 @@ public class DefaultQuery implements Query
     public String getSql() {
         return mSql;
     }
-    
+
+    /* (non-Javadoc)
+     * @see org.realtors.rets.server.protocol.SqlStatements.Query#getParameters()
+     */
+    public List<Object> getParameters() {
+        return mParameters;
+    }
+
 }
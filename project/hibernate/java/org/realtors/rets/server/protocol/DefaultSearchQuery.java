@@ -10,6 +10,7 @@
  */
 package org.realtors.rets.server.protocol;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.realtors.rets.server.dmql.DmqlParserMetadata;
@@ -23,10 +24,18 @@ public class DefaultSearchQuery extends DefaultQuery implements SearchQuery
 {
     private List/*String*/ mSelectedColumnNames;
     private DmqlParserMetadata mDmqlParserMetadata;
+    private boolean mOffsetApplied;
+    private String mKeyColumn;
+    private String mCountColumn;
     
     public DefaultSearchQuery(final String searchSql, final List/*String*/ selectedColumnNames, final DmqlParserMetadata dmqlParserMetadata)
     {
-        super(searchSql);
+        this(searchSql, Collections.<Object>emptyList(), selectedColumnNames, dmqlParserMetadata, false, null);
+    }
+
+    public DefaultSearchQuery(final String searchSql, final List<Object> parameters, final List/*String*/ selectedColumnNames, final DmqlParserMetadata dmqlParserMetadata, final boolean offsetApplied, final String keyColumn)
+    {
+        super(searchSql, parameters);
         if (selectedColumnNames == null || selectedColumnNames.isEmpty()) {
             throw new IllegalArgumentException("DMQL parser metadata must not be null or empty.");
         }
@@ -35,6 +44,14 @@ public class DefaultSearchQuery extends DefaultQuery implements SearchQuery
             throw new NullPointerException("DMQL parser metadata must not be null.");
         }
         mDmqlParserMetadata = dmqlParserMetadata;
+        mOffsetApplied = offsetApplied;
+        mKeyColumn = keyColumn;
+    }
+
+    public DefaultSearchQuery(final String searchSql, final List<Object> parameters, final List/*String*/ selectedColumnNames, final DmqlParserMetadata dmqlParserMetadata, final boolean offsetApplied, final String keyColumn, final String countColumn)
+    {
+        this(searchSql, parameters, selectedColumnNames, dmqlParserMetadata, offsetApplied, keyColumn);
+        mCountColumn = countColumn;
     }
 
     /* (non-Javadoc)
@@ -51,4 +68,25 @@ public class DefaultSearchQuery extends DefaultQuery implements SearchQuery
         return mDmqlParserMetadata;
     }
 
+    /* (non-Javadoc)
+     * @see org.realtors.rets.server.protocol.SqlStatements.SearchQuery#isOffsetApplied()
+     */
+    public boolean isOffsetApplied() {
+        return mOffsetApplied;
+    }
+
+    /* (non-Javadoc)
+     * @see org.realtors.rets.server.protocol.SqlStatements.SearchQuery#getKeyColumn()
+     */
+    public String getKeyColumn() {
+        return mKeyColumn;
+    }
+
+    /* (non-Javadoc)
+     * @see org.realtors.rets.server.protocol.SqlStatements.SearchQuery#getCountColumn()
+     */
+    public String getCountColumn() {
+        return mCountColumn;
+    }
+
 }
@@ -9,7 +9,6 @@ package org.realtors.rets.server.protocol;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.SortedSet;
 
@@ -19,12 +18,15 @@ import org.apache.log4j.Logger;
 import org.realtors.rets.common.metadata.MetadataType;
 import org.realtors.rets.common.metadata.types.MClass;
 import org.realtors.rets.common.metadata.types.MResource;
-import org.realtors.rets.common.metadata.types.MTable;
 import org.realtors.rets.server.Group;
 import org.realtors.rets.server.ReplyCode;
 import org.realtors.rets.server.RetsReplyException;
 import org.realtors.rets.server.RetsServer;
+import org.realtors.rets.server.ServerSnapshot;
+import org.realtors.rets.server.config.DatabaseConfig;
+import org.realtors.rets.server.config.DatabaseType;
 import org.realtors.rets.server.dmql.DmqlCompiler;
+import org.realtors.rets.server.dmql.ParameterizedSqlWriter;
 import org.realtors.rets.server.dmql.SqlConverter;
 import org.realtors.rets.server.dmql.DmqlCompiler.ParserResults;
 import org.realtors.rets.server.metadata.MetadataManager;
@@ -70,12 +72,21 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
                                          "Invalid class: " + className);
         }
 
-        TableGroupFilter groupFilter = RetsServer.getTableGroupFilter();
-        mTables = groupFilter.findTables(mGroups, resourceId, className);
-        mMetadata = new ServerDmqlMetadata(mTables,
-                                           mParameters.isStandardNames());
+        // Read before the filter, so a plan parsed against metadata from a
+        // filter that is replaced meanwhile is not kept
+        mPlanCache = RetsServer.getDmqlPlanCache();
+        mPlanGeneration = mPlanCache.getGeneration();
 
-        ConditionRuleSet conditionRuleSet = RetsServer.getConditionRuleSet();
+        // The filter and the rules must come from the same configuration
+        ServerSnapshot snapshot = RetsServer.getSnapshot();
+        TableGroupFilter groupFilter = snapshot.getTableGroupFilter();
+        ServerDmqlMetadataCache metadataCache =
+            RetsServer.getDmqlMetadataCache();
+        mMetadata = metadataCache.getMetadata(groupFilter, mGroups,
+                                              resourceId, className,
+                                              mParameters.isStandardNames());
+
+        ConditionRuleSet conditionRuleSet = snapshot.getConditionRuleSet();
         mSqlConstraint =
             conditionRuleSet.findSqlConstraint(mGroups, resourceId,
                                                className);
@@ -89,8 +100,9 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
     {
         Query countQuery = getCountQuery();
         SearchQuery searchQuery = getSearchQuery();
+        Query countEstimateQuery = getCountEstimateQuery();
 
-        SqlStatements sqlStatements = new DefaultSqlStatements(countQuery, searchQuery);
+        SqlStatements sqlStatements = new DefaultSqlStatements(countQuery, searchQuery, countEstimateQuery);
         return sqlStatements;
     }
     
@@ -103,17 +115,41 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
 
     protected Query getCountQuery() throws RetsReplyException
     {
+        List<Object> parameters = new ArrayList<Object>();
         StringBuffer buffer = new StringBuffer();
         buffer.append("SELECT COUNT(*)");
         buffer.append(" FROM ");
         buffer.append(getFromClause());
         buffer.append(" WHERE ");
-        buffer.append(getWhereClause());
+        buffer.append(getWhereClause(parameters));
         String countQuerySql = buffer.toString();
-        Query countQuery = new DefaultQuery(countQuerySql);
+        Query countQuery = new DefaultQuery(countQuerySql, parameters);
         return countQuery;
     }
 
+    /**
+     * Returns the query for the database's estimate of the count of a
+     * count-only search, or <code>null</code> if approximate counts are not
+     * configured or not supported by the database type.
+     */
+    protected Query getCountEstimateQuery() throws RetsReplyException
+    {
+        if (mParameters.getCount() != SearchParameters.COUNT_ONLY) {
+            return null;
+        }
+        DatabaseConfig databaseConfig = RetsServer.getDatabaseConfig();
+        if ((databaseConfig == null) || !databaseConfig.isApproximateCounts()) {
+            return null;
+        }
+        List<Object> parameters = new ArrayList<Object>();
+        String sql = databaseConfig.getDatabaseType().getRowEstimateSql(
+            getFromClause(), getWhereClause(parameters));
+        if (sql == null) {
+            return null;
+        }
+        return new DefaultQuery(sql, parameters);
+    }
+
     public String getResourceStandardName()
     {
         if (mResource != null)
@@ -123,34 +159,157 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
 
     protected SearchQuery getSearchQuery() throws RetsReplyException
     {
-        StringBuffer buffer = new StringBuffer();
-        buffer.append("SELECT ");
-
         List/*String*/ selectedColumnNames = getColumns();
 
         String selectClause = getSelectClause();
-        buffer.append(selectClause);
-        buffer.append(" FROM ");
-        buffer.append(getFromClause());
-        buffer.append(" WHERE ");
-        buffer.append(getWhereClause());
+        String fromClause = getFromClause();
+        List<Object> parameters = new ArrayList<Object>();
+        String whereClause = getWhereClause(parameters);
+        String orderByClause = null;
         if (this.mOrderByKeyField) {
-            buffer.append(" ORDER BY " + getOrderByClause());
+            orderByClause = getOrderByClause();
+        }
+
+        String keyColumn = null;
+        int skip = getRowsToSkip();
+        if (mParameters.isKeysetPaging() && (getOrderByClause() != null)) {
+            // The key of the last row is remembered for the next page, so
+            // it must be selected even if the client did not ask for it.
+            keyColumn = getOrderByClause();
+            if (!selectedColumnNames.contains(keyColumn)) {
+                selectClause = selectClause + "," + keyColumn;
+            }
+            Object keyAfter = mParameters.getKeyAfter();
+            if (keyAfter != null) {
+                LOG.debug("Seeking past key " + keyAfter);
+                StringBuffer keyedWhereClause = new StringBuffer(whereClause);
+                appendToWhereClause(keyedWhereClause, keyColumn + " > ?");
+                whereClause = keyedWhereClause.toString();
+                parameters.add(keyAfter);
+                skip = 0;
+            }
+        }
+
+        String countColumn = null;
+        String windowedCount = getWindowedCount();
+        if ((windowedCount != null) && (mParameters.getKeyAfter() == null)) {
+            // A keyset seek leaves out earlier rows, so they would not be
+            // counted.
+            countColumn = COUNT_COLUMN;
+            selectClause = selectClause + "," + windowedCount + " AS " +
+                countColumn;
+        }
+
+        String searchQuerySql = getPagedSearchSql(selectClause, fromClause,
+                                                  whereClause, orderByClause,
+                                                  skip);
+        boolean offsetApplied = ((searchQuerySql != null) || (skip == 0));
+        if (searchQuerySql == null) {
+            StringBuffer buffer = new StringBuffer();
+            buffer.append("SELECT ");
+            buffer.append(selectClause);
+            buffer.append(" FROM ");
+            buffer.append(fromClause);
+            buffer.append(" WHERE ");
+            buffer.append(whereClause);
+            if (orderByClause != null) {
+                buffer.append(" ORDER BY " + orderByClause);
+            }
+            searchQuerySql = buffer.toString();
         }
-        String searchQuerySql = buffer.toString();
-        SearchQuery searchQuery = new DefaultSearchQuery(searchQuerySql, selectedColumnNames, mMetadata);
+        SearchQuery searchQuery = new DefaultSearchQuery(searchQuerySql, parameters, selectedColumnNames, mMetadata, offsetApplied, keyColumn, countColumn);
         return searchQuery;
     }
 
-    protected String getWhereClause() throws RetsReplyException
+    /**
+     * Returns the windowed count expression to select along with the data,
+     * or <code>null</code> if the count is not wanted with the data or must
+     * come from a separate query.
+     */
+    protected String getWindowedCount()
+    {
+        if (mParameters.getCount() != SearchParameters.COUNT_AND_DATA) {
+            return null;
+        }
+        DatabaseConfig databaseConfig = RetsServer.getDatabaseConfig();
+        if ((databaseConfig == null) || !databaseConfig.isWindowedCount()) {
+            return null;
+        }
+        return databaseConfig.getDatabaseType().getWindowedCount();
+    }
+
+    /**
+     * Returns the number of rows to skip for the requested offset.  RETS
+     * offsets are one-based, so an offset of N skips N - 1 rows.
+     */
+    protected int getRowsToSkip()
+    {
+        Integer offset = mParameters.getOffset();
+        if ((offset != null) && (offset.intValue() > 1)) {
+            return offset.intValue() - 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the search SQL with the offset and limit pushed down to the
+     * database, or null if there is nothing to push down or the database
+     * type does not support it.
+     */
+    protected String getPagedSearchSql(String selectClause, String fromClause,
+                                       String whereClause, String orderByClause,
+                                       int skip)
+    {
+        DatabaseConfig databaseConfig = RetsServer.getDatabaseConfig();
+        if (databaseConfig == null) {
+            return null;
+        }
+
+        int limit = Integer.MAX_VALUE;
+        if (mLimit != null) {
+            limit = mLimit.intValue();
+        }
+        if ((skip == 0) && (limit == Integer.MAX_VALUE)) {
+            return null;
+        }
+
+        DatabaseType databaseType = databaseConfig.getDatabaseType();
+        String sql = databaseType.getPagedSelect(selectClause, fromClause,
+                                                 whereClause, orderByClause,
+                                                 skip, limit);
+        if (sql == null) {
+            LOG.debug("Paging not supported by " + databaseType.getName());
+        }
+        return sql;
+    }
+
+    /**
+     * Returns the WHERE clause for the DMQL query and any SQL constraint.
+     * When the database is configured for parameterized queries, the search
+     * values are written as placeholders and added to the parameters in the
+     * order they appear.
+     *
+     * @param parameters the bind parameters to append to
+     */
+    protected String getWhereClause(List<Object> parameters)
+        throws RetsReplyException
     {
         StringBuffer whereClause = new StringBuffer();
 
-        String dmqlQuery = mParameters.getQuery();
         ParserResults parserResults = parse(mMetadata);
         SqlConverter sqlConverter = parserResults.getSqlConverter();
         StringWriter stringWriter = new StringWriter();
-        sqlConverter.toSql(new PrintWriter(stringWriter));
+        if (isParameterizedQueries())
+        {
+            ParameterizedSqlWriter sqlWriter =
+                new ParameterizedSqlWriter(stringWriter);
+            sqlConverter.toSql(sqlWriter);
+            parameters.addAll(sqlWriter.getParameters());
+        }
+        else
+        {
+            sqlConverter.toSql(new PrintWriter(stringWriter));
+        }
         final String dmqlQueryAsSql = stringWriter.toString();
         appendToWhereClause(whereClause, dmqlQueryAsSql);
 
@@ -159,6 +318,13 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
         return whereClause.toString();
     }
 
+    protected boolean isParameterizedQueries()
+    {
+        DatabaseConfig databaseConfig = RetsServer.getDatabaseConfig();
+        return ((databaseConfig != null) &&
+                databaseConfig.isParameterizedQueries());
+    }
+
     protected void appendToWhereClause(StringBuffer whereClause, String whereClauseSegment)
     {
         if (!StringUtils.isBlank(whereClauseSegment)) {
@@ -169,7 +335,23 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
         }
     }
 
+    /**
+     * Returns the parsed DMQL query, reusing the result of an earlier parse
+     * of the same query when it is still in the plan cache.
+     */
     protected ParserResults parse(ServerDmqlMetadata metadata) throws RetsReplyException
+    {
+        ParserResults parserResults = mPlanCache.get(mGroups, mParameters);
+        if (parserResults == null)
+        {
+            parserResults = parseDmql(metadata);
+            mPlanCache.put(mPlanGeneration, mGroups, mParameters,
+                           parserResults);
+        }
+        return parserResults;
+    }
+
+    protected ParserResults parseDmql(ServerDmqlMetadata metadata) throws RetsReplyException
     {
         try
         {
@@ -250,15 +432,19 @@ public class DefaultSearchSqlBuilder implements SearchSqlBuilder
         return orderByClause;
     }
 
+    /** Alias of the windowed count column. */
+    public static final String COUNT_COLUMN = "rets_total_count";
+
     private static final Logger LOG =
         Logger.getLogger(DefaultSearchSqlBuilder.class);
     private MClass mClass;
     private MResource mResource;
-    private Collection<MTable> mTables;
     private ServerDmqlMetadata mMetadata;
     private SearchParameters mParameters;
     private SortedSet<Group> mGroups;
     private Integer mLimit;
     private boolean mOrderByKeyField;
     private String mSqlConstraint;
+    private DmqlPlanCache mPlanCache;
+    private int mPlanGeneration;
 }
@@ -12,6 +12,7 @@ package org.realtors.rets.server.protocol;
 
 import java.io.PrintWriter;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -36,7 +37,9 @@ import org.realtors.rets.server.RetsServer;
 import org.realtors.rets.server.RetsServerException;
 import org.realtors.rets.server.RetsUtils;
 import org.realtors.rets.server.UserUtils;
+import org.realtors.rets.server.config.DatabaseConfig;
 import org.realtors.rets.server.config.GroupRules;
+import org.realtors.rets.server.config.RetsConfig;
 import org.realtors.rets.server.config.SecurityConstraints;
 import org.realtors.rets.server.metadata.MetadataManager;
 import org.realtors.rets.server.protocol.SqlStatements.Query;
@@ -71,6 +74,7 @@ public class DefaultSearchTransaction implements SearchTransaction
 
             mLimit = getLimit();
             mExecuteQuery = true;
+            initKeysetPaging();
 
             mSearchSqlBuilder.setParameters(mParameters);
             mSearchSqlBuilder.setLimit(mLimit);
@@ -99,6 +103,44 @@ public class DefaultSearchTransaction implements SearchTransaction
         }
     }
 
+    /**
+     * Turns on keyset paging for offset searches if it is configured, and
+     * picks up where the previous page of the same search left off.
+     */
+    private void initKeysetPaging()
+    {
+        RetsConfig retsConfig = RetsServer.getRetsConfiguration();
+        if ((retsConfig == null) || !retsConfig.getKeysetPaging() ||
+            (mParameters.getOffset() == null))
+        {
+            return;
+        }
+        mParameters.setKeysetPaging(true);
+        KeysetCursorTable cursors = RetsServer.getKeysetCursorTable();
+        String username = mParameters.getUser().getUsername();
+        mParameters.setKeyAfter(cursors.findKeyAfter(username, mParameters));
+    }
+
+    /**
+     * Remembers the key the page ended on if the page was full, since the
+     * client is likely to ask for the next one.
+     */
+    private void saveKeysetCursor(SearchFormatterContext context)
+    {
+        KeysetCursorTable cursors = RetsServer.getKeysetCursorTable();
+        String username = mParameters.getUser().getUsername();
+        int rowCount = context.getRowCount();
+        if ((rowCount > 0) && context.exceededLimit())
+        {
+            cursors.putLastKey(username, mParameters, rowCount,
+                               context.getLastKey());
+        }
+        else
+        {
+            cursors.remove(username, mParameters);
+        }
+    }
+
     private int getLimit()
     {
         int userSuppliedLimit =  mParameters.getLimit();
@@ -147,41 +189,75 @@ public class DefaultSearchTransaction implements SearchTransaction
         {
             SqlStatements sqlStatements = mSearchSqlBuilder.createSqlStatements();
             Query countQuery = sqlStatements.getCountQuery(); 
-            getCount(countQuery);
             if (mParameters.getCount() == SearchParameters.COUNT_ONLY)
             {
+                getCountOnly(countQuery,
+                             sqlStatements.getCountEstimateQuery());
                 return printCountOnly(out);
             }
             else
             {
                 SearchQuery searchQuery = sqlStatements.getSearchQuery();
-                return printData(searchQuery, out);
+                return printData(countQuery, searchQuery, out);
             }
         }
     }
 
     /**
-     * Queries the database for the data and outputs the result.
+     * Queries the database for the data and outputs the result.  The rows
+     * are streamed from the database, so they are formatted as they arrive
+     * rather than after the whole result set has been read into memory.
+     * If a count is requested, it is read from the windowed count column of
+     * the first row when the search query has one, and is otherwise queried
+     * on the same connection before the data.
      *
      * @param out
      * @throws RetsServerException
      */
-    private SearchTransactionStatistics printData(SearchQuery searchQuery, PrintWriter out)
+    private SearchTransactionStatistics printData(Query countQuery,
+                                                  SearchQuery searchQuery,
+                                                  PrintWriter out)
         throws RetsServerException
     {
         Session session = null;
-        Statement statement = null;
+        Connection connection = null;
+        boolean autoCommit = true;
+        PreparedStatement statement = null;
         ResultSet resultSet = null;
         try
         {
-            String sql = searchQuery.getSql();
-            logSql(sql);
             session = mSessions.openSession();
-            Connection connection = session.connection();
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery(sql);
-            advance(resultSet);
-            return printResults(out, searchQuery, resultSet);
+            connection = session.connection();
+            String countColumn = searchQuery.getCountColumn();
+            mCount = 0;
+            if (mParameters.countRequested() && (countColumn == null))
+            {
+                getCount(connection, countQuery);
+            }
+            logSql(searchQuery);
+            autoCommit = connection.getAutoCommit();
+            statement = prepareStreamingStatement(connection, searchQuery);
+            resultSet = statement.executeQuery();
+            boolean rowFetched = false;
+            if (countColumn != null)
+            {
+                rowFetched = resultSet.next();
+                if (rowFetched)
+                {
+                    mCount = resultSet.getInt(countColumn);
+                }
+                else if (isOffsetRequested() || isLimitRequested())
+                {
+                    // Paged past the end, or limited to no rows, so no row
+                    // carries the count
+                    getCount(connection, countQuery);
+                }
+            }
+            if (!searchQuery.isOffsetApplied())
+            {
+                rowFetched = advance(resultSet, rowFetched);
+            }
+            return printResults(out, searchQuery, resultSet, rowFetched);
         }
         catch (HibernateException e)
         {
@@ -195,10 +271,51 @@ public class DefaultSearchTransaction implements SearchTransaction
         {
             close(resultSet);
             close(statement);
+            restoreAutoCommit(connection, autoCommit);
             close(session);
         }
     }
 
+    /**
+     * Prepares a forward-only, read-only statement using the fetch size
+     * configured for the database type, and binds the query parameters.
+     * Falls back to a plain forward-only statement if the database is not
+     * configured through rets-config.xml.
+     */
+    private PreparedStatement prepareStreamingStatement(Connection connection,
+                                                        Query query)
+        throws SQLException
+    {
+        PreparedStatement statement;
+        DatabaseConfig databaseConfig = RetsServer.getDatabaseConfig();
+        if (databaseConfig == null)
+        {
+            statement =
+                connection.prepareStatement(query.getSql(),
+                                            ResultSet.TYPE_FORWARD_ONLY,
+                                            ResultSet.CONCUR_READ_ONLY);
+        }
+        else
+        {
+            LOG.debug("Streaming with fetch size " +
+                      databaseConfig.getEffectiveFetchSize());
+            statement = databaseConfig.prepareStreamingStatement(
+                connection, query.getSql());
+        }
+        bindParameters(statement, query);
+        return statement;
+    }
+
+    private void bindParameters(PreparedStatement statement, Query query)
+        throws SQLException
+    {
+        List parameters = query.getParameters();
+        for (int i = 0; i < parameters.size(); i++)
+        {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+    }
+
     /**
      * Gets the count by querying the database. The count is the number of rows
      * matching the DMQL query.
@@ -213,26 +330,11 @@ public class DefaultSearchTransaction implements SearchTransaction
             return;
         }
 
-        String countSql = countQuery.getSql();
-        LOG.debug("Count SQL: " + countSql);
         Session session = null;
-        Statement statement = null;
-        ResultSet resultSet = null;
         try
         {
-            logSql(countSql);
             session = mSessions.openSession();
-            Connection connection = session.connection();
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery(countSql);
-            if (resultSet.next())
-            {
-                mCount = resultSet.getInt(1);
-            }
-            else
-            {
-                LOG.warn("COUNT(*) returned no rows");
-            }
+            getCount(session.connection(), countQuery);
         }
         catch (HibernateException e)
         {
@@ -245,6 +347,103 @@ public class DefaultSearchTransaction implements SearchTransaction
             throw new RetsServerException(e);
         }
         finally
+        {
+            close(session);
+        }
+    }
+
+    /**
+     * Gets the count for a count-only search.  A count queried recently
+     * enough is reused, and the database's estimate is used instead of an
+     * exact count when there is an estimate query.
+     *
+     * @param countQuery Exact count query
+     * @param countEstimateQuery Estimate query, or <code>null</code>
+     * @throws RetsServerException
+     */
+    private void getCountOnly(Query countQuery, Query countEstimateQuery)
+        throws RetsServerException
+    {
+        Query cacheQuery = countQuery;
+        if (countEstimateQuery != null)
+        {
+            cacheQuery = countEstimateQuery;
+        }
+        CountCache countCache = RetsServer.getCountCache();
+        long timeoutMillis = getCountCacheTimeoutMillis();
+        if (timeoutMillis > 0)
+        {
+            int count = countCache.getCount(cacheQuery, timeoutMillis);
+            if (count >= 0)
+            {
+                LOG.debug("Using cached count: " + count);
+                mCount = count;
+                return;
+            }
+        }
+
+        mCount = -1;
+        if (countEstimateQuery != null)
+        {
+            getCountEstimate(countEstimateQuery);
+        }
+        if (mCount < 0)
+        {
+            getCount(countQuery);
+        }
+        if (timeoutMillis > 0)
+        {
+            countCache.putCount(cacheQuery, mCount);
+        }
+    }
+
+    private long getCountCacheTimeoutMillis()
+    {
+        RetsConfig retsConfig = RetsServer.getRetsConfiguration();
+        if (retsConfig == null)
+        {
+            return 0;
+        }
+        return retsConfig.getCountCacheTimeout() * 1000L;
+    }
+
+    /**
+     * Sets the count to the database's estimate, or to -1 if the database
+     * gave none.
+     */
+    private void getCountEstimate(Query countEstimateQuery)
+        throws RetsServerException
+    {
+        mCount = -1;
+        DatabaseConfig databaseConfig = RetsServer.getDatabaseConfig();
+        Session session = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try
+        {
+            logSql(countEstimateQuery);
+            session = mSessions.openSession();
+            Connection connection = session.connection();
+            statement =
+                connection.prepareStatement(countEstimateQuery.getSql());
+            bindParameters(statement, countEstimateQuery);
+            resultSet = statement.executeQuery();
+            mCount =
+                databaseConfig.getDatabaseType().getRowEstimate(resultSet);
+            LOG.debug("Estimated count: " + mCount);
+        }
+        catch (HibernateException e)
+        {
+            LOG.error("Caught", e);
+            throw new RetsServerException(e);
+        }
+        catch (SQLException e)
+        {
+            // Not fatal, as the exact count can still be queried
+            LOG.warn("Could not estimate count", e);
+            mCount = -1;
+        }
+        finally
         {
             close(resultSet);
             close(statement);
@@ -252,6 +451,39 @@ public class DefaultSearchTransaction implements SearchTransaction
         }
     }
 
+    /**
+     * Gets the count by running the count query on a connection that is
+     * also used for the data.
+     */
+    private void getCount(Connection connection, Query countQuery)
+        throws SQLException
+    {
+        String countSql = countQuery.getSql();
+        LOG.debug("Count SQL: " + countSql);
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try
+        {
+            logSql(countQuery);
+            statement = connection.prepareStatement(countSql);
+            bindParameters(statement, countQuery);
+            resultSet = statement.executeQuery();
+            if (resultSet.next())
+            {
+                mCount = resultSet.getInt(1);
+            }
+            else
+            {
+                LOG.warn("COUNT(*) returned no rows");
+            }
+        }
+        finally
+        {
+            close(resultSet);
+            close(statement);
+        }
+    }
+
     private SearchTransactionStatistics printCountOnly(PrintWriter out)
     {
         ReplyCode replyCode = ReplyCode.SUCCESSFUL;
@@ -267,8 +499,13 @@ public class DefaultSearchTransaction implements SearchTransaction
         return statistics;
     }
 
-    private void logSql(String sql)
+    private void logSql(Query query)
     {
+        String sql = query.getSql();
+        if (!query.getParameters().isEmpty())
+        {
+            sql = sql + " PARAMETERS: " + query.getParameters();
+        }
         LOG.debug("SQL: " + sql);
 
         String select = StringUtils.join(mParameters.getSelect(), ",");
@@ -285,7 +522,8 @@ public class DefaultSearchTransaction implements SearchTransaction
 
     private SearchTransactionStatistics printResults(PrintWriter out,
                                      SearchQuery searchQuery,
-                                     ResultSet resultSet)
+                                     ResultSet resultSet,
+                                     boolean rowFetched)
         throws RetsServerException
     {
         List columns = searchQuery.getSelectedColumnNames();
@@ -297,6 +535,8 @@ public class DefaultSearchTransaction implements SearchTransaction
         context.setClassStandardName(mSearchSqlBuilder.getClassStandardName());
         context.setResourceStandardName(mSearchSqlBuilder.getResourceStandardName());
         context.setStandardNames(mParameters.isStandardNames());
+        context.setKeyColumn(searchQuery.getKeyColumn());
+        context.setRowFetched(rowFetched);
         SearchResultsFormatter formatter = getFormatter();
 
         ReplyCode replyCode = ReplyCode.SUCCESSFUL;
@@ -304,6 +544,10 @@ public class DefaultSearchTransaction implements SearchTransaction
         RetsUtils.printOpenRetsSuccess(out);
         printCount(out);
         formatter.formatResults(context);
+        if (searchQuery.getKeyColumn() != null)
+        {
+            saveKeysetCursor(context);
+        }
         int rowCount = context.getRowCount();
         LOG.debug("Row count: " + rowCount);
         SQL_LOG.info("Row Count: " + rowCount);
@@ -354,17 +598,45 @@ public class DefaultSearchTransaction implements SearchTransaction
         }
     }
 
-    private void advance(ResultSet resultSet) throws SQLException
+    /**
+     * Skips the rows before the requested offset.
+     *
+     * @param resultSet the results to skip rows of
+     * @param rowFetched <code>true</code> if the result set is already on a
+     *        row that has not been used
+     * @return <code>true</code> if the result set is still on a row that
+     *         has not been used
+     */
+    private boolean advance(ResultSet resultSet, boolean rowFetched)
+        throws SQLException
     {
         Integer offset = mParameters.getOffset();
         LOG.debug("Advancing using offset: " + offset);
-        // TODO: Add scrollable ResultSet support
         if (offset != null) {
             for (int i = 1; i < offset.intValue(); i++)
             {
-                resultSet.next();
+                if (rowFetched)
+                {
+                    rowFetched = false;
+                }
+                else
+                {
+                    resultSet.next();
+                }
             }
         }
+        return rowFetched;
+    }
+
+    private boolean isOffsetRequested()
+    {
+        Integer offset = mParameters.getOffset();
+        return ((offset != null) && (offset.intValue() > 1));
+    }
+
+    private boolean isLimitRequested()
+    {
+        return (mLimit != Integer.MAX_VALUE);
     }
 
     private void close(Session session)
@@ -389,6 +661,27 @@ public class DefaultSearchTransaction implements SearchTransaction
         }
     }
 
+    /**
+     * Some drivers need auto-commit turned off to stream results.  Put the
+     * connection back the way we found it before it returns to the pool.
+     */
+    private void restoreAutoCommit(Connection connection, boolean autoCommit)
+    {
+        try
+        {
+            if ((connection != null) && autoCommit &&
+                !connection.getAutoCommit())
+            {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            LOG.error("Caught", e);
+        }
+    }
+
     private void close(Statement statement)
     {
         try
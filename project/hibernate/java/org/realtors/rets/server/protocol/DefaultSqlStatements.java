@@ -26,6 +26,7 @@ public class DefaultSqlStatements implements SqlStatements
 {
     private Query mCountQuery;
     private SearchQuery mSearchQuery;
+    private Query mCountEstimateQuery;
     
     public DefaultSqlStatements(final Query countQuery, final SearchQuery searchQuery)
     {
@@ -38,6 +39,12 @@ public class DefaultSqlStatements implements SqlStatements
         }
         mSearchQuery = searchQuery;
     }
+
+    public DefaultSqlStatements(final Query countQuery, final SearchQuery searchQuery, final Query countEstimateQuery)
+    {
+        this(countQuery, searchQuery);
+        mCountEstimateQuery = countEstimateQuery;
+    }
     
     public DefaultSqlStatements(final String countQuerySql, final String searchQuerySql, final List/*String*/ selectedColumnNames, final DmqlParserMetadata dmqlParserMetadata)
     {
@@ -61,5 +68,12 @@ public class DefaultSqlStatements implements SqlStatements
     public SearchQuery getSearchQuery() {
         return mSearchQuery;
     }
+
+    /* (non-Javadoc)
+     * @see org.realtors.rets.server.protocol.SqlStatements#getCountEstimateQuery()
+     */
+    public Query getCountEstimateQuery() {
+        return mCountEstimateQuery;
+    }
     
 }
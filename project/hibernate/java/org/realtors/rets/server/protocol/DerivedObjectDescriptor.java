@@ -0,0 +1,45 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.realtors.rets.server.IOUtils;
+import org.realtors.rets.server.config.DerivedObjectType;
+
+/**
+ * An object of a derived type, such as a thumbnail, made from a local
+ * source object.  The object is only generated when it is opened, so
+ * clients asking for its location do not wait for it.
+ */
+public class DerivedObjectDescriptor extends ObjectDescriptor
+{
+    public DerivedObjectDescriptor(ObjectDescriptor source,
+                                   DerivedObjectType type,
+                                   DerivedObjectGenerator generator)
+    {
+        super(source.getObjectKey(), source.getObjectId(), source.getUrl(),
+              source.getDescription());
+        mType = type;
+        mGenerator = generator;
+    }
+
+    public DerivedObjectType getType()
+    {
+        return mType;
+    }
+
+    public ObjectStream openObjectStream() throws IOException
+    {
+        File source = IOUtils.urlToFile(getUrl());
+        return openFile(mGenerator.getDerivedFile(source, mType));
+    }
+
+    private DerivedObjectType mType;
+    private DerivedObjectGenerator mGenerator;
+}
@@ -0,0 +1,337 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.log4j.Logger;
+
+import org.realtors.rets.server.IOUtils;
+import org.realtors.rets.server.config.DerivedObjectType;
+
+/**
+ * Generates the objects of derived types, such as thumbnails, by scaling
+ * down the source images with ImageIO.  Generated images are kept in a
+ * directory under the GetObject root, so each one is only generated once
+ * for as long as its source image does not change.
+ * <p>
+ * Images are scaled on a fixed number of worker threads, so a burst of
+ * requests for new thumbnails cannot take every processor.  Requests for
+ * an image that is already being generated wait for that image, rather
+ * than generating it again.
+ */
+public class DerivedObjectGenerator
+{
+    public DerivedObjectGenerator(String rootDirectory,
+                                  List<DerivedObjectType> types)
+    {
+        this(rootDirectory, types, DEFAULT_THREADS);
+    }
+
+    public DerivedObjectGenerator(String rootDirectory,
+                                  List<DerivedObjectType> types, int threads)
+    {
+        mRootDirectory = new File(rootDirectory);
+        mCacheDirectory = new File(mRootDirectory, CACHE_DIRECTORY);
+        mTypes = new HashMap<String, DerivedObjectType>();
+        for (DerivedObjectType type : types)
+        {
+            mTypes.put(type.getName(), type);
+        }
+        mPending = new ConcurrentHashMap<String, FutureTask<File>>();
+        mExecutor = new ThreadPoolExecutor(
+            threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(MAX_QUEUED),
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread =
+                        Executors.defaultThreadFactory().newThread(runnable);
+                    thread.setName("DerivedObjectGenerator-" +
+                                   thread.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Returns the derived type with a name, or <code>null</code> if the
+     * type is not derived.
+     */
+    public DerivedObjectType getType(String name)
+    {
+        return mTypes.get(name);
+    }
+
+    /**
+     * Returns the file of the object derived from a source image,
+     * generating it first if it does not exist or is older than the source.
+     *
+     * @param source source image
+     * @param type derived type
+     * @return the derived image
+     * @throws IOException if the source does not exist, is not an image,
+     *         or the derived image could not be written
+     */
+    public File getDerivedFile(final File source, final DerivedObjectType type)
+        throws IOException
+    {
+        final File derived = getCacheFile(source, type);
+        if (isUpToDate(derived, source))
+        {
+            return derived;
+        }
+
+        String key = derived.getPath();
+        FutureTask<File> task = new FutureTask<File>(new Callable<File>()
+        {
+            public File call() throws IOException
+            {
+                // Another request may have generated it in the meantime
+                if (!isUpToDate(derived, source))
+                {
+                    generate(source, derived, type);
+                }
+                return derived;
+            }
+        });
+        FutureTask<File> pending = mPending.putIfAbsent(key, task);
+        if (pending == null)
+        {
+            pending = task;
+            try
+            {
+                mExecutor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                mPending.remove(key, task);
+                throw new IOException("Too many images waiting to be " +
+                                      "generated: " + derived);
+            }
+        }
+
+        try
+        {
+            return pending.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted generating: " + derived);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            IOException ioException =
+                new IOException("Could not generate: " + derived);
+            ioException.initCause(cause);
+            throw ioException;
+        }
+        finally
+        {
+            mPending.remove(key, pending);
+        }
+    }
+
+    private boolean isUpToDate(File derived, File source)
+        throws IOException
+    {
+        long sourceModified = source.lastModified();
+        if (sourceModified == 0)
+        {
+            // Also covers the source having been deleted
+            throw new FileNotFoundException(source.getPath());
+        }
+        return derived.lastModified() >= sourceModified;
+    }
+
+    /**
+     * Returns where the derived image of a source image is kept.  Sources
+     * under the root directory keep their relative path.  Others are named
+     * after a hash of their path.
+     */
+    File getCacheFile(File source, DerivedObjectType type)
+    {
+        File typeDirectory = new File(mCacheDirectory, type.getName());
+        String relativePath = IOUtils.relativize(
+            mRootDirectory.getAbsolutePath(), source.getAbsolutePath());
+        String name;
+        if (new File(relativePath).isAbsolute() ||
+            relativePath.startsWith(".."))
+        {
+            name = DigestUtils.shaHex(source.getAbsolutePath()) + "-" +
+                source.getName();
+        }
+        else
+        {
+            name = relativePath;
+        }
+        if (!hasWriter(getSuffix(name)))
+        {
+            name = name + "." + FALLBACK_FORMAT;
+        }
+        return new File(typeDirectory, name);
+    }
+
+    private void generate(File source, File derived, DerivedObjectType type)
+        throws IOException
+    {
+        long start = System.currentTimeMillis();
+        BufferedImage image = ImageIO.read(source);
+        if (image == null)
+        {
+            throw new IOException("Not a supported image: " + source);
+        }
+        String format = getSuffix(derived.getName());
+        BufferedImage scaled = scale(image, type, format);
+
+        File directory = derived.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create directory: " + directory);
+        }
+        // Write to a temporary file first, so no request ever sees half an
+        // image
+        File temporary = File.createTempFile("derived", ".tmp", directory);
+        try
+        {
+            if (!ImageIO.write(scaled, format, temporary))
+            {
+                throw new IOException("No image writer for: " + format);
+            }
+            if (!temporary.renameTo(derived))
+            {
+                derived.delete();
+                if (!temporary.renameTo(derived))
+                {
+                    throw new IOException("Could not rename " + temporary +
+                                          " to " + derived);
+                }
+            }
+        }
+        finally
+        {
+            temporary.delete();
+        }
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Generated " + derived + " in " +
+                      (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Scales an image down to fit the maximum size of a type, keeping its
+     * aspect ratio.  Images that already fit are not scaled up.
+     */
+    static BufferedImage scale(BufferedImage image, DerivedObjectType type,
+                               String format)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = 1.0;
+        if (type.getMaxWidth() > 0)
+        {
+            scale = Math.min(scale, (double) type.getMaxWidth() / width);
+        }
+        if (type.getMaxHeight() > 0)
+        {
+            scale = Math.min(scale, (double) type.getMaxHeight() / height);
+        }
+        int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // JPEG has no alpha channel
+        boolean alpha = image.getColorModel().hasAlpha() &&
+            !format.equals("jpg") && !format.equals("jpeg");
+        BufferedImage scaled = new BufferedImage(
+            scaledWidth, scaledHeight,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try
+        {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING,
+                RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static String getSuffix(String name)
+    {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0)
+        {
+            return "";
+        }
+        return name.substring(dot + 1).toLowerCase();
+    }
+
+    private static boolean hasWriter(String suffix)
+    {
+        return (suffix.length() > 0) &&
+            ImageIO.getImageWritersBySuffix(suffix).hasNext();
+    }
+
+    /**
+     * Stops the worker threads.  Images being generated are finished.
+     */
+    public void shutdown()
+    {
+        mExecutor.shutdown();
+    }
+
+    private static final Logger LOG =
+        Logger.getLogger(DerivedObjectGenerator.class);
+    /** The directory under the root that generated images are kept in. */
+    public static final String CACHE_DIRECTORY = ".derived";
+    private static final String FALLBACK_FORMAT = "png";
+    private static final int DEFAULT_THREADS =
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int MAX_QUEUED = 100;
+
+    private File mRootDirectory;
+    private File mCacheDirectory;
+    private Map<String, DerivedObjectType> mTypes;
+    private ConcurrentMap<String, FutureTask<File>> mPending;
+    private ThreadPoolExecutor mExecutor;
+}
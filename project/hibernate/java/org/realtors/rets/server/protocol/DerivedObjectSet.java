@@ -0,0 +1,101 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.realtors.rets.server.ReplyCode;
+import org.realtors.rets.server.RetsServerException;
+import org.realtors.rets.server.config.DerivedObjectType;
+
+/**
+ * Adds the derived types to another object set.  Objects of a derived type
+ * that the object set has itself, such as thumbnails that already exist,
+ * are used as they are.  Otherwise, the objects of the source type are
+ * found and derived from.
+ */
+public class DerivedObjectSet implements ObjectSet
+{
+    public DerivedObjectSet(ObjectSet objectSet,
+                            DerivedObjectGenerator generator)
+    {
+        mObjectSet = objectSet;
+        mGenerator = generator;
+    }
+
+    public void setResource(String resource)
+    {
+        mObjectSet.setResource(resource);
+    }
+
+    public void setResourceEntity(String resourceEntity)
+    {
+        mObjectSet.setResourceEntity(resourceEntity);
+    }
+
+    public List findAllObjects(String type) throws RetsServerException
+    {
+        List objects = mObjectSet.findAllObjects(type);
+        DerivedObjectType derivedType = mGenerator.getType(type);
+        if ((derivedType == null) || !objects.isEmpty())
+        {
+            return objects;
+        }
+        List sources =
+            mObjectSet.findAllObjects(derivedType.getSourceName());
+        List derived = new ArrayList(sources.size());
+        for (int i = 0; i < sources.size(); i++)
+        {
+            derived.add(derive((ObjectDescriptor) sources.get(i),
+                               derivedType));
+        }
+        return derived;
+    }
+
+    public ObjectDescriptor findObject(String type, int objectId)
+        throws RetsServerException
+    {
+        DerivedObjectType derivedType = mGenerator.getType(type);
+        ObjectDescriptor object = mObjectSet.findObject(type, objectId);
+        if ((derivedType == null) || isFound(object))
+        {
+            return object;
+        }
+        ObjectDescriptor source =
+            mObjectSet.findObject(derivedType.getSourceName(), objectId);
+        if (source == null)
+        {
+            return object;
+        }
+        return derive(source, derivedType);
+    }
+
+    private boolean isFound(ObjectDescriptor object)
+    {
+        return (object != null) &&
+            (object.getRetsReplyCode() == ReplyCode.SUCCESSFUL);
+    }
+
+    /**
+     * Returns the derived object of a source object.  Only local images can
+     * be derived from, so other objects, and objects that were not found,
+     * are returned as they are.
+     */
+    private ObjectDescriptor derive(ObjectDescriptor source,
+                                    DerivedObjectType type)
+    {
+        if (!isFound(source) || !source.isLocal())
+        {
+            return source;
+        }
+        return new DerivedObjectDescriptor(source, type, mGenerator);
+    }
+
+    private ObjectSet mObjectSet;
+    private DerivedObjectGenerator mGenerator;
+}
@@ -0,0 +1,145 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+
+import org.realtors.rets.server.Group;
+import org.realtors.rets.server.dmql.DmqlCompiler.ParserResults;
+
+/**
+ * Remembers the parsed form of recent DMQL queries, so a query that is sent
+ * again does not have to be lexed, parsed and walked again.  The parsed
+ * query depends on the metadata the user can see, so the cache is keyed by
+ * the user's groups, the resource and class, the standard names setting,
+ * the query type and the query text.  Entries are kept in least recently
+ * used order and the whole cache must be cleared whenever the metadata or
+ * configuration changes.  A query parsed against the old metadata may
+ * finish after the cache is cleared, so a plan is only kept if the cache
+ * has not been cleared since the search read the generation.
+ */
+public class DmqlPlanCache
+{
+    public DmqlPlanCache()
+    {
+        this(DEFAULT_MAX_PLANS);
+    }
+
+    public DmqlPlanCache(final int maxPlans)
+    {
+        mPlans = new LinkedHashMap<String, ParserResults>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxPlans;
+            }
+        };
+    }
+
+    /**
+     * Returns the parsed query, or <code>null</code> if it has not been
+     * parsed since the cache was last cleared.
+     *
+     * @param groups Groups of the user doing the search
+     * @param parameters Search parameters
+     * @return the parsed query, or <code>null</code>
+     */
+    public synchronized ParserResults get(SortedSet<Group> groups,
+                                          SearchParameters parameters)
+    {
+        ParserResults results = mPlans.get(getKey(groups, parameters));
+        if (results == null)
+        {
+            mMisses++;
+        }
+        else
+        {
+            mHits++;
+        }
+        return results;
+    }
+
+    /**
+     * Keeps a parsed query, unless the cache was cleared after the query
+     * started to be parsed.
+     *
+     * @param generation Generation read before the metadata the query was
+     *        parsed against was looked up
+     * @param groups Groups of the user doing the search
+     * @param parameters Search parameters
+     * @param results The parsed query
+     */
+    public synchronized void put(int generation, SortedSet<Group> groups,
+                                 SearchParameters parameters,
+                                 ParserResults results)
+    {
+        if (generation == mGeneration)
+        {
+            mPlans.put(getKey(groups, parameters), results);
+        }
+    }
+
+    /**
+     * Returns the generation of the cache, which changes every time it is
+     * cleared.
+     */
+    public synchronized int getGeneration()
+    {
+        return mGeneration;
+    }
+
+    public synchronized void clear()
+    {
+        mPlans.clear();
+        mGeneration++;
+    }
+
+    public synchronized int size()
+    {
+        return mPlans.size();
+    }
+
+    public synchronized long getHits()
+    {
+        return mHits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return mMisses;
+    }
+
+    private String getKey(SortedSet<Group> groups,
+                          SearchParameters parameters)
+    {
+        StringBuffer key = new StringBuffer();
+        if (groups != null)
+        {
+            for (Iterator<Group> i = groups.iterator(); i.hasNext();)
+            {
+                key.append(i.next().getName()).append(',');
+            }
+        }
+        key.append('\n');
+        key.append(parameters.getResourceId()).append(':');
+        key.append(parameters.getClassName()).append('\n');
+        key.append(parameters.isStandardNames()).append('\n');
+        key.append(parameters.getQueryType()).append('\n');
+        key.append(parameters.getQuery().trim());
+        return key.toString();
+    }
+
+    public static final int DEFAULT_MAX_PLANS = 1000;
+
+    private Map<String, ParserResults> mPlans;
+    private long mHits;
+    private long mMisses;
+    private int mGeneration;
+}
@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.nio.channels.FileChannel;
 
 import org.apache.log4j.Logger;
 
@@ -16,6 +17,7 @@ public class FileObjectStream implements ObjectStream
 
     public FileObjectStream(File file) throws FileNotFoundException
     {
+        mFile = file;
         mMimeType = getContentType(file.getPath());
         mInputStream = new FileInputStream(file);
     }
@@ -29,6 +31,25 @@ public class FileObjectStream implements ObjectStream
     {
         return mMimeType;
     }
+
+    /**
+     * Returns the file the stream reads.
+     */
+    public File getFile()
+    {
+        return mFile;
+    }
+
+    /**
+     * Returns the channel of the file, which tells its size.  The channel
+     * shares its position with the input stream.
+     *
+     * @return the channel of the file
+     */
+    public FileChannel getChannel()
+    {
+        return mInputStream.getChannel();
+    }
     
     public String getContentType(String file)
     {
@@ -62,6 +83,7 @@ public class FileObjectStream implements ObjectStream
     private static final Logger LOG =
         Logger.getLogger(FileObjectStream.class);
 
+    private File mFile;
     private String mMimeType;
     private FileInputStream mInputStream;
 }
@@ -10,6 +10,7 @@
  */
 package org.realtors.rets.server.protocol;
 
+import java.io.File;
 import java.io.OutputStream;
 import java.io.IOException;
 
@@ -17,6 +18,20 @@ public interface GetObjectResponse
 {
     public OutputStream getOutputStream() throws IOException;
 
+    /**
+     * Asks the server to send a file as the whole body of the response once
+     * the request is done, instead of it being written to the output
+     * stream.  Nothing may be written to the output stream if the server
+     * agrees.
+     *
+     * @param file file to send
+     * @param length length of the file, in bytes
+     * @return <code>true</code> if the server will send the file, or
+     *         <code>false</code> if it must be written to the output stream
+     * @throws IOException if the file could not be handed to the server
+     */
+    public boolean sendFile(File file, long length) throws IOException;
+
     public void setContentType(String contentType);
 
     public void setHeader(String name, String value);
@@ -10,13 +10,16 @@
  */
 package org.realtors.rets.server.protocol;
 
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
@@ -130,8 +133,24 @@ public class GetObjectTransaction
         {
             ObjectStream stream = objectDescriptor.openObjectStream();
             response.setContentType(stream.getMimeType());
-            IOUtils.copyStream(stream.getInputStream(),
-                               response.getOutputStream());
+            if (stream instanceof FileObjectStream)
+            {
+                FileObjectStream fileStream = (FileObjectStream) stream;
+                long length = fileStream.getChannel().size();
+                response.setHeader("Content-Length", "" + length);
+                if (response.sendFile(fileStream.getFile(), length))
+                {
+                    // The server reads the file itself
+                    stream.getInputStream().close();
+                    return;
+                }
+            }
+            else if (stream instanceof ByteArrayObjectStream)
+            {
+                byte[] bytes = ((ByteArrayObjectStream) stream).getBytes();
+                response.setHeader("Content-Length", "" + bytes.length);
+            }
+            writeObject(response, stream, null);
         }
     }
 
@@ -143,75 +162,151 @@ public class GetObjectTransaction
         response.setContentType("multipart/parallel; " +
                                 "boundary=\"" + boundary +"\"");
         response.setHeader("MIME-Version", "1.0");
-        DataOutputStream out = new DataOutputStream(response.getOutputStream());
-
-        for (int i = 0; i < allObjects.size(); i++)
-        {
-            ObjectDescriptor objectDescriptor =
-                (ObjectDescriptor) allObjects.get(i);
-            LOG.info("GetObject (mulitpart) URL: " + objectDescriptor.getUrl() + 
-                ", objectKey: " + objectDescriptor.getObjectKey());
-            out.writeBytes(CRLF + "--" + boundary + CRLF);
-            out.writeBytes("Content-ID: " + objectDescriptor.getObjectKey() +
-                           CRLF);
-            String description = objectDescriptor.getDescription();
-            if (description != null)
+        OutputStream out = response.getOutputStream();
+        StringBuffer part = new StringBuffer();
+        // One buffer for all the objects that cannot be transferred directly
+        byte[] buffer = null;
+
+        ObjectPrefetcher prefetcher = null;
+        if (!useLocation() && (mReadAhead > 0) && (allObjects.size() > 1))
+        {
+            prefetcher = new ObjectPrefetcher(allObjects, mReadAhead);
+        }
+
+        try
+        {
+            for (int i = 0; i < allObjects.size(); i++)
             {
-                out.writeBytes("Content-Description: " + description + CRLF);
+                ObjectDescriptor objectDescriptor =
+                    (ObjectDescriptor) allObjects.get(i);
+                LOG.info("GetObject (mulitpart) URL: " + objectDescriptor.getUrl() + 
+                    ", objectKey: " + objectDescriptor.getObjectKey());
+                part.append(CRLF + "--" + boundary + CRLF);
+                part.append("Content-ID: " + objectDescriptor.getObjectKey() +
+                            CRLF);
+                String description = objectDescriptor.getDescription();
+                if (description != null)
+                {
+                    part.append("Content-Description: " + description + CRLF);
+                }
+                if (objectDescriptor.getRetsReplyCode() != ReplyCode.SUCCESSFUL &&
+                        allObjects.size() == 1 && mWildObject)
+                {
+                    part.append("Object-ID: *" + CRLF);
+                }
+                else
+                {
+                    part.append("Object-ID: " + objectDescriptor.getObjectId() +
+                                CRLF);
+                }
+                if (useLocation())
+                {
+                    part.append("Content-Type: text/xml" + CRLF);
+                	if (objectDescriptor.getRetsReplyCode() == ReplyCode.SUCCESSFUL)
+                	{
+                		part.append("Location: " + getLocationUrl(objectDescriptor) +
+                                    CRLF + CRLF);
+                		part.append("<RETS ReplyCode=\"0\" ReplyText=\"Operation Successful\"/>" +
+                						CRLF);
+                	}
+                	else
+                	{
+                		part.append("Location: " + CRLF + CRLF);
+                		part.append("<RETS ReplyCode=\"20403\" ReplyText=\"No Object Found\"/>" +
+                							CRLF);
+                	}
+                }
+                else
+                {
+                    /*
+                     * Fetch the object and output it
+                     */
+                    try
+                    {
+                        ObjectStream stream = (prefetcher != null) ?
+                            prefetcher.next() : objectDescriptor.openObjectStream();
+                        part.append("Content-Type: " + stream.getMimeType() + CRLF);
+                        part.append(CRLF);
+                        writePart(out, part);
+                        if (buffer == null)
+                        {
+                            buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+                        }
+                        writeObject(response, stream, buffer);
+                    }
+                    catch (IOException e)
+                    {
+                        /*
+                         * Log the error and masquerade as No Object Found
+                         */
+                        LOG.error(e);
+                        part.append("Content-Type: text/xml" + CRLF + CRLF);
+                        part.append("<RETS ReplyCode=\"20403\" ReplyText=\"No Object Found\"/>" +
+                                    CRLF);
+                    }
+                }
+                writePart(out, part);
             }
-            if (objectDescriptor.getRetsReplyCode() != ReplyCode.SUCCESSFUL &&
-                    allObjects.size() == 1 && mWildObject)
+        }
+        finally
+        {
+            if (prefetcher != null)
             {
-                out.writeBytes("Object-ID: *" + CRLF);
+                prefetcher.close();
             }
-            else
+        }
+        part.append(CRLF + "--" + boundary + "--" + CRLF);
+        writePart(out, part);
+        out.close();
+    }
+
+    /**
+     * Writes the headers of a part in one write, rather than a byte at a
+     * time, and empties the buffer they were collected in.  Like
+     * <code>DataOutputStream.writeBytes</code>, each character is written
+     * as a single byte.
+     */
+    private void writePart(OutputStream out, StringBuffer part)
+        throws IOException
+    {
+        if (part.length() > 0)
+        {
+            out.write(part.toString().getBytes("ISO-8859-1"));
+            part.setLength(0);
+        }
+    }
+
+    /**
+     * Writes an object to the response, and closes its stream.  Cached
+     * objects are written in one call.  Other objects are copied through
+     * the buffer, or a new one if it is <code>null</code>.
+     */
+    private void writeObject(GetObjectResponse response, ObjectStream stream,
+                             byte[] buffer)
+        throws IOException
+    {
+        try
+        {
+            if (stream instanceof ByteArrayObjectStream)
             {
-                out.writeBytes("Object-ID: " + objectDescriptor.getObjectId() +
-                           CRLF);
+                response.getOutputStream().write(
+                    ((ByteArrayObjectStream) stream).getBytes());
             }
-            if (useLocation())
+            else if (buffer != null)
             {
-                out.writeBytes("Content-Type: text/xml" + CRLF);
-            	if (objectDescriptor.getRetsReplyCode() == ReplyCode.SUCCESSFUL)
-            	{
-            		out.writeBytes("Location: " + getLocationUrl(objectDescriptor) +
-                               CRLF + CRLF);
-            		out.writeBytes("<RETS ReplyCode=\"0\" ReplyText=\"Operation Successful\"/>" +
-            						CRLF);
-            	}
-            	else
-            	{
-            		out.writeBytes("Location: " + CRLF + CRLF);
-            		out.writeBytes("<RETS ReplyCode=\"20403\" ReplyText=\"No Object Found\"/>" +
-            							CRLF);
-            	}
+                IOUtils.copyStream(stream.getInputStream(),
+                                   response.getOutputStream(), buffer);
             }
             else
             {
-                /*
-                 * Fetch the object and output it
-                 */
-                try
-                {
-                    ObjectStream stream = objectDescriptor.openObjectStream();
-                    out.writeBytes("Content-Type: " + stream.getMimeType() + CRLF);
-                    out.writeBytes(CRLF);
-                    IOUtils.copyStream(stream.getInputStream(), out);
-                }
-                catch (IOException e)
-                {
-                    /*
-                     * Log the error and masquerade as No Object Found
-                     */
-                    LOG.error(e);
-                    out.writeBytes("Content-Type: text/xml" + CRLF + CRLF);
-                    out.writeBytes("<RETS ReplyCode=\"20403\" ReplyText=\"No Object Found\"/>" +
-                                        CRLF);
-                }
+                IOUtils.copyStream(stream.getInputStream(),
+                                   response.getOutputStream());
             }
         }
-        out.writeBytes(CRLF + "--" + boundary + "--" + CRLF);
-        out.close();
+        finally
+        {
+            stream.getInputStream().close();
+        }
     }
 
     private boolean useLocation()
@@ -232,6 +327,8 @@ public class GetObjectTransaction
         throws RetsServerException
     {
         List objects = new ArrayList();
+        Map<String, List<ObjectDescriptor>> batchedObjects =
+            findAllObjectsInBatch();
         int numberOfResources = mParameters.numberOfResources();
         for (int i = 0; i < numberOfResources; i++)
         {
@@ -244,7 +341,19 @@ public class GetObjectTransaction
                 if (objectIdString.equals("*"))
                 {
                     mWildObject = true;
-                    objects.addAll(objectSet.findAllObjects(mType));
+                    if (batchedObjects != null)
+                    {
+                        List<ObjectDescriptor> batched =
+                            batchedObjects.get(resourceEntity);
+                        if (batched != null)
+                        {
+                            objects.addAll(batched);
+                        }
+                    }
+                    else
+                    {
+                        objects.addAll(objectSet.findAllObjects(mType));
+                    }
                 }
                 else
                 {
@@ -261,6 +370,41 @@ public class GetObjectTransaction
         return objects;
     }
     
+    /**
+     * Finds all the objects of every entity asked for with "*" at once, if
+     * there is more than one such entity and the object set can find them
+     * in a batch.
+     *
+     * @return the objects of each entity, or <code>null</code> if they
+     *         should be found one entity at a time
+     * @throws RetsServerException
+     */
+    private Map<String, List<ObjectDescriptor>> findAllObjectsInBatch()
+        throws RetsServerException
+    {
+        Set<String> resourceEntities = new LinkedHashSet<String>();
+        int numberOfResources = mParameters.numberOfResources();
+        for (int i = 0; i < numberOfResources; i++)
+        {
+            if (mParameters.getObjectIdList(i).contains("*"))
+            {
+                resourceEntities.add(mParameters.getResourceEntity(i));
+            }
+        }
+        if (resourceEntities.size() < 2)
+        {
+            return null;
+        }
+        ObjectSet objectSet =
+            getObjectSet(resourceEntities.iterator().next());
+        if (!(objectSet instanceof BatchObjectSet))
+        {
+            return null;
+        }
+        return ((BatchObjectSet) objectSet).findAllObjects(mType,
+                                                           resourceEntities);
+    }
+
     public ObjectDescriptor findObjectDescriptor(String resourceEntity,
                                                  int objectId)
         throws RetsServerException
@@ -273,13 +417,15 @@ public class GetObjectTransaction
      * Get the correct object set for this resource entity.  First, check
      * for an XML object set.  If that does not exist, try an image
      * pattern object set.  If no image pattern was set, then return
-     * a null object set that always returns no object descriptors.
+     * a null object set that always returns no object descriptors.  If the
+     * type is derived from another, such as thumbnails, the object set is
+     * wrapped to derive its objects.
      *
      * @param resourceEntity
      * @return
      * @throws RetsServerException
      */
-    private ObjectSet getObjectSet(String resourceEntity)
+    protected ObjectSet getObjectSet(String resourceEntity)
         throws RetsServerException
     {
         ObjectSet objectSet = RetsServer.createCustomObjectSet();
@@ -296,6 +442,13 @@ public class GetObjectTransaction
             }
         }
         
+        DerivedObjectGenerator generator =
+            RetsServer.getDerivedObjectGenerator();
+        if ((generator != null) && (generator.getType(mType) != null))
+        {
+            objectSet = new DerivedObjectSet(objectSet, generator);
+        }
+
         objectSet.setResource(mResource);
         objectSet.setResourceEntity(resourceEntity);
         return objectSet;
@@ -319,25 +472,45 @@ public class GetObjectTransaction
             return null;
         }
 
-        GetObjectPatternParser patternParser =
-            new GetObjectPatternParser(mObjectSetPattern);
-        GetObjectPatternFormatter formatter = patternParser.parse();
+        ObjectSetCache cache = RetsServer.getObjectSetCache();
+        GetObjectPatternFormatter formatter;
+        if (cache != null)
+        {
+            formatter = cache.getFormatter(mObjectSetPattern);
+        }
+        else
+        {
+            formatter = new GetObjectPatternParser(mObjectSetPattern).parse();
+        }
         GetObjectPatternContext patternContext =
             new GetObjectPatternContext(resourceEntity, -1);
         StringBuffer buffer = new StringBuffer(mRootDirectory);
         buffer.append(File.separator);
         formatter.format(buffer, patternContext);
         File xmlObjectFile = new File(buffer.toString());
-        if (xmlObjectFile.exists())
+        ObjectSet objectSet;
+        if (cache != null)
+        {
+            objectSet = cache.getXmlObjectSet(xmlObjectFile);
+        }
+        else if (xmlObjectFile.exists())
+        {
+            objectSet = new XmlObjectSet(xmlObjectFile);
+        }
+        else
+        {
+            objectSet = null;
+        }
+
+        if (objectSet != null)
         {
             LOG.debug("Using object set file: " + xmlObjectFile);
-            return new XmlObjectSet(xmlObjectFile);
         }
         else
         {
             LOG.debug("Object set file does not exist: " + xmlObjectFile);
-            return null;
         }
+        return objectSet;
     }
 
     private ObjectSet getPatternObjectSet(String resourceEntity)
@@ -349,8 +522,15 @@ public class GetObjectTransaction
             return null;
         }
 
-        return new PatternObjectSet(mRootDirectory, mPhotoPattern,
-                                    resourceEntity);
+        ObjectSetCache cache = RetsServer.getObjectSetCache();
+        if (cache == null)
+        {
+            return new PatternObjectSet(mRootDirectory, mPhotoPattern,
+                                        resourceEntity);
+        }
+        return new PatternObjectSet(mRootDirectory,
+                                    cache.getFormatter(mPhotoPattern),
+                                    resourceEntity, cache);
     }
 
     public void setBaseLocationUrl(String baseLocationUrl)
@@ -368,6 +548,17 @@ public class GetObjectTransaction
         mObjectSetPattern = objectSetPattern;
     }
 
+    /**
+     * Sets how many objects of a multipart response are opened ahead of the
+     * one being written.  Zero opens each object as it is written.
+     *
+     * @param readAhead number of objects to open ahead
+     */
+    public void setReadAhead(int readAhead)
+    {
+        mReadAhead = readAhead;
+    }
+
     private static class BoundaryGenerator implements MultipartBoundaryGenerator
     {
         public String generateBoundary()
@@ -415,4 +606,5 @@ public class GetObjectTransaction
     private String mResource;
     private String mType;
     private boolean mWildObject;
+    private int mReadAhead;
 }
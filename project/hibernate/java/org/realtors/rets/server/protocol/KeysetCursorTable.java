@@ -0,0 +1,139 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers where each user's last page of an offset search ended, so the
+ * next page can seek directly to the following key instead of making the
+ * database skip every earlier row.  A cursor only applies to a search with
+ * the same resource, class, query and standard names setting, asking for
+ * the offset right after the page that was served.  Cursors are kept in
+ * least recently used order and are forgotten after a period of
+ * inactivity.
+ */
+public class KeysetCursorTable
+{
+    public KeysetCursorTable()
+    {
+        this(DEFAULT_MAX_CURSORS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public KeysetCursorTable(final int maxCursors, long timeoutMillis)
+    {
+        mTimeoutMillis = timeoutMillis;
+        mCursors = new LinkedHashMap<String, Cursor>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxCursors;
+            }
+        };
+    }
+
+    /**
+     * Returns the key the previous page ended on if this search continues
+     * it, or <code>null</code> otherwise.
+     *
+     * @param username User doing the search
+     * @param parameters Search parameters
+     * @return last key of the previous page, or <code>null</code>
+     */
+    public synchronized Object findKeyAfter(String username,
+                                            SearchParameters parameters)
+    {
+        String key = getKey(username, parameters);
+        Cursor cursor = mCursors.get(key);
+        if (cursor == null)
+        {
+            return null;
+        }
+        if (System.currentTimeMillis() - cursor.mTimestamp > mTimeoutMillis)
+        {
+            mCursors.remove(key);
+            return null;
+        }
+        if (cursor.mNextOffset != getOffset(parameters))
+        {
+            return null;
+        }
+        return cursor.mLastKey;
+    }
+
+    /**
+     * Records the key a page ended on.
+     *
+     * @param username User doing the search
+     * @param parameters Search parameters
+     * @param rowCount Number of rows in the page
+     * @param lastKey Key of the last row in the page
+     */
+    public synchronized void putLastKey(String username,
+                                        SearchParameters parameters,
+                                        int rowCount, Object lastKey)
+    {
+        Cursor cursor = new Cursor();
+        cursor.mNextOffset = getOffset(parameters) + rowCount;
+        cursor.mLastKey = lastKey;
+        cursor.mTimestamp = System.currentTimeMillis();
+        mCursors.put(getKey(username, parameters), cursor);
+    }
+
+    /**
+     * Forgets the cursor for a search, e.g. after its last page.
+     *
+     * @param username User doing the search
+     * @param parameters Search parameters
+     */
+    public synchronized void remove(String username,
+                                    SearchParameters parameters)
+    {
+        mCursors.remove(getKey(username, parameters));
+    }
+
+    public synchronized int size()
+    {
+        return mCursors.size();
+    }
+
+    private int getOffset(SearchParameters parameters)
+    {
+        Integer offset = parameters.getOffset();
+        if ((offset == null) || (offset.intValue() < 1))
+        {
+            return 1;
+        }
+        return offset.intValue();
+    }
+
+    private String getKey(String username, SearchParameters parameters)
+    {
+        StringBuffer key = new StringBuffer();
+        key.append(username).append('\n');
+        key.append(parameters.getResourceId()).append(':');
+        key.append(parameters.getClassName()).append('\n');
+        key.append(parameters.isStandardNames()).append('\n');
+        key.append(parameters.getQueryType()).append('\n');
+        key.append(parameters.getQuery());
+        return key.toString();
+    }
+
+    private static class Cursor
+    {
+        int mNextOffset;
+        Object mLastKey;
+        long mTimestamp;
+    }
+
+    public static final int DEFAULT_MAX_CURSORS = 1000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    private Map<String, Cursor> mCursors;
+    private long mTimeoutMillis;
+}
@@ -0,0 +1,201 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import org.realtors.rets.server.IOUtils;
+import org.realtors.rets.server.Util;
+
+/**
+ * Keeps the bytes of recently requested object files in memory, so popular
+ * photos are not opened and read again for every request.  The cache holds
+ * at most a fixed number of bytes, and the least recently used objects are
+ * evicted to make room.  Objects larger than a fraction of the budget are
+ * never cached, so one large file cannot empty the cache.
+ * <p>
+ * A cached object is only used while its file has the modification time
+ * it had when it was read.  Changed or deleted files are read again, or
+ * reported as missing, on the next request.  {@link #purge} and
+ * {@link #clear} drop objects explicitly.
+ */
+public class ObjectCache
+{
+    public ObjectCache(long maxBytes)
+    {
+        mMaxBytes = maxBytes;
+        mMaxObjectBytes = maxBytes / MAX_OBJECT_FRACTION;
+        mObjects = new LinkedHashMap<String, CachedObject>(16, 0.75f, true);
+    }
+
+    /**
+     * Opens an object file, from memory if it is cached and unchanged.
+     * Files too large to cache are opened as a {@link FileObjectStream}.
+     *
+     * @param file object file
+     * @return a stream of the object
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public ObjectStream openObjectStream(File file) throws IOException
+    {
+        String key = file.getPath();
+        long lastModified = file.lastModified();
+        synchronized (this)
+        {
+            CachedObject object = mObjects.get(key);
+            if ((object != null) && (object.mLastModified == lastModified))
+            {
+                mHits++;
+                return new ByteArrayObjectStream(object.mBytes,
+                                                 object.mMimeType);
+            }
+            mMisses++;
+            if (object != null)
+            {
+                remove(key);
+            }
+        }
+
+        FileObjectStream stream = new FileObjectStream(file);
+        if ((lastModified == 0) || (file.length() > mMaxObjectBytes))
+        {
+            return stream;
+        }
+        // Read outside the lock, so a slow disk only holds up this request
+        byte[] bytes;
+        try
+        {
+            bytes = IOUtils.readBytes(stream.getInputStream());
+        }
+        finally
+        {
+            stream.getInputStream().close();
+        }
+        put(key, bytes, stream.getMimeType(), lastModified);
+        return new ByteArrayObjectStream(bytes, stream.getMimeType());
+    }
+
+    private synchronized void put(String key, byte[] bytes, String mimeType,
+                                  long lastModified)
+    {
+        if (bytes.length > mMaxObjectBytes)
+        {
+            return;
+        }
+        CachedObject object = new CachedObject();
+        object.mBytes = bytes;
+        object.mMimeType = mimeType;
+        object.mLastModified = lastModified;
+        remove(key);
+        mObjects.put(key, object);
+        mBytes += bytes.length;
+        Iterator<CachedObject> eldest = mObjects.values().iterator();
+        while (mBytes > mMaxBytes)
+        {
+            mBytes -= eldest.next().mBytes.length;
+            eldest.remove();
+            mEvictions++;
+        }
+    }
+
+    private void remove(String key)
+    {
+        CachedObject object = mObjects.remove(key);
+        if (object != null)
+        {
+            mBytes -= object.mBytes.length;
+        }
+    }
+
+    /**
+     * Drops an object file from the cache, if it is cached.
+     *
+     * @param file object file
+     */
+    public synchronized void purge(File file)
+    {
+        remove(file.getPath());
+    }
+
+    public synchronized void clear()
+    {
+        mObjects.clear();
+        mBytes = 0;
+    }
+
+    /**
+     * Returns the number of objects cached.
+     */
+    public synchronized int size()
+    {
+        return mObjects.size();
+    }
+
+    /**
+     * Returns the total size of the objects cached, in bytes.
+     */
+    public synchronized long getBytes()
+    {
+        return mBytes;
+    }
+
+    public long getMaxBytes()
+    {
+        return mMaxBytes;
+    }
+
+    public synchronized long getHits()
+    {
+        return mHits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return mMisses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return mEvictions;
+    }
+
+    public synchronized String toString()
+    {
+        return new ToStringBuilder(this, Util.SHORT_STYLE)
+            .append("objects", mObjects.size())
+            .append("bytes", mBytes)
+            .append("max bytes", mMaxBytes)
+            .append("hits", mHits)
+            .append("misses", mMisses)
+            .append("evictions", mEvictions)
+            .toString();
+    }
+
+    private static class CachedObject
+    {
+        byte[] mBytes;
+        String mMimeType;
+        long mLastModified;
+    }
+
+    /** Objects larger than this fraction of the cache are not cached. */
+    private static final int MAX_OBJECT_FRACTION = 8;
+
+    private long mMaxBytes;
+    private long mMaxObjectBytes;
+    private Map<String, CachedObject> mObjects;
+    private long mBytes;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+}
@@ -11,6 +11,7 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 import org.realtors.rets.server.Util;
 import org.realtors.rets.server.IOUtils;
 import org.realtors.rets.server.ReplyCode;
+import org.realtors.rets.server.RetsServer;
 
 public class ObjectDescriptor
 {
@@ -116,7 +117,7 @@ public class ObjectDescriptor
     {
         if (mIsLocal)
         {
-            return new FileObjectStream(IOUtils.urlToFile(mUrl));
+            return openFile(IOUtils.urlToFile(mUrl));
         }
         else
         {
@@ -124,6 +125,19 @@ public class ObjectDescriptor
         }
     }
 
+    /**
+     * Opens a local object file, through the object cache if there is one.
+     */
+    static ObjectStream openFile(File file) throws IOException
+    {
+        ObjectCache cache = RetsServer.getObjectCache();
+        if (cache != null)
+        {
+            return cache.openObjectStream(file);
+        }
+        return new FileObjectStream(file);
+    }
+
     public String toString()
     {
         return new ToStringBuilder(this, Util.SHORT_STYLE)
@@ -0,0 +1,261 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+import org.realtors.rets.server.IOUtils;
+
+/**
+ * Opens the objects of a multipart GetObject response ahead of the one
+ * being written, so waiting on the disk or a remote URL overlaps with
+ * sending the response.  Up to a fixed number of objects are opened, and
+ * read into memory if they are small enough, on a shared pool of worker
+ * threads.  Larger files are only opened, so they can still be transferred
+ * from their channel.
+ * <p>
+ * The streams are returned by {@link #next} in the order of the objects.
+ * {@link #close} must be called when done, to close streams that were
+ * opened but not used.
+ */
+public class ObjectPrefetcher
+{
+    public ObjectPrefetcher(List /* ObjectDescriptor */ objects,
+                            int readAhead)
+    {
+        mObjects = objects;
+        mReadAhead = Math.max(readAhead, 1);
+        mPending = new LinkedList<Future<ObjectStream>>();
+        mNext = 0;
+        fill();
+    }
+
+    /**
+     * Returns the stream of the next object.
+     *
+     * @return the stream of the next object
+     * @throws IOException if the object could not be opened
+     */
+    public ObjectStream next() throws IOException
+    {
+        if (mPending.isEmpty())
+        {
+            throw new IllegalStateException("No more objects");
+        }
+        Future<ObjectStream> next = mPending.removeFirst();
+        // Keep reading ahead while the caller writes this object
+        fill();
+        try
+        {
+            return next.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            next.cancel(false);
+            throw new IOException("Interrupted opening object");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            IOException ioException =
+                new IOException("Could not open object");
+            ioException.initCause(cause);
+            throw ioException;
+        }
+    }
+
+    /**
+     * Stops reading ahead, and closes the streams that were opened but not
+     * returned.  Objects still being opened are waited for, so their
+     * streams can be closed too.
+     */
+    public void close()
+    {
+        mClosed = true;
+        for (Iterator<Future<ObjectStream>> i = mPending.iterator();
+             i.hasNext();)
+        {
+            Future<ObjectStream> pending = i.next();
+            try
+            {
+                // A task that has not started sees it is closed and opens
+                // nothing, so this only waits on objects being opened
+                close(pending.get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted closing prefetched objects");
+                break;
+            }
+            catch (ExecutionException e)
+            {
+                // It was never opened, so there is nothing to close
+            }
+        }
+        mPending.clear();
+    }
+
+    private void fill()
+    {
+        while ((mPending.size() < mReadAhead) && (mNext < mObjects.size()))
+        {
+            final ObjectDescriptor object =
+                (ObjectDescriptor) mObjects.get(mNext++);
+            mPending.add(sExecutor.submit(new Callable<ObjectStream>()
+            {
+                public ObjectStream call() throws IOException
+                {
+                    if (mClosed)
+                    {
+                        return null;
+                    }
+                    ObjectStream stream = prefetch(object);
+                    if (mClosed)
+                    {
+                        close(stream);
+                        return null;
+                    }
+                    return stream;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Opens an object, and reads it into memory if it is small enough.
+     * Objects larger than that have their start read into memory, unless
+     * they are files, which are left to be transferred from their channel.
+     */
+    static ObjectStream prefetch(ObjectDescriptor object) throws IOException
+    {
+        ObjectStream stream = object.openObjectStream();
+        if (stream instanceof ByteArrayObjectStream)
+        {
+            return stream;
+        }
+        InputStream input = stream.getInputStream();
+        int length = MAX_BUFFERED_BYTES;
+        if (stream instanceof FileObjectStream)
+        {
+            long size = ((FileObjectStream) stream).getChannel().size();
+            if (size > MAX_BUFFERED_BYTES)
+            {
+                return stream;
+            }
+            length = (int) size;
+        }
+
+        boolean complete = false;
+        try
+        {
+            // One byte more than we want, to tell if there is more
+            byte[] buffer = new byte[length + 1];
+            int read = IOUtils.fillByteBuffer(input, buffer);
+            if (read <= length)
+            {
+                complete = true;
+                byte[] bytes = new byte[read];
+                System.arraycopy(buffer, 0, bytes, 0, read);
+                return new ByteArrayObjectStream(bytes, stream.getMimeType());
+            }
+            return new PartialObjectStream(buffer, stream, input);
+        }
+        finally
+        {
+            if (complete)
+            {
+                input.close();
+            }
+        }
+    }
+
+    private static void close(ObjectStream stream)
+    {
+        if (stream == null)
+        {
+            return;
+        }
+        try
+        {
+            stream.getInputStream().close();
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Could not close prefetched object", e);
+        }
+    }
+
+    /**
+     * An object whose start was read into memory.
+     */
+    private static class PartialObjectStream implements ObjectStream
+    {
+        PartialObjectStream(byte[] start, ObjectStream stream,
+                            InputStream rest)
+        {
+            mMimeType = stream.getMimeType();
+            mInputStream = new SequenceInputStream(
+                new ByteArrayInputStream(start), rest);
+        }
+
+        public InputStream getInputStream()
+        {
+            return mInputStream;
+        }
+
+        public String getMimeType()
+        {
+            return mMimeType;
+        }
+
+        private String mMimeType;
+        private InputStream mInputStream;
+    }
+
+    private static final Logger LOG = Logger.getLogger(ObjectPrefetcher.class);
+    /** Objects up to this size are read into memory ahead of time. */
+    private static final int MAX_BUFFERED_BYTES = 1024 * 1024;
+    private static final int THREADS = 16;
+    private static final ExecutorService sExecutor =
+        Executors.newFixedThreadPool(THREADS, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread =
+                    Executors.defaultThreadFactory().newThread(runnable);
+                thread.setName("ObjectPrefetcher-" + thread.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private List mObjects;
+    private int mReadAhead;
+    private LinkedList<Future<ObjectStream>> mPending;
+    private int mNext;
+    private volatile boolean mClosed;
+}
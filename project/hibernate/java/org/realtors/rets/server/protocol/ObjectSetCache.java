@@ -0,0 +1,245 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import org.realtors.rets.server.RetsServerException;
+import org.realtors.rets.server.Util;
+
+/**
+ * Keeps what GetObject works out about object sets between requests.  The
+ * object set and photo patterns are parsed once, and parsed XML object set
+ * files are kept for as long as their modification time does not change.
+ * <p>
+ * Files that were found to be missing are remembered for a short time, so
+ * a client asking again and again for objects of an entity that has none
+ * does not check the file system every time.  A file added in that time is
+ * only seen once the time is up.
+ */
+public class ObjectSetCache
+{
+    /**
+     * Creates a cache.
+     *
+     * @param maxObjectSets number of parsed XML object sets to keep
+     * @param missingTimeout how long a missing file is remembered, in
+     *        milliseconds.  Zero checks for the file every time.
+     */
+    public ObjectSetCache(int maxObjectSets, long missingTimeout)
+    {
+        mMaxObjectSets = maxObjectSets;
+        mMissingTimeout = missingTimeout;
+        mFormatters =
+            new ConcurrentHashMap<String, GetObjectPatternFormatter>();
+        mObjectSets =
+            new LinkedHashMap<String, CachedObjectSet>(16, 0.75f, true);
+        mMissing = new LinkedHashMap<String, Long>();
+    }
+
+    /**
+     * Returns the parsed formatter of a pattern.  Formatters keep no state
+     * of their own, so one can be shared by every request.
+     *
+     * @param pattern object set or photo pattern
+     * @return the formatter
+     */
+    public GetObjectPatternFormatter getFormatter(String pattern)
+    {
+        GetObjectPatternFormatter formatter = mFormatters.get(pattern);
+        if (formatter == null)
+        {
+            formatter = new GetObjectPatternParser(pattern).parse();
+            mFormatters.put(pattern, formatter);
+        }
+        return formatter;
+    }
+
+    /**
+     * Returns the object set of an XML object set file, parsing it only if
+     * it has changed since it was last parsed.
+     *
+     * @param file XML object set file
+     * @return the object set, or <code>null</code> if the file does not
+     *         exist
+     * @throws RetsServerException if the file could not be parsed
+     */
+    public XmlObjectSet getXmlObjectSet(File file) throws RetsServerException
+    {
+        String key = file.getPath();
+        if (isKnownMissing(key))
+        {
+            return null;
+        }
+        long lastModified = file.lastModified();
+        if (lastModified == 0)
+        {
+            setMissing(key);
+            return null;
+        }
+        synchronized (this)
+        {
+            CachedObjectSet objectSet = mObjectSets.get(key);
+            if ((objectSet != null) &&
+                (objectSet.mLastModified == lastModified))
+            {
+                mHits++;
+                return objectSet.mObjectSet;
+            }
+            mMisses++;
+        }
+
+        // Parse outside the lock, so one large file only holds up this
+        // request
+        CachedObjectSet objectSet = new CachedObjectSet();
+        objectSet.mObjectSet = new XmlObjectSet(file);
+        objectSet.mLastModified = lastModified;
+        synchronized (this)
+        {
+            mObjectSets.put(key, objectSet);
+            if (mObjectSets.size() > mMaxObjectSets)
+            {
+                mObjectSets.remove(mObjectSets.keySet().iterator().next());
+            }
+        }
+        return objectSet.mObjectSet;
+    }
+
+    /**
+     * Returns whether a file exists and is a normal file.  Files found to be
+     * missing are not checked again until the missing timeout is up.
+     *
+     * @param file file to check
+     * @return <code>true</code> if the file exists
+     */
+    public boolean isFile(File file)
+    {
+        String key = file.getPath();
+        if (isKnownMissing(key))
+        {
+            return false;
+        }
+        if (file.isFile())
+        {
+            return true;
+        }
+        setMissing(key);
+        return false;
+    }
+
+    private synchronized boolean isKnownMissing(String key)
+    {
+        Long expires = mMissing.get(key);
+        if (expires == null)
+        {
+            return false;
+        }
+        if (expires.longValue() > currentTimeMillis())
+        {
+            mMissingHits++;
+            return true;
+        }
+        mMissing.remove(key);
+        return false;
+    }
+
+    private synchronized void setMissing(String key)
+    {
+        if (mMissingTimeout <= 0)
+        {
+            return;
+        }
+        // Entries are kept in the order they expire, so the eldest is
+        // dropped when there are too many
+        mMissing.remove(key);
+        mMissing.put(key, Long.valueOf(currentTimeMillis() + mMissingTimeout));
+        if (mMissing.size() > MAX_MISSING)
+        {
+            mMissing.remove(mMissing.keySet().iterator().next());
+        }
+    }
+
+    long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    public synchronized void clear()
+    {
+        mFormatters.clear();
+        mObjectSets.clear();
+        mMissing.clear();
+    }
+
+    /**
+     * Returns the number of parsed XML object sets kept.
+     */
+    public synchronized int size()
+    {
+        return mObjectSets.size();
+    }
+
+    public long getMissingTimeout()
+    {
+        return mMissingTimeout;
+    }
+
+    public synchronized long getHits()
+    {
+        return mHits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return mMisses;
+    }
+
+    /**
+     * Returns the number of times a file was known to be missing without
+     * checking the file system.
+     */
+    public synchronized long getMissingHits()
+    {
+        return mMissingHits;
+    }
+
+    public synchronized String toString()
+    {
+        return new ToStringBuilder(this, Util.SHORT_STYLE)
+            .append("formatters", mFormatters.size())
+            .append("object sets", mObjectSets.size())
+            .append("missing files", mMissing.size())
+            .append("hits", mHits)
+            .append("misses", mMisses)
+            .append("missing hits", mMissingHits)
+            .toString();
+    }
+
+    private static class CachedObjectSet
+    {
+        XmlObjectSet mObjectSet;
+        long mLastModified;
+    }
+
+    public static final int DEFAULT_MAX_OBJECT_SETS = 1000;
+    /** The most missing files remembered at once. */
+    private static final int MAX_MISSING = 10000;
+
+    private int mMaxObjectSets;
+    private long mMissingTimeout;
+    private Map<String, GetObjectPatternFormatter> mFormatters;
+    private Map<String, CachedObjectSet> mObjectSets;
+    private Map<String, Long> mMissing;
+    private long mHits;
+    private long mMisses;
+    private long mMissingHits;
+}
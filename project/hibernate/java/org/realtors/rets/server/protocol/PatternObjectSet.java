@@ -20,12 +20,29 @@ public class PatternObjectSet implements ObjectSet
 {
     public PatternObjectSet(String rootDirectory, String pattern,
                             String resourceKey)
+    {
+        this(rootDirectory, new GetObjectPatternParser(pattern).parse(),
+             resourceKey, null);
+    }
+
+    /**
+     * Creates an object set with a parsed pattern.  If a cache is given,
+     * files it knows to be missing are not checked for again.
+     *
+     * @param rootDirectory directory the pattern is relative to
+     * @param patternFormatter parsed photo pattern
+     * @param resourceKey resource key of the objects
+     * @param cache cache of missing files, or <code>null</code>
+     */
+    public PatternObjectSet(String rootDirectory,
+                            GetObjectPatternFormatter patternFormatter,
+                            String resourceKey, ObjectSetCache cache)
     {
         mRootDirectory = rootDirectory;
-        GetObjectPatternParser parser = new GetObjectPatternParser(pattern);
-        mPatternFormatter = parser.parse();
+        mPatternFormatter = patternFormatter;
         mPatternContext = new GetObjectPatternContext();
         mResourceKey = resourceKey;
+        mCache = cache;
     }
     
     public void setResource(String resource)
@@ -104,7 +121,7 @@ public class PatternObjectSet implements ObjectSet
             mPatternFormatter.format(fileBuffer, mPatternContext);
             String filePath = fileBuffer.toString();
             File file = new File(filePath);
-            if (file.exists() && file.isFile())
+            if (isFile(file))
             {
                 LOG.debug("File " + filePath + " exists");
                 return new ObjectDescriptor(mResourceKey, objectId,
@@ -171,10 +188,20 @@ public class PatternObjectSet implements ObjectSet
         }
     }
 
+    private boolean isFile(File file)
+    {
+        if (mCache != null)
+        {
+            return mCache.isFile(file);
+        }
+        return file.exists() && file.isFile();
+    }
+
     private static final Logger LOG =
         Logger.getLogger(PatternObjectSet.class);
     private String mRootDirectory;
     private GetObjectPatternFormatter mPatternFormatter;
     private GetObjectPatternContext mPatternContext;
     private String mResourceKey;
+    private ObjectSetCache mCache;
 }
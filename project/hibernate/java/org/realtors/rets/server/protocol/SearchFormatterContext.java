@@ -187,14 +187,52 @@ public class SearchFormatterContext
      */
     public boolean hasNext() throws SQLException
     {
-        if ((mRowCount < mLimit) && mResultSet.next())
+        if ((mRowCount < mLimit) && (mRowFetched || mResultSet.next()))
         {
+            mRowFetched = false;
             mRowCount++;
+            if (mKeyColumn != null)
+            {
+                mLastKey = mResultSet.getObject(mKeyColumn);
+            }
             return true;
         }
         return false;
     }
 
+    /**
+     * Tells the context that the result set is already on a row that has
+     * not been used, e.g. because it was read ahead for a count.  The next
+     * call to {@link #hasNext} will return that row instead of advancing.
+     *
+     * @param rowFetched <code>true</code> if the current row is unused
+     */
+    public void setRowFetched(boolean rowFetched)
+    {
+        mRowFetched = rowFetched;
+    }
+
+    /**
+     * Sets the column whose value is remembered for each row returned by
+     * {@link #hasNext}, so the last key of a page is known once it has been
+     * formatted.
+     *
+     * @param keyColumn key column name, or <code>null</code>
+     */
+    public void setKeyColumn(String keyColumn)
+    {
+        mKeyColumn = keyColumn;
+    }
+
+    /**
+     * Returns the key column value of the last row returned by
+     * {@link #hasNext}, or <code>null</code> if there is no key column.
+     */
+    public Object getLastKey()
+    {
+        return mLastKey;
+    }
+
     /**
      * Returns the number of rows processed so far. This is only accurate if
      * <b>only</b> hasNext() is used. If the result set is advanced elsewhere,
@@ -276,7 +314,24 @@ public class SearchFormatterContext
     public String decodeLookupValue(String column, String value)
     {
         String lookupName = mMetadata.columnToField(column);
-        if (mMetadata.getFieldType(lookupName) == DmqlFieldType.LOOKUP)
+        return decodeLookupValue(lookupName, mMetadata.getFieldType(lookupName),
+                                 value);
+    }
+
+    /**
+     * Decode the value for a lookup field whose type is already known, so
+     * formatters can look up the field and its type once per search instead
+     * of once per value.
+     *
+     * @param lookupName lookup field name
+     * @param fieldType type of the field, either LOOKUP or LOOKUP_MULTI
+     * @param value lookup value
+     * @return decoded value of the lookup
+     */
+    public String decodeLookupValue(String lookupName, DmqlFieldType fieldType,
+                                    String value)
+    {
+        if (fieldType == DmqlFieldType.LOOKUP)
         {
             return decodeSingleLookup(lookupName, value);
         }
@@ -417,4 +472,10 @@ public class SearchFormatterContext
     private String mResourceStandardName;
     /** The Search Format. */
     private boolean mStandardNames;
+    /** The column to remember the last value of, for keyset paging. */
+    private String mKeyColumn;
+    /** The key column value of the current row. */
+    private Object mLastKey;
+    /** Whether the result set is on a row not yet returned by hasNext. */
+    private boolean mRowFetched;
 }
@@ -246,6 +246,40 @@ public class SearchParameters
         return mOffset;
     }
 
+    /**
+     * Returns whether this search pages through results by the resource's
+     * key field, so the key of the last row served can be remembered.
+     *
+     * @return <code>true</code> if keyset paging is in effect
+     */
+    public boolean isKeysetPaging()
+    {
+        return mKeysetPaging;
+    }
+
+    public void setKeysetPaging(boolean keysetPaging)
+    {
+        mKeysetPaging = keysetPaging;
+    }
+
+    /**
+     * Returns the key field value the previous page of this search ended
+     * on, or <code>null</code> if the search is not continuing a page.  When
+     * set, only rows with a greater key are returned, and the offset has
+     * already been accounted for.
+     *
+     * @return the last key of the previous page
+     */
+    public Object getKeyAfter()
+    {
+        return mKeyAfter;
+    }
+
+    public void setKeyAfter(Object keyAfter)
+    {
+        mKeyAfter = keyAfter;
+    }
+
     public Count getCount()
     {
         return mCount;
@@ -326,6 +360,8 @@ public class SearchParameters
     private String[] mSelect;
     private int mLimit;
     private Integer mOffset;
+    private boolean mKeysetPaging;
+    private Object mKeyAfter;
     private Count mCount;
     private User mUser;
     private RetsVersion mRetsVersion;
@@ -0,0 +1,135 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.realtors.rets.common.metadata.types.MTable;
+import org.realtors.rets.server.Group;
+import org.realtors.rets.server.metadata.ServerDmqlMetadata;
+
+/**
+ * Shares the {@link ServerDmqlMetadata} of a class between searches, so the
+ * field, column and lookup maps are not rebuilt for every request.  The
+ * metadata depends on the tables visible to the user's groups, so it is
+ * keyed by the groups, the resource and class and the standard names
+ * setting.  The cache must be cleared whenever the metadata or
+ * configuration changes.  Each entry remembers the filter it was built
+ * from, and is only used with that filter, so a search still holding the
+ * old filter after the cache is cleared cannot hand its metadata to
+ * searches using the new one.
+ */
+public class ServerDmqlMetadataCache
+{
+    public ServerDmqlMetadataCache()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ServerDmqlMetadataCache(final int maxEntries)
+    {
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the metadata for the tables of a class visible to the groups,
+     * building it from the table group filter if it is not cached.
+     *
+     * @param groupFilter Filter used to find the visible tables
+     * @param groups Groups of the user doing the search
+     * @param resourceId Resource of the class
+     * @param className Name of the class
+     * @param standardNames Whether fields are named by standard names
+     * @return the metadata for the class
+     */
+    public ServerDmqlMetadata getMetadata(TableGroupFilter groupFilter,
+                                          Set<Group> groups,
+                                          String resourceId,
+                                          String className,
+                                          boolean standardNames)
+    {
+        String key = getKey(groups, resourceId, className, standardNames);
+        int generation;
+        synchronized (this)
+        {
+            Entry entry = mEntries.get(key);
+            if ((entry != null) && (entry.mGroupFilter == groupFilter))
+            {
+                return entry.mMetadata;
+            }
+            generation = mGeneration;
+        }
+
+        // Built outside the lock, as big classes take a while.  Two
+        // searches may build the same metadata, but either copy will do.
+        Set<MTable> tables =
+            groupFilter.findTables(groups, resourceId, className);
+        ServerDmqlMetadata metadata =
+            new ServerDmqlMetadata(tables, standardNames);
+        synchronized (this)
+        {
+            // Don't keep metadata built while the cache was being cleared
+            if (generation == mGeneration)
+            {
+                Entry entry = new Entry();
+                entry.mGroupFilter = groupFilter;
+                entry.mMetadata = metadata;
+                mEntries.put(key, entry);
+            }
+        }
+        return metadata;
+    }
+
+    public synchronized void clear()
+    {
+        mEntries.clear();
+        mGeneration++;
+    }
+
+    public synchronized int size()
+    {
+        return mEntries.size();
+    }
+
+    private String getKey(Set<Group> groups, String resourceId,
+                          String className, boolean standardNames)
+    {
+        StringBuffer key = new StringBuffer();
+        if (groups != null)
+        {
+            for (Iterator<Group> i = groups.iterator(); i.hasNext();)
+            {
+                key.append(i.next().getName()).append(',');
+            }
+        }
+        key.append('\n');
+        key.append(resourceId).append(':');
+        key.append(className).append('\n');
+        key.append(standardNames);
+        return key.toString();
+    }
+
+    private static class Entry
+    {
+        TableGroupFilter mGroupFilter;
+        ServerDmqlMetadata mMetadata;
+    }
+
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private Map<String, Entry> mEntries;
+    private int mGeneration;
+}
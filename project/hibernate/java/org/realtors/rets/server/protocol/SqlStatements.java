@@ -19,15 +19,46 @@ public interface SqlStatements
 
     public SearchQuery getSearchQuery();
 
+    /**
+     * Returns a query for the database's estimate of the count, or
+     * <code>null</code> if the count must be exact.
+     */
+    public Query getCountEstimateQuery();
+
     public interface Query
     {
         public String getSql();
+
+        /**
+         * Returns the values to bind to the <code>?</code> placeholders in
+         * the SQL, in order.  Never <code>null</code>.
+         */
+        public List<Object> getParameters();
     }
 
     public interface SearchQuery extends Query
     {
         public List<String> getSelectedColumnNames();
         public DmqlParserMetadata getDmqlParserMetadata();
+
+        /**
+         * Returns <code>true</code> if the SQL itself skips the rows before
+         * the requested offset, so the caller must not skip them again.
+         */
+        public boolean isOffsetApplied();
+
+        /**
+         * Returns the column the rows are ordered by for keyset paging, or
+         * <code>null</code> if the last key of the page is not needed.
+         */
+        public String getKeyColumn();
+
+        /**
+         * Returns the column holding the total number of matching rows on
+         * every row, or <code>null</code> if the count must be queried
+         * separately.
+         */
+        public String getCountColumn();
     }
 
 }
@@ -0,0 +1,295 @@
+/* Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.PrintWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+import org.realtors.rets.client.RetsVersion;
+import org.realtors.rets.common.metadata.types.MTable;
+import org.realtors.rets.common.util.RetsDateTime;
+import org.realtors.rets.server.RetsDTDElement;
+import org.realtors.rets.server.dmql.DmqlParserMetadata;
+import org.realtors.rets.server.metadata.MetadataManager;
+
+import com.wutka.dtd.DTDAttribute;
+import com.wutka.dtd.DTDEnumeration;
+
+/**
+ * The DTD elements of a class, flattened into the list of tags that
+ * STANDARD-XML rows are written with.  Everything that only depends on the
+ * DTD, the metadata and the selected columns is worked out when the plan is
+ * compiled: the names of the elements, the columns they hold, and their
+ * attributes.  Elements with no selected column below them are left out.
+ * Writing a row is then a single pass over the plan.
+ * <p>
+ * A container element is only written if one of the data elements below it
+ * has a value, so its start tag is held back until the first value is
+ * written.
+ */
+public class StandardXMLPlan
+{
+    /**
+     * Compiles the plan for the elements below, and including, a DTD
+     * element.
+     *
+     * @param root DTD element of the class
+     * @param context search context, for the columns and metadata
+     * @param metadataManager metadata manager, to map DTD paths to names
+     * @return the plan
+     */
+    public static StandardXMLPlan compile(RetsDTDElement root,
+                                          SearchFormatterContext context,
+                                          MetadataManager metadataManager)
+    {
+        List<Step> steps = new ArrayList<Step>();
+        if (root != null)
+        {
+            compileElement(root, context, metadataManager, steps);
+        }
+        return new StandardXMLPlan(steps.toArray(new Step[steps.size()]),
+                                   context.getRetsVersion());
+    }
+
+    private StandardXMLPlan(Step[] steps, RetsVersion retsVersion)
+    {
+        mSteps = steps;
+        mRetsVersion = retsVersion;
+        int maxDepth = 0;
+        int depth = 0;
+        for (int i = 0; i < steps.length; i++)
+        {
+            if (steps[i].mType == OPEN)
+            {
+                depth++;
+                maxDepth = Math.max(maxDepth, depth);
+            }
+            else if (steps[i].mType == CLOSE)
+            {
+                depth--;
+            }
+        }
+        mContainers = new Step[maxDepth];
+    }
+
+    /**
+     * Adds the steps for an element and its children.
+     *
+     * @return <code>true</code> if the element holds a selected column
+     */
+    private static boolean compileElement(RetsDTDElement element,
+                                          SearchFormatterContext context,
+                                          MetadataManager metadataManager,
+                                          List<Step> steps)
+    {
+        String elementName = element.getName();
+        if (!element.getChildren().isEmpty())
+        {
+            int openIndex = steps.size();
+            steps.add(new Step(OPEN, "<" + elementName + ">\n"));
+            boolean hasData = false;
+            for (RetsDTDElement child : element.getChildren())
+            {
+                if (compileElement(child, context, metadataManager, steps))
+                {
+                    hasData = true;
+                }
+            }
+            if (!hasData)
+            {
+                // Nothing below this container can ever be written
+                while (steps.size() > openIndex)
+                {
+                    steps.remove(steps.size() - 1);
+                }
+                return false;
+            }
+            steps.add(new Step(CLOSE, "</" + elementName + ">\n"));
+            return true;
+        }
+
+        String path = element.getPath();
+        String standardName = metadataManager.findStandardNameByPath(path);
+        String systemName = metadataManager.findSystemdNameByPath(path);
+        if (standardName == null)
+        {
+            standardName = elementName;
+        }
+        String field = context.isStandardNames() ? standardName : systemName;
+        int columnIndex = getColumnIndex(context, field);
+        if (columnIndex < 0)
+        {
+            return false;
+        }
+
+        MTable table = context.getMetadata().getTable(standardName);
+        Step step = new Step(DATA, "<" + elementName +
+                             getAttributes(element, table) + ">");
+        step.mEnd = "</" + elementName + ">\n";
+        step.mColumnIndex = columnIndex;
+        step.mDateTime =
+            (table != null) && "DateTime".equals(table.getDataType());
+        steps.add(step);
+        return true;
+    }
+
+    /**
+     * Returns the one-based result set index of the column of a field, or -1
+     * if the field was not selected.
+     */
+    private static int getColumnIndex(SearchFormatterContext context,
+                                      String field)
+    {
+        if (field == null)
+        {
+            return -1;
+        }
+        DmqlParserMetadata metadata = context.getMetadata();
+        String column = metadata.fieldToColumn(field);
+        int index = context.getColumns().indexOf(column);
+        return (index < 0) ? -1 : index + 1;
+    }
+
+    /**
+     * Returns the Type and Units attributes of a data element, with a
+     * leading space, or an empty string if it has neither.
+     */
+    private static String getAttributes(RetsDTDElement element, MTable table)
+    {
+        StringBuffer attributes = new StringBuffer();
+        DTDAttribute attribute = element.getElement().getAttribute("Type");
+        if (attribute != null &&
+            attribute.getType() instanceof DTDEnumeration && table != null)
+        {
+            DTDEnumeration theEnum = (DTDEnumeration) attribute.getType();
+            if (theEnum.getItemsVec().contains("INTEGER") ||
+                theEnum.getItemsVec().contains("FLOAT"))
+            {
+                String type = "Decimal".equals(table.getDataType()) ?
+                    "FLOAT" : "INTEGER";
+                attributes.append(" Type=\"").append(type).append("\"");
+            }
+        }
+        attribute = element.getElement().getAttribute("Units");
+        if (attribute != null &&
+            attribute.getType() instanceof DTDEnumeration)
+        {
+            String units = StandardXMLFormatter.getUnits(table);
+            if (units != null)
+            {
+                attributes.append(" Units=\"").append(units).append("\"");
+            }
+        }
+        return attributes.toString();
+    }
+
+    /**
+     * Writes the current row of the result set.
+     *
+     * @param resultSet result set on the row to write
+     * @param out writer to write to
+     * @throws SQLException if a value could not be read
+     */
+    public void formatRow(ResultSet resultSet, PrintWriter out)
+        throws SQLException
+    {
+        // Start tags of the containers we are in, and how many of them have
+        // been written so far.  The written ones are always the outermost.
+        Step[] containers = mContainers;
+        int depth = 0;
+        int written = 0;
+        for (int i = 0; i < mSteps.length; i++)
+        {
+            Step step = mSteps[i];
+            switch (step.mType)
+            {
+                case OPEN:
+                    containers[depth++] = step;
+                    break;
+
+                case CLOSE:
+                    if (written == depth)
+                    {
+                        out.print(step.mTag);
+                        written--;
+                    }
+                    depth--;
+                    break;
+
+                default:
+                    String datum = resultSet.getString(step.mColumnIndex);
+                    if (datum == null || datum.length() == 0)
+                    {
+                        break;
+                    }
+                    for (; written < depth; written++)
+                    {
+                        out.print(containers[written].mTag);
+                    }
+                    if (step.mDateTime)
+                    {
+                        datum = renderDateTime(datum);
+                    }
+                    out.print(step.mTag);
+                    out.print(StringEscapeUtils.escapeXml(datum));
+                    out.print(step.mEnd);
+                    break;
+            }
+        }
+    }
+
+    private String renderDateTime(String datum)
+    {
+        /*
+         * Another uglyism. The data coming back is in SQL date. Convert it
+         * and render it as a RETS date.
+         */
+        try
+        {
+            Date date = RetsDateTime.parseSql(datum);
+            return RetsDateTime.render(date, mRetsVersion);
+        }
+        catch (Exception e)
+        {
+            /*
+             * Ignore the exception. We'll render the data as a SQL date.
+             */
+            return datum;
+        }
+    }
+
+    private static class Step
+    {
+        Step(int type, String tag)
+        {
+            mType = type;
+            mTag = tag;
+        }
+
+        int mType;
+        /** Start tag, or the end tag of a container. */
+        String mTag;
+        /** End tag of a data element. */
+        String mEnd;
+        int mColumnIndex;
+        boolean mDateTime;
+    }
+
+    private static final int OPEN = 0;
+    private static final int CLOSE = 1;
+    private static final int DATA = 2;
+
+    private Step[] mSteps;
+    private RetsVersion mRetsVersion;
+    /** Containers of the row being written, reused for every row. */
+    private Step[] mContainers;
+}
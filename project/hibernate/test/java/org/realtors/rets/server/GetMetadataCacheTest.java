@@ -0,0 +1,85 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.server.metadata.MetadataManager;
+
+public class GetMetadataCacheTest extends TestCase
+{
+    public void testGetAndPut()
+    {
+        GetMetadataCache cache = new GetMetadataCache(100);
+        MetadataManager manager = new MetadataManager();
+        assertNull(cache.get(manager, "a"));
+        cache.put(manager, "a", "<METADATA-SYSTEM/>");
+        assertEquals("<METADATA-SYSTEM/>", cache.get(manager, "a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(18, cache.getChars());
+
+        cache.clear();
+        assertNull(cache.get(manager, "a"));
+        assertEquals(0, cache.getChars());
+    }
+
+    public void testOtherMetadataManager()
+    {
+        GetMetadataCache cache = new GetMetadataCache(100);
+        MetadataManager manager = new MetadataManager();
+        cache.get(manager, "a");
+        cache.put(manager, "a", "old");
+
+        MetadataManager reloaded = new MetadataManager();
+        assertNull(cache.get(reloaded, "a"));
+        assertEquals(0, cache.size());
+        // Responses rendered from the old metadata are not kept
+        cache.put(manager, "a", "old");
+        assertEquals(0, cache.size());
+        cache.put(reloaded, "a", "new");
+        assertEquals("new", cache.get(reloaded, "a"));
+    }
+
+    public void testEvictsLeastRecentlyUsed()
+    {
+        GetMetadataCache cache = new GetMetadataCache(100);
+        MetadataManager manager = new MetadataManager();
+        cache.get(manager, "a");
+        cache.put(manager, "a", repeat('a', 25));
+        cache.put(manager, "b", repeat('b', 25));
+        cache.put(manager, "c", repeat('c', 25));
+        cache.get(manager, "a");
+        cache.put(manager, "d", repeat('d', 25));
+        assertEquals(0, cache.getEvictions());
+
+        cache.put(manager, "e", repeat('e', 25));
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(manager, "b"));
+        assertNotNull(cache.get(manager, "a"));
+        assertEquals(100, cache.getChars());
+    }
+
+    public void testLargeResponsesNotCached()
+    {
+        GetMetadataCache cache = new GetMetadataCache(100);
+        MetadataManager manager = new MetadataManager();
+        cache.get(manager, "a");
+        cache.put(manager, "a", repeat('a', 26));
+        assertEquals(0, cache.size());
+    }
+
+    private String repeat(char c, int length)
+    {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < length; i++)
+        {
+            buffer.append(c);
+        }
+        return buffer.toString();
+    }
+}
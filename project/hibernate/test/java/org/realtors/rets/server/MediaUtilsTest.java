@@ -0,0 +1,135 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Query;
+
+import junit.framework.TestCase;
+
+public class MediaUtilsTest extends TestCase
+{
+    public void testFindByResourceKeysGroupsByResourceKey()
+    {
+        List<Media> media = new ArrayList<Media>();
+        media.add(new Media(1, "abc123", "abc123-1.jpg", null, 1, "Photo", null));
+        media.add(new Media(2, "abc123", "abc123-2.jpg", null, 2, "Photo", null));
+        media.add(new Media(3, "abc124", "abc124-1.jpg", null, 1, "Photo", null));
+        TestSessionHelper helper = new TestSessionHelper(media);
+
+        Map<String, List<Media>> found = MediaUtils.findByResourceKeys(
+            "Photo", Arrays.asList("abc123", "abc124", "abc125"), helper);
+        assertEquals(Arrays.asList("abc123", "abc124"),
+                     new ArrayList<String>(found.keySet()));
+        assertEquals(media.subList(0, 2), found.get("abc123"));
+        assertEquals(media.subList(2, 3), found.get("abc124"));
+        assertEquals(1, helper.mBatches.size());
+        assertEquals("Photo", helper.mMediaType);
+    }
+
+    public void testFindByResourceKeysInChunks()
+    {
+        List<String> keys = new ArrayList<String>();
+        List<Media> media = new ArrayList<Media>();
+        for (int i = 0; i < 1201; i++)
+        {
+            String key = "key" + i;
+            keys.add(key);
+            media.add(new Media(i, key, key + ".jpg", null, 1, "Photo", null));
+        }
+        TestSessionHelper helper = new TestSessionHelper(media);
+
+        Map<String, List<Media>> found =
+            MediaUtils.findByResourceKeys("Photo", keys, helper);
+        assertEquals(3, helper.mBatches.size());
+        assertEquals(keys.subList(0, 500), helper.mBatches.get(0));
+        assertEquals(keys.subList(500, 1000), helper.mBatches.get(1));
+        assertEquals(keys.subList(1000, 1201), helper.mBatches.get(2));
+        assertEquals(keys, new ArrayList<String>(found.keySet()));
+        assertEquals(media.subList(1200, 1201), found.get("key1200"));
+    }
+
+    public void testFindByResourceKeysWithNoKeys()
+    {
+        TestSessionHelper helper = new TestSessionHelper(new ArrayList<Media>());
+        Map<String, List<Media>> found = MediaUtils.findByResourceKeys(
+            "Photo", new ArrayList<String>(), helper);
+        assertTrue(found.isEmpty());
+        assertEquals(0, helper.mBatches.size());
+    }
+
+    /**
+     * Answers each query with the media whose resource key is in the list
+     * it was given, and remembers the lists.
+     */
+    private static class TestSessionHelper extends SessionHelper
+    {
+        TestSessionHelper(List<Media> media)
+        {
+            super(null);
+            mMedia = media;
+        }
+
+        public Query createQuery(String queryString)
+        {
+            return (Query) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[] {Query.class},
+                new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args)
+                    {
+                        String name = method.getName();
+                        if (name.equals("setParameterList"))
+                        {
+                            mBatch = new ArrayList<String>(
+                                (Collection<String>) args[1]);
+                            mBatches.add(mBatch);
+                            return proxy;
+                        }
+                        else if (name.equals("setString"))
+                        {
+                            mMediaType = (String) args[1];
+                            return proxy;
+                        }
+                        else if (name.equals("list"))
+                        {
+                            List<Media> media = new ArrayList<Media>();
+                            for (Media aMedia : mMedia)
+                            {
+                                if (mBatch.contains(
+                                        aMedia.getMediaKey().getResourceKey()))
+                                {
+                                    media.add(aMedia);
+                                }
+                            }
+                            return media;
+                        }
+                        else if (name.equals("toString"))
+                        {
+                            return "TestQuery";
+                        }
+                        return null;
+                    }
+
+                    private List<String> mBatch;
+                });
+        }
+
+        private List<Media> mMedia;
+        List<List<String>> mBatches = new ArrayList<List<String>>();
+        String mMediaType;
+    }
+}
@@ -0,0 +1,49 @@
+/* Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.client.RetsVersion;
+import org.realtors.rets.server.config.RetsConfig;
+import org.realtors.rets.server.config.RetsConfigDao;
+import org.realtors.rets.server.config.XmlRetsConfigDao;
+
+public class RetsDTDTest extends TestCase
+{
+    protected void setUp() throws RetsServerException
+    {
+        GlobalTestSetup.globalSetup();
+        RetsConfigDao configDao = RetsServer.getRetsConfigDao();
+        if (configDao == null)
+        {
+            File basePath = new File(".");
+            String configFile = basePath.getAbsolutePath() +
+                "/build/rets-server/variman/WEB-INF/rets/rets-config.xml";
+            configDao = new XmlRetsConfigDao(configFile);
+            RetsDTD.setBasePath(basePath.getAbsolutePath() +
+                                "/build/rets-server/variman");
+        }
+        RetsConfig config = configDao.loadRetsConfig();
+        RetsServer.setRetsConfiguration(config);
+    }
+
+    public void testPreload() throws RetsServerException
+    {
+        RetsDTD.preloadRetsDTDs();
+        RetsDTD retsDTD = RetsDTD.getRetsDTD(RetsVersion.RETS_1_7_2);
+        assertNotNull(retsDTD);
+        assertSame(retsDTD, RetsDTD.getRetsDTD(new RetsVersion(1, 7, 2)));
+        assertNotSame(retsDTD, RetsDTD.getRetsDTD(RetsVersion.RETS_1_5));
+
+        // Preloading again keeps the loaded DTDs
+        RetsDTD.preloadRetsDTDs();
+        assertSame(retsDTD, RetsDTD.getRetsDTD(RetsVersion.RETS_1_7_2));
+        assertNotNull(retsDTD.getDTDElement("REData"));
+    }
+}
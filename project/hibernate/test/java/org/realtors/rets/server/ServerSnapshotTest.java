@@ -0,0 +1,53 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.server.config.SecurityConstraints;
+import org.realtors.rets.server.protocol.TableGroupFilter;
+
+public class ServerSnapshotTest extends TestCase
+{
+    public void testWith()
+    {
+        TableGroupFilter filter = new TableGroupFilter();
+        ServerSnapshot snapshot =
+            ServerSnapshot.EMPTY.withTableGroupFilter(filter);
+        assertNotSame(ServerSnapshot.EMPTY, snapshot);
+        assertNull(ServerSnapshot.EMPTY.getTableGroupFilter());
+        assertSame(filter, snapshot.getTableGroupFilter());
+
+        SecurityConstraints constraints = new SecurityConstraints();
+        ServerSnapshot secured =
+            snapshot.withSecurityConstraints(constraints);
+        assertSame(filter, secured.getTableGroupFilter());
+        assertSame(constraints, secured.getSecurityConstraints());
+        assertNull(snapshot.getSecurityConstraints());
+    }
+
+    public void testSettersPublishNewSnapshot()
+    {
+        ServerSnapshot old = RetsServer.getSnapshot();
+        try
+        {
+            TableGroupFilter filter = new TableGroupFilter();
+            RetsServer.setTableGroupFilter(filter);
+            ServerSnapshot snapshot = RetsServer.getSnapshot();
+            assertNotSame(old, snapshot);
+            assertSame(filter, snapshot.getTableGroupFilter());
+            assertSame(filter, RetsServer.getTableGroupFilter());
+            assertSame(old.getRetsConfig(), snapshot.getRetsConfig());
+            assertSame(old.getMetadataManager(),
+                       snapshot.getMetadataManager());
+        }
+        finally
+        {
+            RetsServer.setTableGroupFilter(old.getTableGroupFilter());
+        }
+    }
+}
@@ -63,4 +63,19 @@ public class DatabaseConfigTest extends TestCase
         assertEquals(
             "0", properties.getProperty(Environment.C3P0_ACQUIRE_INCREMENT));
     }
+
+    public void testFetchSize()
+    {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setDatabaseType(DatabaseType.POSTGRESQL);
+        assertEquals(DatabaseConfig.DEFAULT_FETCH_SIZE, config.getFetchSize());
+        assertEquals(PostgreSQLType.DEFAULT_FETCH_SIZE,
+                     config.getEffectiveFetchSize());
+
+        config.setDatabaseType(DatabaseType.MYSQL);
+        assertEquals(Integer.MIN_VALUE, config.getEffectiveFetchSize());
+
+        config.setFetchSize(250);
+        assertEquals(250, config.getEffectiveFetchSize());
+    }
 }
@@ -8,8 +8,12 @@
 
 package org.realtors.rets.server.config;
 
+import java.sql.SQLException;
+
 import junit.framework.TestCase;
 
+import org.realtors.rets.server.protocol.MockResultSet;
+
 public class DatabaseTypeTest extends TestCase
 {
     public void testMySQLType()
@@ -58,6 +62,109 @@ public class DatabaseTypeTest extends TestCase
                      type.getUrl("localhost", "db_name"));
     }
 
+    public void testPostgresPagedSelect()
+    {
+        DatabaseType type = DatabaseType.POSTGRESQL;
+        assertEquals("SELECT a,b FROM t WHERE a = 1 ORDER BY a LIMIT 10 OFFSET 20",
+                     type.getPagedSelect("a,b", "t", "a = 1", "a", 20, 10));
+        assertEquals("SELECT a,b FROM t WHERE a = 1 LIMIT 10",
+                     type.getPagedSelect("a,b", "t", "a = 1", null, 0,
+                                         10));
+        assertEquals("SELECT a,b FROM t WHERE a = 1 ORDER BY a OFFSET 20",
+                     type.getPagedSelect("a,b", "t", "a = 1", "a", 20,
+                                         Integer.MAX_VALUE));
+    }
+
+    public void testMySQLPagedSelect()
+    {
+        DatabaseType type = DatabaseType.MYSQL;
+        assertEquals("SELECT a,b FROM t WHERE a = 1 ORDER BY a LIMIT 20, 10",
+                     type.getPagedSelect("a,b", "t", "a = 1", "a", 20, 10));
+        assertEquals("SELECT a,b FROM t WHERE a = 1 LIMIT 10",
+                     type.getPagedSelect("a,b", "t", "a = 1", null, 0,
+                                         10));
+        assertEquals("SELECT a,b FROM t WHERE a = 1 ORDER BY a " +
+                     "LIMIT 20, 18446744073709551615",
+                     type.getPagedSelect("a,b", "t", "a = 1", "a", 20,
+                                         Integer.MAX_VALUE));
+    }
+
+    public void testSQLServerPagedSelect()
+    {
+        DatabaseType type = DatabaseType.SQLSERVER_JTDS;
+        assertEquals("SELECT TOP 10 a,b FROM t WHERE a = 1",
+                     type.getPagedSelect("a,b", "t", "a = 1", null, 0,
+                                         10));
+        assertEquals("SELECT a,b FROM (SELECT a,b, ROW_NUMBER() OVER " +
+                     "(ORDER BY a) AS rets_row_number FROM t WHERE a = 1) " +
+                     "AS rets_page WHERE rets_row_number > 20 AND " +
+                     "rets_row_number <= 30 ORDER BY rets_row_number",
+                     type.getPagedSelect("a,b", "t", "a = 1", "a", 20, 10));
+        assertNull(type.getPagedSelect("a,b", "t", "a = 1", null, 20, 10));
+    }
+
+    public void testWindowedCount()
+    {
+        assertNull(DatabaseType.MYSQL.getWindowedCount());
+        assertEquals("COUNT(*) OVER()",
+                     DatabaseType.POSTGRESQL.getWindowedCount());
+        assertEquals("COUNT(*) OVER()",
+                     DatabaseType.SQLSERVER_JTDS.getWindowedCount());
+
+        // The outer query of a page refers to the count by its alias
+        DatabaseType type = DatabaseType.SQLSERVER_JSQL;
+        assertEquals("SELECT a,n FROM (SELECT a,COUNT(*) OVER() AS n, " +
+                     "ROW_NUMBER() OVER (ORDER BY a) AS rets_row_number " +
+                     "FROM t WHERE a = 1) AS rets_page WHERE " +
+                     "rets_row_number > 20 AND rets_row_number <= 30 " +
+                     "ORDER BY rets_row_number",
+                     type.getPagedSelect("a,COUNT(*) OVER() AS n", "t",
+                                         "a = 1", "a", 20, 10));
+    }
+
+    public void testRowEstimateSql()
+    {
+        assertEquals("EXPLAIN SELECT 1 FROM t WHERE a = 1",
+                     DatabaseType.POSTGRESQL.getRowEstimateSql("t", "a = 1"));
+        assertEquals("EXPLAIN SELECT 1 FROM t WHERE a = 1",
+                     DatabaseType.MYSQL.getRowEstimateSql("t", "a = 1"));
+        assertNull(DatabaseType.SQLSERVER_JTDS.getRowEstimateSql("t",
+                                                                 "a = 1"));
+    }
+
+    public void testPostgresRowEstimate() throws SQLException
+    {
+        MockResultSet plan = new MockResultSet();
+        plan.setColumns(new String[] {"QUERY PLAN"});
+        plan.addRow(new String[] {
+            "Seq Scan on t  (cost=0.00..35.50 rows=1234 width=0)"});
+        plan.addRow(new String[] {"  Filter: (a = 1)"});
+        assertEquals(1234, DatabaseType.POSTGRESQL.getRowEstimate(plan));
+        assertEquals(-1, DatabaseType.POSTGRESQL.getRowEstimate(
+                         new MockResultSet()));
+    }
+
+    public void testMySqlRowEstimate() throws SQLException
+    {
+        MockResultSet plan = new MockResultSet();
+        plan.setColumns(new String[] {"id", "table", "rows", "filtered"});
+        plan.addRow(new Object[] {"1", "t", "20000", "10.00"});
+        assertEquals(2000, DatabaseType.MYSQL.getRowEstimate(plan));
+
+        // Without the filtered column, rows is only the rows examined
+        plan = new MockResultSet();
+        plan.setColumns(new String[] {"id", "table", "rows"});
+        plan.addRow(new Object[] {"1", "t", "20000"});
+        assertEquals(-1, DatabaseType.MYSQL.getRowEstimate(plan));
+
+        plan = new MockResultSet();
+        plan.setColumns(new String[] {"id", "table", "rows", "filtered"});
+        plan.addRow(new Object[] {"1", "t", null, "10.00"});
+        assertEquals(-1, DatabaseType.MYSQL.getRowEstimate(plan));
+        assertEquals(-1, DatabaseType.MYSQL.getRowEstimate(
+                         new MockResultSet()));
+    }
+
     public void testUnknowType()
     {
         assertNull(DatabaseType.getType("foo"));
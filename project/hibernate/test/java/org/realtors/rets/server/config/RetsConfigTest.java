@@ -157,6 +157,14 @@ public class RetsConfigTest extends LinesEqualTestCase
             "  <nonce-initial-timeout>5</nonce-initial-timeout>\n" +
             "  <nonce-success-timeout>10</nonce-success-timeout>\n" +
             "  <strict-parsing>true</strict-parsing>" +
+            "  <count-cache-timeout>30</count-cache-timeout>" +
+            "  <compression-level>6</compression-level>" +
+            "  <object-cache-size>2048</object-cache-size>" +
+            "  <get-object-read-ahead>4</get-object-read-ahead>" +
+            "  <metadata-cache-size>2048</metadata-cache-size>" +
+            "  <metadata-snapshot>true</metadata-snapshot>" +
+            "  <missing-object-timeout>10</missing-object-timeout>" +
+            "  <derived-object-type name=\"Thumbnail\" max-width=\"160\"/>" +
             "  <database>\n" +
             "    <type>postgresql</type>\n" +
             "    <host>localhost</host>\n" +
@@ -169,6 +177,10 @@ public class RetsConfigTest extends LinesEqualTestCase
             "    <max-ps-active>50</max-ps-active>\n" +
             "    <max-ps-wait>60000</max-ps-wait>\n" +
             "    <max-ps-idle>5</max-ps-idle>\n" +
+            "    <fetch-size>500</fetch-size>\n" +
+            "    <parameterized-queries>true</parameterized-queries>\n" +
+            "    <windowed-count>true</windowed-count>\n" +
+            "    <approximate-counts>true</approximate-counts>\n" +
             "    <show-sql>true</show-sql>\n" +
             "  </database>\n" +
             "  <security-constraints>\n" +
@@ -209,6 +221,22 @@ public class RetsConfigTest extends LinesEqualTestCase
         assertEquals(5, retsConfig.getNonceInitialTimeout());
         assertEquals(10, retsConfig.getNonceSuccessTimeout());
         assertEquals(true, retsConfig.getStrictParsing());
+        assertEquals(30, retsConfig.getCountCacheTimeout());
+        assertEquals(6, retsConfig.getCompressionLevel());
+        assertEquals(RetsConfig.DEFAULT_COMPRESSION_MIN_SIZE,
+                     retsConfig.getCompressionMinSize());
+        assertEquals(2048, retsConfig.getObjectCacheSize());
+        assertEquals(4, retsConfig.getGetObjectReadAhead());
+        assertEquals(2048, retsConfig.getMetadataCacheSize());
+        assertTrue(retsConfig.getMetadataSnapshot());
+        assertEquals(10, retsConfig.getMissingObjectTimeout());
+        assertEquals(1, retsConfig.getDerivedObjectTypes().size());
+        DerivedObjectType derivedType =
+            retsConfig.getDerivedObjectTypes().get(0);
+        assertEquals("Thumbnail", derivedType.getName());
+        assertEquals("Photo", derivedType.getSourceName());
+        assertEquals(160, derivedType.getMaxWidth());
+        assertEquals(-1, derivedType.getMaxHeight());
 
         DatabaseConfig database = retsConfig.getDatabase();
         assertEquals(DatabaseType.POSTGRESQL, database.getDatabaseType());
@@ -225,6 +253,10 @@ public class RetsConfigTest extends LinesEqualTestCase
         assertEquals(50, database.getMaxPsActive());
         assertEquals(60000, database.getMaxPsWait());
         assertEquals(5, database.getMaxPsIdle());
+        assertEquals(500, database.getFetchSize());
+        assertTrue(database.isParameterizedQueries());
+        assertTrue(database.isWindowedCount());
+        assertTrue(database.isApproximateCounts());
         assertTrue(database.getShowSql());
 
         List securityConstraints = retsConfig.getAllGroupRules();
@@ -316,6 +348,20 @@ public class RetsConfigTest extends LinesEqualTestCase
         assertNull(retsConfig.getGetObjectRoot());
         assertEquals(-1, retsConfig.getNonceInitialTimeout());
         assertEquals(-1, retsConfig.getNonceSuccessTimeout());
+        assertEquals(RetsConfig.DEFAULT_MISSING_OBJECT_TIMEOUT,
+                     retsConfig.getMissingObjectTimeout());
+    }
+
+    public void testFromXmlCompressionLevelTooHigh()
+        throws RetsServerException
+    {
+        String xml =
+            "<?xml version='1.0' ?>\n" +
+            "<rets-config>\n" +
+            "  <compression-level>12</compression-level>" +
+            "</rets-config>";
+        RetsConfig retsConfig = XmlRetsConfigUtils.initFromXml(xml);
+        assertEquals(9, retsConfig.getCompressionLevel());
     }
 
     public void testAddStringChild() throws RetsServerException
@@ -2,6 +2,10 @@
  */
 package org.realtors.rets.server.dmql;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 public class BetweenClauseTest extends TestCase
@@ -13,4 +17,17 @@ public class BetweenClauseTest extends TestCase
                               new StringSqlConverter("10"));
         assertEquals("LP BETWEEN 5 AND 10", TestUtil.toSql(range));
     }
+
+    public void testToParameterizedSql()
+    {
+        BetweenClause range =
+            new BetweenClause("LP", new StringSqlConverter("5"),
+                              new QuotedSqlConverter("abc"));
+        List<Object> parameters = new ArrayList<Object>();
+        assertEquals("LP BETWEEN ? AND ?",
+                     TestUtil.toParameterizedSql(range, parameters));
+        assertEquals(2, parameters.size());
+        assertEquals(new BigDecimal("5"), parameters.get(0));
+        assertEquals("abc", parameters.get(1));
+    }
 }
@@ -1,5 +1,8 @@
 package org.realtors.rets.server.dmql;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.lang.StringUtils;
 
 import junit.framework.TestCase;
@@ -12,6 +15,15 @@ public class DateSqlConverterTest extends TestCase
         assertEquals("'2004-01-08'", TestUtil.toSql(date));
     }
 
+    public void testToParameterizedSql()
+    {
+        DateSqlConverter date = new DateSqlConverter("2004-01-08");
+        List<Object> parameters = new ArrayList<Object>();
+        assertEquals("?", TestUtil.toParameterizedSql(date, parameters));
+        assertEquals(1, parameters.size());
+        assertEquals(java.sql.Date.valueOf("2004-01-08"), parameters.get(0));
+    }
+
     public void testToSqlWithCurrentTime()
     {
         // This should give the current date.  Since we can't test directly,
@@ -3,6 +3,7 @@
 package org.realtors.rets.server.dmql;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -97,6 +98,20 @@ public class DmqlStringTest extends TestCase
         assertEquals(" LIKE '%foo%b_r%'", TestUtil.toSql(string));
     }
 
+    public void testParameterized()
+    {
+        DmqlString string = new DmqlString();
+        string.add("f");
+        string.add(DmqlString.MATCH_ZERO_OR_ONE);
+        string.add("o");
+        string.add(DmqlString.MATCH_ZERO_OR_MORE);
+
+        List parameters = new ArrayList();
+        assertEquals(" LIKE ?",
+                     TestUtil.toParameterizedSql(string, parameters));
+        assertEquals(Arrays.asList(new Object[] {"f_o%"}), parameters);
+    }
+
     public void testEquals()
     {
         DmqlString string1 = new DmqlString();
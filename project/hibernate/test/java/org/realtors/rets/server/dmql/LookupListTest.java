@@ -2,6 +2,10 @@
  */
 package org.realtors.rets.server.dmql;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 public class LookupListTest extends TestCase
@@ -49,6 +53,22 @@ public class LookupListTest extends TestCase
             TestUtil.toSql(lookupList));
     }
 
+    public void testLookupMultiParameterized()
+    {
+        LookupList lookupList = new LookupList(LookupListType.OR,
+                                               "InteriorFeatures");
+        lookupList.setSqlColumn("if");
+        lookupList.addLookup("FP");
+        lookupList.setLookupMulti(true);
+        List<Object> parameters = new ArrayList<Object>();
+        assertEquals(
+            "(if = ? OR if LIKE ? OR if LIKE ? OR if LIKE ?)",
+            TestUtil.toParameterizedSql(lookupList, parameters));
+        assertEquals(Arrays.asList(new Object[] {"FP", "FP,%", "%,FP",
+                                                 "%,FP,%"}),
+                     parameters);
+    }
+
     public void testLookupMultiAnd()
     {
         LookupList lookupList = new LookupList(LookupListType.AND,
@@ -4,6 +4,7 @@ package org.realtors.rets.server.dmql;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.List;
 
 public class TestUtil
 {
@@ -13,4 +14,14 @@ public class TestUtil
         sqlConverter.toSql(new PrintWriter(sql));
         return sql.toString();
     }
+
+    public static String toParameterizedSql(SqlConverter sqlConverter,
+                                            List<Object> parameters)
+    {
+        StringWriter sql = new StringWriter();
+        ParameterizedSqlWriter out = new ParameterizedSqlWriter(sql);
+        sqlConverter.toSql(out);
+        parameters.addAll(out.getParameters());
+        return sql.toString();
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.common.metadata.Metadata;
+import org.realtors.rets.server.IOUtils;
+
+public class MetadataChangedMonitorTest extends TestCase
+{
+    public void testTrackedChangeNotifiesOnce() throws IOException
+    {
+        File file = new File(mDirectory, "metadata.xml");
+        IOUtils.writeString("<RETS/>", file);
+        TrackedDao dao = new TrackedDao(file);
+        dao.getMetadata();
+        MetadataChangedMonitor monitor = createMonitor(dao);
+
+        monitor.run();
+        assertEquals(0, mReloads);
+
+        IOUtils.writeString("<RETS></RETS>", file);
+        monitor.run();
+        assertEquals(1, mReloads);
+        monitor.run();
+        monitor.run();
+        assertEquals(1, mReloads);
+
+        IOUtils.writeString("<RETS> </RETS>", file);
+        monitor.run();
+        assertEquals(2, mReloads);
+    }
+
+    public void testFirstCheckOfTrackedDao() throws IOException
+    {
+        File file = new File(mDirectory, "metadata.xml");
+        IOUtils.writeString("<RETS/>", file);
+        MetadataChangedMonitor monitor = createMonitor(new TrackedDao(file));
+
+        // Nothing was loaded yet, so there is nothing to reload
+        monitor.run();
+        assertEquals(0, mReloads);
+    }
+
+    public void testChangedDate()
+    {
+        DatedDao dao = new DatedDao();
+        MetadataChangedMonitor monitor = createMonitor(dao);
+        Date lastCheckDate = new Date(System.currentTimeMillis() - 60000);
+        monitor.setLastCheckDate(lastCheckDate);
+
+        dao.mChangedDate = new Date(lastCheckDate.getTime() - 1000);
+        monitor.run();
+        assertEquals(0, mReloads);
+
+        monitor.setLastCheckDate(lastCheckDate);
+        dao.mChangedDate = new Date(lastCheckDate.getTime() + 1000);
+        monitor.run();
+        assertEquals(1, mReloads);
+        monitor.run();
+        assertEquals(1, mReloads);
+    }
+
+    private MetadataChangedMonitor createMonitor(final MetadataDao dao)
+    {
+        MetadataChangedMonitor monitor = new MetadataChangedMonitor();
+        monitor.setMetadataDao(dao);
+        List<MetadataChangedListener> listeners =
+            new ArrayList<MetadataChangedListener>();
+        listeners.add(new MetadataChangedListener()
+        {
+            public void metadataChanged()
+            {
+                mReloads++;
+                dao.getMetadata();
+            }
+        });
+        monitor.setMetadataChangedListeners(listeners);
+        return monitor;
+    }
+
+    protected void setUp() throws IOException
+    {
+        mReloads = 0;
+        mDirectory = File.createTempFile("metadata", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+    }
+
+    protected void tearDown()
+    {
+        File[] files = mDirectory.listFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            files[i].delete();
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * Tracks one file, as XmlMetadataDao tracks metadata.xml.
+     */
+    private static class TrackedDao implements TrackedMetadataDao
+    {
+        TrackedDao(File file)
+        {
+            mFiles = new ArrayList<File>();
+            mFiles.add(file);
+        }
+
+        public Metadata getMetadata()
+        {
+            mTracker.update(mFiles);
+            return null;
+        }
+
+        public void saveMetadata(Metadata metadata)
+        {
+        }
+
+        public Date getChangedDate()
+        {
+            return mTracker.getChangedDate();
+        }
+
+        public boolean checkForChanges()
+        {
+            boolean tracked = (mTracker.getChangedDate() != null);
+            return mTracker.update(mFiles) && tracked;
+        }
+
+        private List<File> mFiles;
+        private MetadataFileTracker mTracker = new MetadataFileTracker();
+    }
+
+    private static class DatedDao implements MetadataDao
+    {
+        public Metadata getMetadata()
+        {
+            return null;
+        }
+
+        public void saveMetadata(Metadata metadata)
+        {
+        }
+
+        public Date getChangedDate()
+        {
+            return mChangedDate;
+        }
+
+        Date mChangedDate;
+    }
+
+    private int mReloads;
+    private File mDirectory;
+}
@@ -0,0 +1,131 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.server.IOUtils;
+
+public class MetadataFileTrackerTest extends TestCase
+{
+    public void testFirstUpdate() throws IOException
+    {
+        File file = createFile("metadata.xml", "<RETS/>");
+        file.setLastModified(1000000000000L);
+        MetadataFileTracker tracker = new MetadataFileTracker();
+        assertNull(tracker.getChangedDate());
+        assertTrue(tracker.update(files(file)));
+        assertEquals(new Date(1000000000000L), tracker.getChangedDate());
+        assertFalse(tracker.update(files(file)));
+    }
+
+    public void testEditedInPlace() throws IOException
+    {
+        File file = createFile("metadata.xml", "<RETS/>");
+        TestTracker tracker = new TestTracker();
+        tracker.update(files(file));
+
+        createFile("metadata.xml", "<RETS></RETS>");
+        tracker.mNow = file.lastModified() + 60000;
+        assertTrue(tracker.update(files(file)));
+        assertEquals(new Date(tracker.mNow), tracker.getChangedDate());
+        assertFalse(tracker.update(files(file)));
+    }
+
+    public void testTouchedIsNotChanged() throws IOException
+    {
+        File file = createFile("metadata.xml", "<RETS/>");
+        MetadataFileTracker tracker = new MetadataFileTracker();
+        tracker.update(files(file));
+        Date changedDate = tracker.getChangedDate();
+
+        file.setLastModified(file.lastModified() + 10000);
+        assertFalse(tracker.update(files(file)));
+        assertEquals(changedDate, tracker.getChangedDate());
+    }
+
+    public void testCopiedWithOldDate() throws IOException
+    {
+        File file = createFile("metadata.xml", "<RETS/>");
+        TestTracker tracker = new TestTracker();
+        tracker.update(files(file));
+
+        long lastModified = file.lastModified();
+        createFile("metadata.xml", "<RETS>  </RETS>");
+        file.setLastModified(lastModified - 100000);
+        tracker.mNow = lastModified + 1000;
+        assertTrue(tracker.update(files(file)));
+        assertEquals(new Date(tracker.mNow), tracker.getChangedDate());
+    }
+
+    public void testFileAddedOrRemoved() throws IOException
+    {
+        File a = createFile("a.xml", "<RETS/>");
+        File b = createFile("b.xml", "<RETS/>");
+        MetadataFileTracker tracker = new MetadataFileTracker();
+        tracker.update(files(a));
+        assertTrue(tracker.update(files(a, b)));
+        assertFalse(tracker.update(files(a, b)));
+        assertTrue(tracker.update(files(b)));
+    }
+
+    protected void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("metadata", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+    }
+
+    protected void tearDown()
+    {
+        File[] files = mDirectory.listFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            files[i].delete();
+        }
+        mDirectory.delete();
+    }
+
+    private File createFile(String name, String contents) throws IOException
+    {
+        File file = new File(mDirectory, name);
+        IOUtils.writeString(contents, file);
+        return file;
+    }
+
+    private List<File> files(File file)
+    {
+        List<File> files = new ArrayList<File>();
+        files.add(file);
+        return files;
+    }
+
+    private List<File> files(File a, File b)
+    {
+        List<File> files = files(a);
+        files.add(b);
+        return files;
+    }
+
+    private static class TestTracker extends MetadataFileTracker
+    {
+        protected long currentTimeMillis()
+        {
+            return mNow;
+        }
+
+        long mNow;
+    }
+
+    private File mDirectory;
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import org.realtors.rets.common.metadata.MetaObject;
 import org.realtors.rets.common.metadata.MetadataType;
 import org.realtors.rets.common.metadata.types.MClass;
+import org.realtors.rets.common.metadata.types.MResource;
 import org.realtors.rets.common.metadata.types.MSystem;
 import org.realtors.rets.common.metadata.types.MTable;
 
@@ -101,4 +102,68 @@ public class MetadataManagerTest extends TestCase
         found = manager.findByPattern(MetadataType.TABLE.name(), "foo");
         assertEquals(0, found.size());
     }
+
+    public void testFindByPatternKeepsOrder()
+    {
+        MSystem system = ObjectMother.createSystem();
+        MetadataManager manager = new MetadataManager();
+        MTable res = createTable(system, "Property", "RES");
+        MTable agt = createTable(system, "Agent", "AGT");
+        MTable lnd = createTable(system, "Property", "LND");
+        manager.add(system);
+        manager.add(res);
+        manager.add(agt);
+        manager.add(lnd);
+
+        String tableName = MetadataType.TABLE.name();
+        Map<String, List<MetaObject>> found = manager.findByPattern(tableName, "*");
+        assertEquals("[Property:RES, Agent:AGT, Property:LND]",
+                     found.keySet().toString());
+
+        found = manager.findByPattern(tableName, "Property");
+        assertEquals("[Property:RES, Property:LND]",
+                     found.keySet().toString());
+        assertSame(lnd, found.get("Property:LND").get(0));
+
+        found = manager.findByPattern(tableName, "*:AGT");
+        assertEquals("[Agent:AGT]", found.keySet().toString());
+        assertSame(agt, found.get("Agent:AGT").get(0));
+
+        found = manager.findByPattern(tableName, "Property:RES:foo");
+        assertEquals(0, found.size());
+
+        List<MetadataSegment> segments =
+            manager.fetchMetadata(tableName, new String[] {"*", "LND"});
+        assertEquals(1, segments.size());
+        assertEquals("Property", segments.get(0).getLevels()[0]);
+        assertEquals("LND", segments.get(0).getLevels()[1]);
+    }
+
+    public void testFindNameByPath()
+    {
+        MTable table = ObjectMother.createTable();
+        table.setStandardName("SchoolName");
+        MetadataManager manager = new MetadataManager();
+        manager.add(table);
+        String path = table.getPath();
+        assertEquals("SchoolName", manager.findStandardNameByPath(path));
+        assertEquals("E_SCHOOL", manager.findSystemdNameByPath(path));
+        assertNull(manager.findStandardNameByPath("Property:RES"));
+        assertNull(manager.findSystemdNameByPath(null));
+    }
+
+    private MTable createTable(MSystem system, String resourceId,
+                               String className)
+    {
+        MResource resource = new MResource();
+        resource.setResourceID(resourceId);
+        system.addChild(MetadataType.RESOURCE, resource);
+        MClass aClass = new MClass();
+        aClass.setClassName(className);
+        resource.addChild(MetadataType.CLASS, aClass);
+        MTable table = new MTable();
+        table.setSystemName("E_SCHOOL");
+        aClass.addChild(MetadataType.TABLE, table);
+        return table;
+    }
 }
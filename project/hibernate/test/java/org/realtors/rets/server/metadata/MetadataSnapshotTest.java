@@ -0,0 +1,90 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.common.metadata.Metadata;
+import org.realtors.rets.common.metadata.types.MSystem;
+import org.realtors.rets.common.metadata.types.MTable;
+import org.realtors.rets.server.IOUtils;
+
+public class MetadataSnapshotTest extends TestCase
+{
+    public void testWriteAndRead() throws Exception
+    {
+        MTable table = ObjectMother.createTable();
+        MSystem system = table.getMClass().getMResource().getMSystem();
+        Metadata metadata = new Metadata(system);
+        MetadataSnapshot snapshot = new MetadataSnapshot(mFile);
+        snapshot.write("abc", metadata);
+        assertTrue(mFile.isFile());
+
+        Metadata read = snapshot.read("abc");
+        assertNotNull(read);
+        assertNotSame(metadata, read);
+        assertEquals(system.getSystemID(), read.getSystem().getSystemID());
+        MTable readTable = read.getSystem().getMResources()[0]
+            .getMClasses()[0].getMTables()[0];
+        assertEquals(table.getSystemName(), readTable.getSystemName());
+        assertEquals(table.getStandardName(), readTable.getStandardName());
+    }
+
+    public void testStaleSnapshot() throws Exception
+    {
+        MetadataSnapshot snapshot = new MetadataSnapshot(mFile);
+        assertNull(snapshot.read("abc"));
+        snapshot.write("abc", new Metadata(ObjectMother.createSystem()));
+        assertNull(snapshot.read("def"));
+    }
+
+    public void testCorruptSnapshot() throws Exception
+    {
+        IOUtils.writeString("not a snapshot", mFile);
+        assertNull(new MetadataSnapshot(mFile).read("abc"));
+    }
+
+    public void testHash() throws IOException
+    {
+        File metadataFile = new File(mDirectory, "metadata.xml");
+        IOUtils.writeString("<RETS/>", metadataFile);
+        List<File> files = new ArrayList<File>();
+        files.add(metadataFile);
+        String hash = MetadataSnapshot.hash(files, true);
+        assertEquals(hash, MetadataSnapshot.hash(files, true));
+        assertFalse(hash.equals(MetadataSnapshot.hash(files, false)));
+
+        IOUtils.writeString("<RETS />", metadataFile);
+        assertFalse(hash.equals(MetadataSnapshot.hash(files, true)));
+    }
+
+    protected void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("metadata", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+        mFile = new File(mDirectory, MetadataSnapshot.FILE_NAME);
+    }
+
+    protected void tearDown()
+    {
+        File[] files = mDirectory.listFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            files[i].delete();
+        }
+        mDirectory.delete();
+    }
+
+    private File mDirectory;
+    private File mFile;
+}
@@ -85,6 +85,43 @@ public class CompactFormatterTest extends LinesEqualTestCase
     	
     }
 
+    public void testSqlDateFormat() throws Exception
+    {
+        CompactFormatter formatter =
+            new CompactFormatter(CompactFormatter.DECODE_LOOKUPS,
+                                 RetsVersion.RETS_1_7_2);
+        MockResultSet results = new MockResultSet();
+        String[] columns = new String[]{"r_DATE", "r_STATUS"};
+        results.setColumns(columns);
+        results.addRow(new String[] {"2008-05-09 12:17:00", "0"});
+        results.addRow(new String[] {"2008-05-09", "1"});
+        results.addRow(new String[] {null, null});
+        SimpleDmqlMetadata metadata = new SimpleDmqlMetadata();
+        metadata.addTemporal("DATE");
+        metadata.addLookup("STATUS", new String[] {"0", "1"},
+                           new String[] {"ACT", "INACT"},
+                           new String[] {"Active", null});
+        StringWriter formatted = new StringWriter();
+        SearchFormatterContext context =
+            new SearchFormatterContext(
+                new PrintWriter(formatted), results, Arrays.asList(columns),
+                metadata, RetsVersion.RETS_1_7_2);
+        formatter.formatResults(context);
+        String dateTime =
+            RetsDateTime.render(RetsDateTime.parseSql("2008-05-09 12:17:00"),
+                                RetsVersion.RETS_1_7_2);
+        String date =
+            RetsDateTime.render(RetsDateTime.parseSql("2008-05-09"),
+                                RetsVersion.RETS_1_7_2);
+        assertLinesEqual(
+            "<DELIMITER value=\"09\"/>\n" +
+            "<COLUMNS>\tDATE\tSTATUS\t</COLUMNS>\n" +
+            "<DATA>\t" + dateTime + "\tActive\t</DATA>\n" +
+            "<DATA>\t" + date + "\tINACT\t</DATA>\n" +
+            "<DATA>\t\t\t</DATA>\n",
+            formatted.toString());
+    }
+
     public void testCompactDecodedFormat() throws RetsServerException
     {
         assertLinesEqual(
@@ -108,6 +145,18 @@ public class CompactFormatterTest extends LinesEqualTestCase
             format(CompactFormatter.NO_DECODING, 2));
     }
 
+    public void testRowFetched() throws RetsServerException
+    {
+        // The first row was read ahead, e.g. for a windowed count
+        assertLinesEqual(
+            "<DELIMITER value=\"09\"/>\n" +
+            "<COLUMNS>\tSTNAME\tZIP_CODE\tSTATUS\tIF\t</COLUMNS>\n" +
+            "<DATA>\tMain St.\t12345\t0\t\t</DATA>\n" +
+            "<DATA>\tMichigan Ave.\t60605\t1\tDW,FR\t</DATA>\n" +
+            "<DATA>\tState St.\t60601\t\tDw\t</DATA>\n",
+            format(CompactFormatter.NO_DECODING, Integer.MAX_VALUE, true));
+    }
+
     private String format(CompactFormatter.LookupDecoding lookupDecoding)
         throws RetsServerException
     {
@@ -117,6 +166,13 @@ public class CompactFormatterTest extends LinesEqualTestCase
     private String format(CompactFormatter.LookupDecoding lookupDecoding,
                           int limit)
         throws RetsServerException
+    {
+        return format(lookupDecoding, limit, false);
+    }
+
+    private String format(CompactFormatter.LookupDecoding lookupDecoding,
+                          int limit, boolean rowFetched)
+        throws RetsServerException
     {
         CompactFormatter formatter =
             new CompactFormatter(lookupDecoding, RetsVersion.RETS_1_5);
@@ -139,6 +195,11 @@ public class CompactFormatterTest extends LinesEqualTestCase
                 new PrintWriter(formatted), results, Arrays.asList(COLUMNS),
                 metadata, RetsVersion.RETS_1_5);
         context.setLimit(limit);
+        if (rowFetched)
+        {
+            results.next();
+            context.setRowFetched(true);
+        }
         formatter.formatResults(context);
         return formatted.toString();
     }
@@ -0,0 +1,55 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class CountCacheTest extends TestCase
+{
+    public void testGetCount()
+    {
+        CountCache cache = new CountCache();
+        assertEquals(-1, cache.getCount(createQuery("LP", 5), 60000));
+
+        cache.putCount(createQuery("LP", 5), 42);
+        assertEquals(42, cache.getCount(createQuery("LP", 5), 60000));
+        // Different parameter
+        assertEquals(-1, cache.getCount(createQuery("LP", 6), 60000));
+        // Different SQL
+        assertEquals(-1, cache.getCount(createQuery("SP", 5), 60000));
+    }
+
+    public void testExpires()
+    {
+        CountCache cache = new CountCache();
+        cache.putCount(createQuery("LP", 5), 42);
+        assertEquals(-1, cache.getCount(createQuery("LP", 5), -1));
+        assertEquals(0, cache.size());
+    }
+
+    public void testEvictsLeastRecentlyUsed()
+    {
+        CountCache cache = new CountCache(2);
+        cache.putCount(createQuery("LP", 1), 1);
+        cache.putCount(createQuery("LP", 2), 2);
+        cache.putCount(createQuery("LP", 3), 3);
+        assertEquals(2, cache.size());
+        assertEquals(-1, cache.getCount(createQuery("LP", 1), 60000));
+        assertEquals(3, cache.getCount(createQuery("LP", 3), 60000));
+    }
+
+    private SqlStatements.Query createQuery(String column, int value)
+    {
+        List<Object> parameters = new ArrayList<Object>();
+        parameters.add(Integer.valueOf(value));
+        return new DefaultQuery(
+            "SELECT COUNT(*) FROM t WHERE " + column + " > ?", parameters);
+    }
+}
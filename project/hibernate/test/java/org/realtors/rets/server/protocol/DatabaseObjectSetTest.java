@@ -0,0 +1,123 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.realtors.rets.server.IOUtils;
+import org.realtors.rets.server.Media;
+import org.realtors.rets.server.RetsServerException;
+
+import junit.framework.TestCase;
+
+public class DatabaseObjectSetTest extends TestCase
+{
+    public void testFindAllObjectsKeyedAsRequested()
+        throws RetsServerException
+    {
+        addMedia("abc123", "abc123-1.jpg", 1);
+        addMedia("abc123", "abc123-2.jpg", 2);
+        addMedia("abc124", "abc124-1.jpg", 1);
+
+        Map<String, List<ObjectDescriptor>> objects =
+            mObjectSet.findAllObjects("Photo",
+                Arrays.asList("abc124", "abc123", "abc125"));
+        assertEquals(Arrays.asList("abc124", "abc123"),
+                     new ArrayList<String>(objects.keySet()));
+        assertEquals(Arrays.asList("abc124:1"),
+                     ids(objects.get("abc124")));
+        assertEquals(Arrays.asList("abc123:1", "abc123:2"),
+                     ids(objects.get("abc123")));
+        assertEquals("Photo", mObjectSet.mMediaType);
+    }
+
+    public void testFindAllObjectsKeepsKeysDifferingInCaseOrPadding()
+        throws RetsServerException
+    {
+        // The database matched all three keys to the one it has
+        addMedia("ABC123", "abc123-1.jpg", 1);
+
+        Map<String, List<ObjectDescriptor>> objects =
+            mObjectSet.findAllObjects("Photo",
+                Arrays.asList("abc123", "ABC123", " abc123 "));
+        assertEquals(Arrays.asList("abc123", "ABC123", " abc123 "),
+                     new ArrayList<String>(objects.keySet()));
+        assertEquals(Arrays.asList("abc123:1"), ids(objects.get("abc123")));
+        assertEquals(Arrays.asList("ABC123:1"), ids(objects.get("ABC123")));
+        assertEquals(Arrays.asList(" abc123 :1"),
+                     ids(objects.get(" abc123 ")));
+    }
+
+    public void testFindAllObjectsPrefersExactKey()
+        throws RetsServerException
+    {
+        addMedia("ABC123", "abc123-1.jpg", 1);
+        addMedia("abc123", "abc123-2.jpg", 2);
+
+        Map<String, List<ObjectDescriptor>> objects =
+            mObjectSet.findAllObjects("Photo",
+                Arrays.asList("abc123", "ABC123", "Abc123"));
+        assertEquals(Arrays.asList("abc123:2"), ids(objects.get("abc123")));
+        assertEquals(Arrays.asList("ABC123:1"), ids(objects.get("ABC123")));
+        assertEquals(Arrays.asList("Abc123:1", "Abc123:2"),
+                     ids(objects.get("Abc123")));
+    }
+
+    private void addMedia(String resourceKey, String file, int objectId)
+    {
+        List<Media> media = mObjectSet.mMedia.get(resourceKey);
+        if (media == null)
+        {
+            media = new ArrayList<Media>();
+            mObjectSet.mMedia.put(resourceKey, media);
+        }
+        media.add(new Media(objectId, resourceKey, file, null, objectId,
+                            "Photo", null));
+    }
+
+    private List<String> ids(List<ObjectDescriptor> objects)
+    {
+        List<String> ids = new ArrayList<String>();
+        for (ObjectDescriptor object : objects)
+        {
+            ids.add(object.getObjectKey() + ":" + object.getObjectId());
+        }
+        return ids;
+    }
+
+    protected void setUp()
+    {
+        mObjectSet = new TestDatabaseObjectSet();
+        mObjectSet.setRootDirectory(IOUtils.urlToFile(
+            getClass().getResource(GetObjectTransactionTest.JPEG_FILE_1))
+            .getParent());
+    }
+
+    /**
+     * Finds the media it was given rather than looking in the database.
+     */
+    private static class TestDatabaseObjectSet extends DatabaseObjectSet
+    {
+        protected Map<String, List<Media>> findMediaByResourceKeys(
+            String mediaType, Collection<String> resourceEntities)
+        {
+            mMediaType = mediaType;
+            return mMedia;
+        }
+
+        Map<String, List<Media>> mMedia =
+            new LinkedHashMap<String, List<Media>>();
+        String mMediaType;
+    }
+
+    private TestDatabaseObjectSet mObjectSet;
+}
@@ -0,0 +1,127 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.server.RetsServerException;
+import org.realtors.rets.server.config.DerivedObjectType;
+
+public class DerivedObjectGeneratorTest extends TestCase
+{
+    public void testGenerateThumbnail() throws IOException
+    {
+        File source = createImage("abc123-1.jpg", 400, 300);
+        File derived = mGenerator.getDerivedFile(source, mThumbnail);
+        assertEquals(new File(mDirectory, ".derived/Thumbnail/abc123-1.jpg"),
+                     derived);
+        BufferedImage image = ImageIO.read(derived);
+        assertEquals(100, image.getWidth());
+        assertEquals(75, image.getHeight());
+
+        // Up to date, so not generated again
+        long lastModified = derived.lastModified();
+        derived.setLastModified(lastModified + 10000);
+        assertEquals(derived, mGenerator.getDerivedFile(source, mThumbnail));
+        assertEquals(lastModified + 10000, derived.lastModified());
+
+        // Source changed, so generated again
+        createImage("abc123-1.jpg", 50, 200);
+        source.setLastModified(derived.lastModified() + 10000);
+        image = ImageIO.read(mGenerator.getDerivedFile(source, mThumbnail));
+        assertEquals(25, image.getWidth());
+        assertEquals(100, image.getHeight());
+    }
+
+    public void testSmallImagesNotScaledUp() throws IOException
+    {
+        File source = createImage("small.png", 40, 30);
+        BufferedImage image =
+            ImageIO.read(mGenerator.getDerivedFile(source, mThumbnail));
+        assertEquals(40, image.getWidth());
+        assertEquals(30, image.getHeight());
+    }
+
+    public void testDerivedObjectSet() throws RetsServerException, IOException
+    {
+        createImage("abc123-1.jpg", 400, 300);
+        createImage("abc123-2.jpg", 400, 300);
+        PatternObjectSet photos =
+            new PatternObjectSet(mDirectory.getPath(), "%k-%i.jpg", "abc123");
+        DerivedObjectSet objectSet = new DerivedObjectSet(photos, mGenerator);
+
+        List objects = objectSet.findAllObjects("Thumbnail");
+        assertEquals(2, objects.size());
+        ObjectDescriptor object = (ObjectDescriptor) objects.get(1);
+        assertTrue(object instanceof DerivedObjectDescriptor);
+        assertEquals(2, object.getObjectId());
+        ObjectStream stream = object.openObjectStream();
+        assertEquals("image/jpeg", stream.getMimeType());
+        BufferedImage image = ImageIO.read(stream.getInputStream());
+        assertEquals(100, image.getWidth());
+
+        // Other types are not derived
+        assertTrue(objectSet.findObject("Photo", 1) instanceof
+                   ObjectDescriptor);
+        assertFalse(objectSet.findObject("Photo", 1) instanceof
+                    DerivedObjectDescriptor);
+        assertNull(objectSet.findObject("Floorplan", 1));
+    }
+
+    protected void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("objects", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+        mThumbnail = new DerivedObjectType("Thumbnail", "Photo", 100, 100);
+        List<DerivedObjectType> types = new ArrayList<DerivedObjectType>();
+        types.add(mThumbnail);
+        mGenerator = new DerivedObjectGenerator(mDirectory.getPath(), types, 1);
+    }
+
+    protected void tearDown()
+    {
+        mGenerator.shutdown();
+        delete(mDirectory);
+    }
+
+    private void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (int i = 0; i < files.length; i++)
+            {
+                delete(files[i]);
+            }
+        }
+        file.delete();
+    }
+
+    private File createImage(String name, int width, int height)
+        throws IOException
+    {
+        BufferedImage image =
+            new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        File file = new File(mDirectory, name);
+        String format = name.substring(name.lastIndexOf('.') + 1);
+        ImageIO.write(image, format, file);
+        return file;
+    }
+
+    private File mDirectory;
+    private DerivedObjectType mThumbnail;
+    private DerivedObjectGenerator mGenerator;
+}
@@ -0,0 +1,102 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.client.RetsVersion;
+import org.realtors.rets.server.Group;
+import org.realtors.rets.server.RetsReplyException;
+import org.realtors.rets.server.dmql.DmqlCompiler.ParserResults;
+import org.realtors.rets.server.dmql.StringSqlConverter;
+
+public class DmqlPlanCacheTest extends TestCase
+{
+    public void testGetAndPut() throws RetsReplyException
+    {
+        DmqlPlanCache cache = new DmqlPlanCache();
+        SortedSet<Group> agents = createGroups("agent");
+        assertNull(cache.get(agents, createParameters("(LP=0+)", false)));
+        assertEquals(1, cache.getMisses());
+
+        ParserResults results = createResults();
+        cache.put(0, agents, createParameters("(LP=0+)", false), results);
+        assertSame(results, cache.get(agents, createParameters("(LP=0+)", false)));
+        assertEquals(1, cache.getHits());
+        // Different query
+        assertNull(cache.get(agents, createParameters("(LP=1+)", false)));
+        // Different standard names setting
+        assertNull(cache.get(agents, createParameters("(LP=0+)", true)));
+        // Different groups
+        assertNull(cache.get(createGroups("newspaper"),
+                             createParameters("(LP=0+)", false)));
+
+        cache.clear();
+        assertNull(cache.get(agents, createParameters("(LP=0+)", false)));
+        assertEquals(0, cache.size());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws RetsReplyException
+    {
+        DmqlPlanCache cache = new DmqlPlanCache(2);
+        SortedSet<Group> agents = createGroups("agent");
+        ParserResults results = createResults();
+        cache.put(0, agents, createParameters("(LP=0+)", false), results);
+        cache.put(0, agents, createParameters("(LP=1+)", false), results);
+        cache.get(agents, createParameters("(LP=0+)", false));
+        cache.put(0, agents, createParameters("(LP=2+)", false), results);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(agents, createParameters("(LP=1+)", false)));
+        assertSame(results, cache.get(agents, createParameters("(LP=0+)", false)));
+    }
+
+    public void testDropsPlansParsedBeforeClear() throws RetsReplyException
+    {
+        DmqlPlanCache cache = new DmqlPlanCache();
+        SortedSet<Group> agents = createGroups("agent");
+        int generation = cache.getGeneration();
+        cache.clear();
+        cache.put(generation, agents, createParameters("(LP=0+)", false),
+                  createResults());
+        assertEquals(0, cache.size());
+
+        cache.put(cache.getGeneration(), agents,
+                  createParameters("(LP=0+)", false), createResults());
+        assertEquals(1, cache.size());
+    }
+
+    private SortedSet<Group> createGroups(String name)
+    {
+        SortedSet<Group> groups = new TreeSet<Group>();
+        groups.add(new Group(name));
+        return groups;
+    }
+
+    private ParserResults createResults()
+    {
+        return new ParserResults(new StringSqlConverter("1 = 1"), null);
+    }
+
+    private SearchParameters createParameters(String query,
+                                              boolean standardNames)
+        throws RetsReplyException
+    {
+        Map parameters = new HashMap();
+        parameters.put("SearchType", new String[] {"Property"});
+        parameters.put("Class", new String[] {"RES"});
+        parameters.put("QueryType", new String[] {"DMQL2"});
+        parameters.put("Query", new String[] {query});
+        parameters.put("StandardNames",
+                       new String[] {standardNames ? "1" : "0"});
+        return new SearchParameters(parameters, RetsVersion.RETS_1_7_2);
+    }
+}
@@ -4,12 +4,17 @@ package org.realtors.rets.server.protocol;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -17,6 +22,7 @@ import org.apache.commons.lang.ArrayUtils;
 import junit.framework.TestCase;
 import org.realtors.rets.server.IOUtils;
 import org.realtors.rets.server.RetsReplyException;
+import org.realtors.rets.server.RetsServer;
 import org.realtors.rets.server.RetsServerException;
 import org.realtors.rets.server.GlobalTestSetup;
 
@@ -43,6 +49,54 @@ public class GetObjectTransactionTest extends TestCase
             IOUtils.readBytes(getClass().getResourceAsStream(JPEG_FILE_1));
         byte[] actual = response.getByteArray();
         assertTrue(Arrays.equals(expected, actual));
+        assertEquals("" + expected.length,
+                     response.getHeader("Content-Length"));
+    }
+
+    public void testSingleJpegSendFile()
+        throws IOException, RetsServerException
+    {
+        GetObjectTransaction transaction = createTransaction("abc123:1");
+        TestResponse response = new TestResponse();
+        response.setSendFileSupported(true);
+        transaction.execute(response);
+        assertEquals("image/jpeg", response.getContentType());
+
+        File expected = IOUtils.urlToFile(localUrl(JPEG_FILE_1));
+        assertEquals(expected.getCanonicalFile(),
+                     response.getSentFile().getCanonicalFile());
+        assertEquals(expected.length(), response.getSentLength());
+        assertEquals("" + expected.length(),
+                     response.getHeader("Content-Length"));
+        assertEquals(0, response.getByteArray().length);
+    }
+
+    public void testSingleJpegCached() throws IOException, RetsServerException
+    {
+        ObjectCache cache = new ObjectCache(1024 * 1024);
+        RetsServer.setObjectCache(cache);
+        try
+        {
+            byte[] expected =
+                IOUtils.readBytes(getClass().getResourceAsStream(JPEG_FILE_1));
+            for (int i = 0; i < 2; i++)
+            {
+                GetObjectTransaction transaction =
+                    createTransaction("abc123:1");
+                TestResponse response = new TestResponse();
+                transaction.execute(response);
+                assertEquals("image/jpeg", response.getContentType());
+                assertEquals("" + expected.length,
+                             response.getHeader("Content-Length"));
+                assertTrue(Arrays.equals(expected, response.getByteArray()));
+            }
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+        }
+        finally
+        {
+            RetsServer.setObjectCache(null);
+        }
     }
 
     public void testSingleJpegLocation()
@@ -208,6 +262,27 @@ public class GetObjectTransactionTest extends TestCase
         assertTrue(Arrays.equals(expected, actual));
     }
 
+    public void testMultipartReadAhead()
+        throws RetsServerException, IOException
+    {
+        String id = "abc123:*,abc124:*,abc125:*";
+        GetObjectTransaction transaction = createTransaction(id);
+        transaction.setBoundaryGenerator(new TestBoundaryGenerator());
+        TestResponse expected = new TestResponse();
+        transaction.execute(expected);
+
+        for (int readAhead = 1; readAhead <= 5; readAhead++)
+        {
+            transaction = createTransaction(id);
+            transaction.setBoundaryGenerator(new TestBoundaryGenerator());
+            transaction.setReadAhead(readAhead);
+            TestResponse actual = new TestResponse();
+            transaction.execute(actual);
+            assertTrue(Arrays.equals(expected.getByteArray(),
+                                     actual.getByteArray()));
+        }
+    }
+
     public void testMultipartLocation() throws RetsServerException, IOException
     {
         GetObjectTransaction transaction =
@@ -399,6 +474,49 @@ public class GetObjectTransactionTest extends TestCase
         assertTrue(Arrays.equals(expected, actual));
     }
 
+    public void testBatchObjectSet() throws RetsServerException, IOException
+    {
+        TestObjectSet objectSet = new TestBatchObjectSet();
+        GetObjectTransaction transaction =
+            createTransaction("abc123:*,abc124:*,abc125:1", objectSet);
+        TestResponse response = new TestResponse();
+        transaction.execute(response);
+        assertEquals(Arrays.asList("abc123", "abc124", "abc125"),
+                     contentIds(response));
+        assertEquals(Arrays.asList(Arrays.asList("abc123", "abc124")),
+                     objectSet.mBatches);
+        assertTrue(objectSet.mFindAll.isEmpty());
+        assertEquals(Arrays.asList("abc125"), objectSet.mFind);
+    }
+
+    public void testBatchObjectSetForOneEntity()
+        throws RetsServerException, IOException
+    {
+        TestObjectSet objectSet = new TestBatchObjectSet();
+        GetObjectTransaction transaction =
+            createTransaction("abc123:*,abc124:1", objectSet);
+        TestResponse response = new TestResponse();
+        transaction.execute(response);
+        assertEquals(Arrays.asList("abc123", "abc124"),
+                     contentIds(response));
+        assertTrue(objectSet.mBatches.isEmpty());
+        assertEquals(Arrays.asList("abc123"), objectSet.mFindAll);
+        assertEquals(Arrays.asList("abc124"), objectSet.mFind);
+    }
+
+    public void testObjectSetWithoutBatch()
+        throws RetsServerException, IOException
+    {
+        TestObjectSet objectSet = new TestObjectSet();
+        GetObjectTransaction transaction =
+            createTransaction("abc123:*,abc124:*", objectSet);
+        TestResponse response = new TestResponse();
+        transaction.execute(response);
+        assertEquals(Arrays.asList("abc123", "abc124"),
+                     contentIds(response));
+        assertEquals(Arrays.asList("abc123", "abc124"), objectSet.mFindAll);
+    }
+
     public void testFindObjectDescriptor() throws RetsServerException
     {
         GetObjectTransaction transaction = createTransaction();
@@ -476,6 +594,39 @@ public class GetObjectTransactionTest extends TestCase
         return transaction;
     }
 
+    private GetObjectTransaction createTransaction(String id,
+                                                   final ObjectSet objectSet)
+    {
+        GetObjectParameters parameters =
+            new GetObjectParameters("Property", "Photo", id, true);
+        GetObjectTransaction transaction = new GetObjectTransaction(parameters)
+        {
+            protected ObjectSet getObjectSet(String resourceEntity)
+            {
+                objectSet.setResourceEntity(resourceEntity);
+                return objectSet;
+            }
+        };
+        setupTransaction(transaction);
+        return transaction;
+    }
+
+    private List<String> contentIds(TestResponse response)
+        throws IOException
+    {
+        List<String> contentIds = new ArrayList<String>();
+        String[] lines = new String(response.getByteArray(), "US-ASCII")
+            .split(CRLF);
+        for (int i = 0; i < lines.length; i++)
+        {
+            if (lines[i].startsWith("Content-ID: "))
+            {
+                contentIds.add(lines[i].substring("Content-ID: ".length()));
+            }
+        }
+        return contentIds;
+    }
+
     private void setupTransaction(GetObjectTransaction transaction)
     {
         // The file name will get stripped off, so all that's import is that it
@@ -514,6 +665,32 @@ public class GetObjectTransactionTest extends TestCase
             return mOutputStream;
         }
 
+        public boolean sendFile(File file, long length)
+        {
+            if (!mSendFileSupported)
+            {
+                return false;
+            }
+            mSentFile = file;
+            mSentLength = length;
+            return true;
+        }
+
+        public void setSendFileSupported(boolean sendFileSupported)
+        {
+            mSendFileSupported = sendFileSupported;
+        }
+
+        public File getSentFile()
+        {
+            return mSentFile;
+        }
+
+        public long getSentLength()
+        {
+            return mSentLength;
+        }
+
         public byte[] getByteArray()
         {
             return mOutputStream.toByteArray();
@@ -543,6 +720,70 @@ public class GetObjectTransactionTest extends TestCase
             new ByteArrayOutputStream();
         private String mContentType;
         private Map mHeaders = new HashMap();
+        private boolean mSendFileSupported;
+        private File mSentFile;
+        private long mSentLength;
+    }
+
+    /**
+     * Finds one object for every entity, and remembers how it was asked.
+     */
+    private class TestObjectSet implements ObjectSet
+    {
+        public List findAllObjects(String type) throws RetsServerException
+        {
+            mFindAll.add(mResourceEntity);
+            List objects = new ArrayList();
+            objects.add(createObject(mResourceEntity));
+            return objects;
+        }
+
+        public ObjectDescriptor findObject(String type, int objectId)
+            throws RetsServerException
+        {
+            mFind.add(mResourceEntity);
+            return createObject(mResourceEntity);
+        }
+
+        public void setResource(String resource)
+        {
+        }
+
+        public void setResourceEntity(String resourceEntity)
+        {
+            mResourceEntity = resourceEntity;
+        }
+
+        protected ObjectDescriptor createObject(String resourceEntity)
+        {
+            return new ObjectDescriptor(resourceEntity, 1,
+                                        localUrl(JPEG_FILE_1));
+        }
+
+        private String mResourceEntity;
+        List<List<String>> mBatches = new ArrayList<List<String>>();
+        List<String> mFindAll = new ArrayList<String>();
+        List<String> mFind = new ArrayList<String>();
+    }
+
+    private class TestBatchObjectSet extends TestObjectSet
+        implements BatchObjectSet
+    {
+        public Map<String, List<ObjectDescriptor>> findAllObjects(
+            String type, Collection<String> resourceEntities)
+        {
+            mBatches.add(new ArrayList<String>(resourceEntities));
+            Map<String, List<ObjectDescriptor>> objects =
+                new LinkedHashMap<String, List<ObjectDescriptor>>();
+            for (String resourceEntity : resourceEntities)
+            {
+                List<ObjectDescriptor> entityObjects =
+                    new ArrayList<ObjectDescriptor>();
+                entityObjects.add(createObject(resourceEntity));
+                objects.put(resourceEntity, entityObjects);
+            }
+            return objects;
+        }
     }
 
     private static class TestBoundaryGenerator
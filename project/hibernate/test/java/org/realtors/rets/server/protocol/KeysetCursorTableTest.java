@@ -0,0 +1,73 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.client.RetsVersion;
+import org.realtors.rets.server.RetsReplyException;
+
+public class KeysetCursorTableTest extends TestCase
+{
+    public void testContinuesNextPage() throws RetsReplyException
+    {
+        KeysetCursorTable table = new KeysetCursorTable();
+        assertNull(table.findKeyAfter("joe", createParameters("1", "(LP=0+)")));
+
+        table.putLastKey("joe", createParameters("1", "(LP=0+)"), 100, "LN100");
+        assertEquals("LN100",
+                     table.findKeyAfter("joe", createParameters("101", "(LP=0+)")));
+        // Not the page right after
+        assertNull(table.findKeyAfter("joe", createParameters("201", "(LP=0+)")));
+        // Different query
+        assertNull(table.findKeyAfter("joe", createParameters("101", "(LP=1+)")));
+        // Different user
+        assertNull(table.findKeyAfter("fred", createParameters("101", "(LP=0+)")));
+
+        table.putLastKey("joe", createParameters("101", "(LP=0+)"), 100, "LN200");
+        assertEquals("LN200",
+                     table.findKeyAfter("joe", createParameters("201", "(LP=0+)")));
+
+        table.remove("joe", createParameters("201", "(LP=0+)"));
+        assertNull(table.findKeyAfter("joe", createParameters("201", "(LP=0+)")));
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws RetsReplyException
+    {
+        KeysetCursorTable table = new KeysetCursorTable(2, 60000);
+        table.putLastKey("joe", createParameters("1", "(LP=0+)"), 10, "a");
+        table.putLastKey("fred", createParameters("1", "(LP=0+)"), 10, "b");
+        table.putLastKey("bob", createParameters("1", "(LP=0+)"), 10, "c");
+        assertEquals(2, table.size());
+        assertNull(table.findKeyAfter("joe", createParameters("11", "(LP=0+)")));
+        assertEquals("c",
+                     table.findKeyAfter("bob", createParameters("11", "(LP=0+)")));
+    }
+
+    public void testExpires() throws RetsReplyException
+    {
+        KeysetCursorTable table = new KeysetCursorTable(10, -1);
+        table.putLastKey("joe", createParameters("1", "(LP=0+)"), 10, "a");
+        assertNull(table.findKeyAfter("joe", createParameters("11", "(LP=0+)")));
+        assertEquals(0, table.size());
+    }
+
+    private SearchParameters createParameters(String offset, String query)
+        throws RetsReplyException
+    {
+        Map parameters = new HashMap();
+        parameters.put("SearchType", new String[] {"Property"});
+        parameters.put("Class", new String[] {"RES"});
+        parameters.put("QueryType", new String[] {"DMQL2"});
+        parameters.put("Query", new String[] {query});
+        parameters.put("Offset", new String[] {offset});
+        return new SearchParameters(parameters, RetsVersion.RETS_1_7_2);
+    }
+}
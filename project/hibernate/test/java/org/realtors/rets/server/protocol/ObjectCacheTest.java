@@ -0,0 +1,140 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.server.IOUtils;
+
+public class ObjectCacheTest extends TestCase
+{
+    public void testHitsUntilModified() throws IOException
+    {
+        ObjectCache cache = new ObjectCache(8000);
+        File file = createFile("a.jpg", 100, 'a');
+
+        ObjectStream stream = cache.openObjectStream(file);
+        assertEquals("image/jpeg", stream.getMimeType());
+        assertEquals(100, IOUtils.readBytes(stream.getInputStream()).length);
+        assertEquals(1, cache.getMisses());
+
+        stream = cache.openObjectStream(file);
+        assertTrue(stream instanceof ByteArrayObjectStream);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+        assertEquals(100, cache.getBytes());
+
+        createFile("a.jpg", 50, 'b');
+        file.setLastModified(file.lastModified() - 10000);
+        stream = cache.openObjectStream(file);
+        byte[] bytes = IOUtils.readBytes(stream.getInputStream());
+        assertEquals(50, bytes.length);
+        assertEquals('b', bytes[0]);
+        assertEquals(2, cache.getMisses());
+        assertEquals(50, cache.getBytes());
+
+        cache.purge(file);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    public void testDeletedFile() throws IOException
+    {
+        ObjectCache cache = new ObjectCache(8000);
+        File file = createFile("a.jpg", 100, 'a');
+        cache.openObjectStream(file);
+        file.delete();
+        try
+        {
+            cache.openObjectStream(file);
+            fail("Should have thrown FileNotFoundException");
+        }
+        catch (FileNotFoundException e)
+        {
+            // Expected
+        }
+        assertEquals(0, cache.size());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws IOException
+    {
+        ObjectCache cache = new ObjectCache(8000);
+        File a = createFile("a.jpg", 1000, 'a');
+        File b = createFile("b.jpg", 1000, 'b');
+        File c = createFile("c.jpg", 1000, 'c');
+        cache.openObjectStream(a);
+        cache.openObjectStream(b);
+        cache.openObjectStream(a);
+        File[] others = new File[6];
+        for (int i = 0; i < others.length; i++)
+        {
+            others[i] = createFile("other" + i + ".jpg", 1000, 'o');
+        }
+        cache.openObjectStream(c);
+        for (int i = 0; i < 5; i++)
+        {
+            cache.openObjectStream(others[i]);
+        }
+        assertEquals(8, cache.size());
+        assertEquals(8000, cache.getBytes());
+        assertEquals(0, cache.getEvictions());
+
+        cache.openObjectStream(others[5]);
+        assertEquals(1, cache.getEvictions());
+        long hits = cache.getHits();
+        cache.openObjectStream(a);
+        assertEquals(hits + 1, cache.getHits());
+        cache.openObjectStream(b);
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    public void testLargeObjectsNotCached() throws IOException
+    {
+        ObjectCache cache = new ObjectCache(8000);
+        File file = createFile("large.jpg", 1001, 'l');
+        ObjectStream stream = cache.openObjectStream(file);
+        assertTrue(stream instanceof FileObjectStream);
+        stream.getInputStream().close();
+        assertEquals(0, cache.size());
+    }
+
+    protected void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("objects", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+    }
+
+    protected void tearDown()
+    {
+        File[] files = mDirectory.listFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            files[i].delete();
+        }
+        mDirectory.delete();
+    }
+
+    private File createFile(String name, int length, char c)
+        throws IOException
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            bytes[i] = (byte) c;
+        }
+        File file = new File(mDirectory, name);
+        IOUtils.writeBytes(bytes, file.getPath());
+        return file;
+    }
+
+    private File mDirectory;
+}
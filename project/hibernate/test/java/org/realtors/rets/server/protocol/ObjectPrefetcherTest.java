@@ -0,0 +1,104 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ObjectPrefetcherTest extends TestCase
+{
+    public void testCloseWaitsForObjectsBeingOpened() throws Exception
+    {
+        final BlockingObjectDescriptor object =
+            new BlockingObjectDescriptor();
+        List<ObjectDescriptor> objects = new ArrayList<ObjectDescriptor>();
+        objects.add(object);
+        final ObjectPrefetcher prefetcher = new ObjectPrefetcher(objects, 1);
+        assertTrue(object.mOpening.await(5, TimeUnit.SECONDS));
+
+        Thread closer = new Thread()
+        {
+            public void run()
+            {
+                prefetcher.close();
+            }
+        };
+        closer.start();
+        closer.join(200);
+        assertTrue("close() returned before the object was opened",
+                   closer.isAlive());
+
+        object.mOpen.countDown();
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        assertTrue("Stream of the object was not closed",
+                   object.mInput.mClosed);
+    }
+
+    /**
+     * An object that is larger than the prefetch buffer, and is not opened
+     * until the test lets it.
+     */
+    private static class BlockingObjectDescriptor extends ObjectDescriptor
+    {
+        BlockingObjectDescriptor() throws IOException
+        {
+            super("abc123", 1, new URL("http://localhost/abc123-1.jpg"));
+        }
+
+        public ObjectStream openObjectStream() throws IOException
+        {
+            mOpening.countDown();
+            try
+            {
+                mOpen.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException("Interrupted");
+            }
+            return new ObjectStream()
+            {
+                public InputStream getInputStream()
+                {
+                    return mInput;
+                }
+
+                public String getMimeType()
+                {
+                    return "image/jpeg";
+                }
+            };
+        }
+
+        final CountDownLatch mOpening = new CountDownLatch(1);
+        final CountDownLatch mOpen = new CountDownLatch(1);
+        final EndlessInputStream mInput = new EndlessInputStream();
+    }
+
+    private static class EndlessInputStream extends InputStream
+    {
+        public int read()
+        {
+            return 0;
+        }
+
+        public void close()
+        {
+            mClosed = true;
+        }
+
+        volatile boolean mClosed;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.server.IOUtils;
+import org.realtors.rets.server.RetsServerException;
+
+public class ObjectSetCacheTest extends TestCase
+{
+    public void testFormatterParsedOnce()
+    {
+        ObjectSetCache cache = new ObjectSetCache(10, 5000);
+        GetObjectPatternFormatter formatter = cache.getFormatter("%k-%i.jpg");
+        assertSame(formatter, cache.getFormatter("%k-%i.jpg"));
+        assertNotSame(formatter, cache.getFormatter("%k.xml"));
+
+        StringBuffer buffer = new StringBuffer();
+        formatter.format(buffer, new GetObjectPatternContext("abc123", 2));
+        assertEquals("abc123-2.jpg", buffer.toString());
+    }
+
+    public void testXmlObjectSetParsedUntilModified()
+        throws IOException, RetsServerException
+    {
+        ObjectSetCache cache = new ObjectSetCache(10, 5000);
+        File file = createObjectSet("abc123.xml", "a.jpg");
+
+        XmlObjectSet objectSet = cache.getXmlObjectSet(file);
+        assertEquals(1, objectSet.findAllObjects("Photo").size());
+        assertEquals(1, cache.getMisses());
+        assertSame(objectSet, cache.getXmlObjectSet(file));
+        assertEquals(1, cache.getHits());
+
+        createObjectSet("abc123.xml", "b.jpg");
+        file.setLastModified(file.lastModified() - 10000);
+        XmlObjectSet changed = cache.getXmlObjectSet(file);
+        assertNotSame(objectSet, changed);
+        ObjectDescriptor object = changed.findObject("Photo", 1);
+        assertTrue(object.getUrl().toString().endsWith("b.jpg"));
+        assertEquals(1, cache.size());
+    }
+
+    public void testMissingRemembered() throws IOException, RetsServerException
+    {
+        TestObjectSetCache cache = new TestObjectSetCache(5000);
+        File file = new File(mDirectory, "abc124-1.jpg");
+        assertFalse(cache.isFile(file));
+
+        // Not seen until the timeout is up
+        createObjectSet("abc124-1.jpg", "a.jpg");
+        assertFalse(cache.isFile(file));
+        assertNull(cache.getXmlObjectSet(file));
+        assertEquals(2, cache.getMissingHits());
+
+        cache.mNow += 5000;
+        assertTrue(cache.isFile(file));
+        assertNotNull(cache.getXmlObjectSet(file));
+    }
+
+    public void testNoMissingTimeout() throws IOException
+    {
+        ObjectSetCache cache = new ObjectSetCache(10, 0);
+        File file = new File(mDirectory, "abc124-1.jpg");
+        assertFalse(cache.isFile(file));
+        createObjectSet("abc124-1.jpg", "a.jpg");
+        assertTrue(cache.isFile(file));
+        assertEquals(0, cache.getMissingHits());
+    }
+
+    public void testEvictsLeastRecentlyUsed()
+        throws IOException, RetsServerException
+    {
+        ObjectSetCache cache = new ObjectSetCache(2, 5000);
+        File a = createObjectSet("a.xml", "a.jpg");
+        File b = createObjectSet("b.xml", "b.jpg");
+        File c = createObjectSet("c.xml", "c.jpg");
+        XmlObjectSet objectSet = cache.getXmlObjectSet(a);
+        cache.getXmlObjectSet(b);
+        cache.getXmlObjectSet(a);
+        cache.getXmlObjectSet(c);
+        assertEquals(2, cache.size());
+        assertSame(objectSet, cache.getXmlObjectSet(a));
+        long misses = cache.getMisses();
+        cache.getXmlObjectSet(b);
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    protected void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("objects", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+    }
+
+    protected void tearDown()
+    {
+        File[] files = mDirectory.listFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            files[i].delete();
+        }
+        mDirectory.delete();
+    }
+
+    private File createObjectSet(String name, String src) throws IOException
+    {
+        String xml =
+            "<object-set resource-key='abc123'>\n" +
+            "  <object-group type='Photo'>\n" +
+            "    <object src='" + src + "'/>\n" +
+            "  </object-group>\n" +
+            "</object-set>\n";
+        File file = new File(mDirectory, name);
+        IOUtils.writeString(xml, file);
+        return file;
+    }
+
+    private static class TestObjectSetCache extends ObjectSetCache
+    {
+        TestObjectSetCache(long missingTimeout)
+        {
+            super(10, missingTimeout);
+        }
+
+        long currentTimeMillis()
+        {
+            return mNow;
+        }
+
+        long mNow = 1000000;
+    }
+
+    private File mDirectory;
+}
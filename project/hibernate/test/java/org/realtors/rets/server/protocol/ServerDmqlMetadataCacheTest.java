@@ -0,0 +1,129 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.protocol;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.realtors.rets.common.metadata.types.MTable;
+import org.realtors.rets.server.Group;
+import org.realtors.rets.server.config.FilterRule;
+import org.realtors.rets.server.config.GroupRules;
+import org.realtors.rets.server.metadata.DataTypeEnum;
+import org.realtors.rets.server.metadata.ServerDmqlMetadata;
+
+public class ServerDmqlMetadataCacheTest extends TestCase
+{
+    protected void setUp()
+    {
+        mTables = new LinkedHashSet<MTable>();
+        mTables.add(createTable("ListingNumber", "ln"));
+        mTables.add(createTable("ListingPrice", "lp"));
+        mGroupFilter = new TableGroupFilter();
+        mGroupFilter.setTables("Property", "RES", mTables);
+
+        FilterRule filterRule = new FilterRule(FilterRule.EXCLUDE);
+        filterRule.setResource("Property");
+        filterRule.setRetsClass("RES");
+        filterRule.addSystemName("ListingPrice");
+        GroupRules rules = new GroupRules("newspaper");
+        rules.addFilterRule(filterRule);
+        mGroupFilter.addRules(rules);
+    }
+
+    public void testSharesMetadata()
+    {
+        ServerDmqlMetadataCache cache = new ServerDmqlMetadataCache();
+        ServerDmqlMetadata metadata =
+            cache.getMetadata(mGroupFilter, createGroups("agent"),
+                              "Property", "RES", false);
+        assertEquals("lp", metadata.fieldToColumn("ListingPrice"));
+        assertSame(metadata,
+                   cache.getMetadata(mGroupFilter, createGroups("agent"),
+                                     "Property", "RES", false));
+        assertEquals(1, cache.size());
+
+        // Groups and standard names each get their own metadata
+        ServerDmqlMetadata newspaper =
+            cache.getMetadata(mGroupFilter, createGroups("newspaper"),
+                              "Property", "RES", false);
+        assertNull(newspaper.fieldToColumn("ListingPrice"));
+        assertNotSame(metadata,
+                      cache.getMetadata(mGroupFilter, createGroups("agent"),
+                                        "Property", "RES", true));
+        assertEquals(3, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNotSame(metadata,
+                      cache.getMetadata(mGroupFilter, createGroups("agent"),
+                                        "Property", "RES", false));
+    }
+
+    public void testMetadataOfReplacedFilterIsNotShared()
+    {
+        ServerDmqlMetadataCache cache = new ServerDmqlMetadataCache();
+        cache.clear();
+        // A search still holding the old filter after the clear
+        ServerDmqlMetadata oldMetadata =
+            cache.getMetadata(mGroupFilter, createGroups("newspaper"),
+                              "Property", "RES", false);
+        assertNull(oldMetadata.fieldToColumn("ListingPrice"));
+
+        // The new filter no longer hides the listing price
+        TableGroupFilter newGroupFilter = new TableGroupFilter();
+        newGroupFilter.setTables("Property", "RES", mTables);
+        ServerDmqlMetadata newMetadata =
+            cache.getMetadata(newGroupFilter, createGroups("newspaper"),
+                              "Property", "RES", false);
+        assertEquals("lp", newMetadata.fieldToColumn("ListingPrice"));
+        assertSame(newMetadata,
+                   cache.getMetadata(newGroupFilter, createGroups("newspaper"),
+                                     "Property", "RES", false));
+    }
+
+    public void testColumnsAreUnmodifiable()
+    {
+        ServerDmqlMetadataCache cache = new ServerDmqlMetadataCache();
+        ServerDmqlMetadata metadata =
+            cache.getMetadata(mGroupFilter, createGroups("agent"),
+                              "Property", "RES", false);
+        try
+        {
+            metadata.getAllColumns().add("foo");
+            fail("Columns should not be modifiable");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+    }
+
+    private MTable createTable(String systemName, String dbName)
+    {
+        MTable table = new MTable();
+        table.setSystemName(systemName);
+        table.setStandardName(systemName);
+        table.setDBName(dbName);
+        table.setDataType(DataTypeEnum.CHARACTER.toString());
+        return table;
+    }
+
+    private SortedSet<Group> createGroups(String name)
+    {
+        SortedSet<Group> groups = new TreeSet<Group>();
+        groups.add(new Group(name));
+        return groups;
+    }
+
+    private Set<MTable> mTables;
+    private TableGroupFilter mGroupFilter;
+}
@@ -76,6 +76,58 @@ public class StandardXMLFormatterTest extends LinesEqualTestCase
         );
     }
 
+    public void testEmptyContainers() throws RetsServerException
+    {
+        init();
+
+        StandardXMLFormatter formatter =
+            new StandardXMLFormatter();
+        MockResultSet results = new MockResultSet();
+        results.setColumns(COLUMNS);
+        results.addRow(new String[] {null, "", "1000"});
+        results.addRow(new String[] {"Main St.", null, null});
+        SimpleDmqlMetadata metadata = new SimpleDmqlMetadata();
+        metadata.addString("StreetName", "r_STNAME");
+        metadata.addString("PostalCode", "r_ZIP_CODE");
+        metadata.addString("LivingArea", "r_SQFT");
+        MTable table = new MTable();
+        table.setUniqueId(Long.valueOf(1));
+        table.setUnits(UnitEnum.SQFT.toString());
+        table.setDBName("r_SQFT");
+        table.setDataType("Int");
+        metadata.addTable("LivingArea", table);
+
+        StringWriter formatted = new StringWriter();
+        SearchFormatterContext context =
+            new SearchFormatterContext(new PrintWriter(formatted), results,
+                                       Arrays.asList(COLUMNS), metadata,
+                                       RetsVersion.RETS_1_7_2);
+        context.setClassStandardName("ResidentialProperty");
+        context.setResourceStandardName("Property");
+        context.setStandardNames(true);
+        formatter.formatResults(context);
+        // Containers are only written for rows with values below them
+        assertLinesEqual(
+            "<REData>\n" +
+            "<REProperties>\n" +
+            "<ResidentialProperty>\n" +
+            "<LivingArea>\n" +
+            "<Area Type=\"INTEGER\" Units=\"SqFeet\">1000</Area>\n" +
+            "</LivingArea>\n" +
+            "</ResidentialProperty>\n" +
+            "<ResidentialProperty>\n" +
+            "<Listing>\n" +
+            "<StreetAddress>\n" +
+            "<StreetName>Main St.</StreetName>\n" +
+            "</StreetAddress>\n" +
+            "</Listing>\n" +
+            "</ResidentialProperty>\n" +
+            "</REProperties>\n" +
+            "</REData>\n",
+            formatted.toString()
+        );
+    }
+
     public void testNoUnits() throws RetsServerException
     {
         String[] columns = new String[] {"r_STNAME", "r_ZIP_CODE"};
@@ -218,6 +270,8 @@ public class StandardXMLFormatterTest extends LinesEqualTestCase
          */
         mMetadataManager.clear();
         mMetadataManager.addRecursive(mSystem);
+        // The DTDs may already be loaded, e.g. by another test
+        RetsDTD.metadataChanged();
     }
     
     private MetadataManager mMetadataManager = null;
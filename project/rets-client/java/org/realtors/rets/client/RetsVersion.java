@@ -59,6 +59,11 @@ public class RetsVersion implements Serializable {
 		return false;
 	}
 
+	@Override
+	public int hashCode() {
+		return (this.mMajor * 31 + this.mMinor) * 31 + this.mDraft;
+	}
+
 	public boolean notEquals(Object o) {
 		if (o instanceof RetsVersion) {
 			RetsVersion v = (RetsVersion) o;
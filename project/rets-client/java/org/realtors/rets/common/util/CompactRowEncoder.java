@@ -0,0 +1,201 @@
+/* Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.common.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * Writes rows in compact format, like {@link DataRowBuilder}, without
+ * creating any objects per value.  Delimiters in a value are replaced and
+ * the value is XML escaped in one pass over its characters, into a buffer
+ * that is reused for every row.  The escaping is the same as
+ * <code>StringEscapeUtils.escapeXml</code>: the five XML entities are used
+ * for markup characters, and characters above 0x7F are written as numeric
+ * character references.  Escaped values are therefore plain ASCII.
+ * <p>
+ * The buffer is only written to the underlying writer when it fills up,
+ * so {@link #flush} must be called after the last row, and before anything
+ * else is written to the writer.  An encoder is not thread safe.
+ */
+public class CompactRowEncoder
+{
+    public CompactRowEncoder(Writer writer)
+    {
+        this(writer, '\t', "    ");
+    }
+
+    public CompactRowEncoder(Writer writer, char delimiter,
+                             String delimiterRepl)
+    {
+        mWriter = writer;
+        mDelimiter = delimiter;
+        mBuffer = new char[BUFFER_SIZE];
+        mLength = 0;
+        // Escape the replacement once, as it would have been escaped along
+        // with the rest of the value
+        mDelimiterRepl =
+            StringEscapeUtils.escapeXml(delimiterRepl).toCharArray();
+    }
+
+    public void begin() throws IOException
+    {
+        appendRaw(DATA_BEGIN);
+        appendRaw(mDelimiter);
+    }
+
+    /**
+     * Appends a value followed by the delimiter.  A <code>null</code> value
+     * is written as an empty value.
+     *
+     * @param value value to append
+     * @throws IOException if the value could not be written
+     */
+    public void append(String value) throws IOException
+    {
+        if (value != null)
+        {
+            int length = value.length();
+            for (int i = 0; i < length; i++)
+            {
+                char c = value.charAt(i);
+                if (c == mDelimiter)
+                {
+                    appendRaw(mDelimiterRepl);
+                }
+                else
+                {
+                    appendEscaped(c);
+                }
+            }
+        }
+        appendRaw(mDelimiter);
+    }
+
+    public void end() throws IOException
+    {
+        appendRaw(DATA_END);
+    }
+
+    /**
+     * Writes any buffered characters to the underlying writer.  This does
+     * not flush the writer itself.
+     *
+     * @throws IOException if the characters could not be written
+     */
+    public void flush() throws IOException
+    {
+        if (mLength > 0)
+        {
+            mWriter.write(mBuffer, 0, mLength);
+            mLength = 0;
+        }
+    }
+
+    private void appendEscaped(char c) throws IOException
+    {
+        switch (c)
+        {
+            case '&':
+                appendRaw(AMP);
+                break;
+
+            case '<':
+                appendRaw(LT);
+                break;
+
+            case '>':
+                appendRaw(GT);
+                break;
+
+            case '"':
+                appendRaw(QUOT);
+                break;
+
+            case '\'':
+                appendRaw(APOS);
+                break;
+
+            default:
+                if (c > 0x7F)
+                {
+                    appendCharacterReference(c);
+                }
+                else
+                {
+                    appendRaw(c);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Appends a decimal numeric character reference, e.g. "&amp;#233;".
+     */
+    private void appendCharacterReference(char c) throws IOException
+    {
+        // A char has at most five decimal digits
+        ensureCapacity(8);
+        mBuffer[mLength++] = '&';
+        mBuffer[mLength++] = '#';
+        int value = c;
+        int divisor = 10000;
+        while (divisor > value)
+        {
+            divisor /= 10;
+        }
+        while (divisor > 0)
+        {
+            mBuffer[mLength++] = (char) ('0' + (value / divisor));
+            value %= divisor;
+            divisor /= 10;
+        }
+        mBuffer[mLength++] = ';';
+    }
+
+    private void appendRaw(char c) throws IOException
+    {
+        ensureCapacity(1);
+        mBuffer[mLength++] = c;
+    }
+
+    private void appendRaw(char[] chars) throws IOException
+    {
+        ensureCapacity(chars.length);
+        System.arraycopy(chars, 0, mBuffer, mLength, chars.length);
+        mLength += chars.length;
+    }
+
+    private void ensureCapacity(int needed) throws IOException
+    {
+        if (mLength + needed <= mBuffer.length)
+        {
+            return;
+        }
+        flush();
+        if (needed > mBuffer.length)
+        {
+            mBuffer = new char[needed];
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] DATA_BEGIN = "<DATA>".toCharArray();
+    private static final char[] DATA_END = "</DATA>\n".toCharArray();
+    private static final char[] AMP = "&amp;".toCharArray();
+    private static final char[] LT = "&lt;".toCharArray();
+    private static final char[] GT = "&gt;".toCharArray();
+    private static final char[] QUOT = "&quot;".toCharArray();
+    private static final char[] APOS = "&apos;".toCharArray();
+
+    private Writer mWriter;
+    private char mDelimiter;
+    private char[] mDelimiterRepl;
+    private char[] mBuffer;
+    private int mLength;
+}
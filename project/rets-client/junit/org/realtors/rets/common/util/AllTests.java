@@ -0,0 +1,22 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.common.util;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class AllTests
+{
+    public static Test suite()
+    {
+        TestSuite suite;
+
+        suite = new TestSuite();
+        suite.addTestSuite(CompactRowEncoderTest.class);
+        return suite;
+    }
+}
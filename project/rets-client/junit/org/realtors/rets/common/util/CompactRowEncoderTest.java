@@ -0,0 +1,52 @@
+package org.realtors.rets.common.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class CompactRowEncoderTest extends TestCase {
+	public void testMatchesDataRowBuilder() throws Exception {
+		String[] values = new String[] { "Main St.", null, "", "a\tb",
+				"<&>\"'", "caf\u00e9 \u20ac", "\u0001\u007f" };
+
+		StringWriter expected = new StringWriter();
+		DataRowBuilder builder = new DataRowBuilder(new PrintWriter(expected));
+		builder.begin();
+		for (int i = 0; i < values.length; i++)
+			builder.append(values[i]);
+		builder.end();
+
+		StringWriter actual = new StringWriter();
+		CompactRowEncoder encoder = new CompactRowEncoder(actual);
+		encoder.begin();
+		for (int i = 0; i < values.length; i++)
+			encoder.append(values[i]);
+		encoder.end();
+		encoder.flush();
+
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	public void testRowsLargerThanBuffer() throws Exception {
+		StringBuffer value = new StringBuffer();
+		for (int i = 0; i < 5000; i++)
+			value.append("&\u00e9");
+
+		StringWriter expected = new StringWriter();
+		DataRowBuilder builder = new DataRowBuilder(new PrintWriter(expected));
+		StringWriter actual = new StringWriter();
+		CompactRowEncoder encoder = new CompactRowEncoder(actual);
+		for (int row = 0; row < 3; row++) {
+			builder.begin();
+			builder.append(value.toString());
+			builder.end();
+			encoder.begin();
+			encoder.append(value.toString());
+			encoder.end();
+		}
+		encoder.flush();
+
+		assertEquals(expected.toString(), actual.toString());
+	}
+}
@@ -10,11 +10,15 @@ package org.realtors.rets.server.webapp;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.realtors.rets.client.RetsVersion;
 import org.realtors.rets.server.GetMetadataParameters;
 import org.realtors.rets.server.GetMetadataTransaction;
 import org.realtors.rets.server.RetsServer;
 import org.realtors.rets.server.RetsServerException;
+import org.realtors.rets.server.ServerSnapshot;
 import org.realtors.rets.server.User;
 
 /**
@@ -23,6 +27,11 @@ import org.realtors.rets.server.User;
  */
 public class  GetMetadataServlet extends RetsServlet
 {
+    protected boolean isCompressible()
+    {
+        return true;
+    }
+
     protected void doRets(RetsServletRequest request,
                           RetsServletResponse response)
         throws RetsServerException, IOException
@@ -32,8 +41,13 @@ public class  GetMetadataServlet extends RetsServlet
         RetsVersion retsVersion = request.getRetsVersion();
         GetMetadataParameters parameters =
             new GetMetadataParameters(request.getParameterMap(), user);
+        // The filter must come from the same configuration as the metadata
+        ServerSnapshot snapshot = RetsServer.getSnapshot();
         GetMetadataTransaction transaction =
-            new GetMetadataTransaction(out, parameters, RetsServer.getMetadataManager(), retsVersion);
+            new GetMetadataTransaction(out, parameters,
+                                       snapshot.getMetadataManager(),
+                                       snapshot.getTableGroupFilter(),
+                                       retsVersion);
         if (retsVersion.equals(RetsVersion.RETS_1_5))
         {
             // For RETS 1.5, getMetadata needs a Content-ID header containing the
@@ -43,6 +57,40 @@ public class  GetMetadataServlet extends RetsServlet
                 response.setHeader("Content-ID", "METADATA-" + metadataType);
             }
         }
+        String entityTag = transaction.getEntityTag();
+        response.setHeader("ETag", entityTag);
+        if (matchesEntityTag(request.getHeader("If-None-Match"), entityTag))
+        {
+            // The client already has this version of the metadata
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
         transaction.execute();
     }
+
+    /**
+     * Returns <code>true</code> if an If-None-Match header lists an entity
+     * tag.
+     */
+    static boolean matchesEntityTag(String ifNoneMatch, String entityTag)
+    {
+        if (ifNoneMatch == null)
+        {
+            return false;
+        }
+        String[] tags = ifNoneMatch.split(",");
+        for (int i = 0; i < tags.length; i++)
+        {
+            String tag = tags[i].trim();
+            if (tag.startsWith("W/"))
+            {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(entityTag))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -10,9 +10,13 @@
  */
 package org.realtors.rets.server.webapp;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import javax.servlet.ServletOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.realtors.rets.server.RetsServer;
@@ -21,6 +25,7 @@ import org.realtors.rets.server.config.RetsConfig;
 import org.realtors.rets.server.protocol.GetObjectParameters;
 import org.realtors.rets.server.protocol.GetObjectTransaction;
 import org.realtors.rets.server.protocol.GetObjectResponse;
+import org.realtors.rets.server.webapp.io.CountingServletOutputStream;
 
 /**
  * @web.servlet name="get-object-servlet"
@@ -40,10 +45,11 @@ public class GetObjectServlet extends RetsServlet
         transaction.setRootDirectory(retsConfig.getGetObjectRoot());
         transaction.setPhotoPattern(retsConfig.getPhotoPattern());
         transaction.setObjectSetPattern(retsConfig.getObjectSetPattern());
+        transaction.setReadAhead(retsConfig.getGetObjectReadAhead());
         StringBuffer location = ServletUtils.getContextPath(request);
         location.append("/objects/");
         transaction.setBaseLocationUrl(location.toString());
-        transaction.execute(new Response(response));
+        transaction.execute(new Response(request, response));
     }
 
     protected boolean isXmlResponse()
@@ -53,8 +59,10 @@ public class GetObjectServlet extends RetsServlet
 
     private static class Response implements GetObjectResponse
     {
-        public Response(HttpServletResponse httpResponse)
+        public Response(HttpServletRequest httpRequest,
+                        HttpServletResponse httpResponse)
         {
+            mHttpRequest = httpRequest;
             mHttpResponse = httpResponse;
         }
 
@@ -63,6 +71,31 @@ public class GetObjectServlet extends RetsServlet
             return mHttpResponse.getOutputStream();
         }
 
+        /**
+         * Uses Tomcat's sendfile, where the connector supports it, so the
+         * file is copied to the socket by the operating system.
+         */
+        public boolean sendFile(File file, long length) throws IOException
+        {
+            if (!Boolean.TRUE.equals(
+                    mHttpRequest.getAttribute(SENDFILE_SUPPORT)))
+            {
+                return false;
+            }
+            mHttpRequest.setAttribute(SENDFILE_FILENAME,
+                                      file.getCanonicalPath());
+            mHttpRequest.setAttribute(SENDFILE_START, Long.valueOf(0));
+            mHttpRequest.setAttribute(SENDFILE_END, Long.valueOf(length));
+            ServletOutputStream out = mHttpResponse.getOutputStream();
+            if (out instanceof CountingServletOutputStream)
+            {
+                // The file never passes through the stream, so count it
+                // here for the request log
+                ((CountingServletOutputStream) out).addByteCount(length);
+            }
+            return true;
+        }
+
         public void setContentType(String contentType)
         {
             mHttpResponse.setContentType(contentType);
@@ -73,6 +106,16 @@ public class GetObjectServlet extends RetsServlet
             mHttpResponse.setHeader(name, value);
         }
 
+        private HttpServletRequest mHttpRequest;
         private HttpServletResponse mHttpResponse;
     }
+
+    private static final String SENDFILE_SUPPORT =
+        "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME =
+        "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START =
+        "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END =
+        "org.apache.tomcat.sendfile.end";
 }
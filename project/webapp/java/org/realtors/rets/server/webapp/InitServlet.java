@@ -27,6 +27,7 @@ import org.realtors.rets.server.ConnectionHelper;
 import org.realtors.rets.server.IOUtils;
 import org.realtors.rets.server.LogPropertiesUtils;
 import org.realtors.rets.server.PasswordMethod;
+import org.realtors.rets.server.RetsDTD;
 import org.realtors.rets.server.RetsServer;
 import org.realtors.rets.server.RetsServerException;
 import org.realtors.rets.server.config.DatabaseConfig;
@@ -51,6 +52,7 @@ public class InitServlet extends RetsServlet
             WebApp.loadConfiguration(getServletContext());
             PasswordMethod.setDefaultMethod(PasswordMethod.DIGEST_A1, PasswordMethod.RETS_REALM);
             initHibernate();
+            initDTDs();
             LOG.info("Init servlet completed successfully");
         }
         catch (RetsServerException e)
@@ -200,6 +202,24 @@ public class InitServlet extends RetsServlet
         }
     }
 
+    /**
+     * Loads the STANDARD-XML DTDs up front, so the first searches do not
+     * wait for them.  A DTD that fails to load here is tried again by the
+     * first search that needs it.
+     */
+    private void initDTDs()
+    {
+        try
+        {
+            LOG.debug("Loading DTDs");
+            RetsDTD.preloadRetsDTDs();
+        }
+        catch (RetsServerException e)
+        {
+            LOG.warn("Could not load DTDs", e);
+        }
+    }
+
     private void logDatabaseInfo() throws ServletException
     {
         ConnectionHelper helper = RetsServer.createHelper();
@@ -139,6 +139,11 @@ public class RequestLogFilter implements Filter {
             String requestUri = request.getRequestURI();
             Map<?, ?> requestParameterMap = request.getParameterMap();
             long byteCount = byteCounter.getByteCount();
+            // Compressed responses also record what they were before compression
+            Long uncompressedByteCount = (Long)request.getAttribute(RetsServletResponse.UNCOMPRESSED_BYTE_COUNT_KEY);
+            if (uncompressedByteCount == null) {
+                uncompressedByteCount = Long.valueOf(byteCount);
+            }
             
             SearchTransactionStatistics searchTransactionStatistics = (SearchTransactionStatistics)request.getAttribute(SearchServlet.SEARCH_TRANSACTION_STATISTICS_KEY);
 
@@ -156,6 +161,7 @@ public class RequestLogFilter implements Filter {
                 requestLogEntry.put("searchTransactionStatistics", searchTransactionStatistics);
             }
             requestLogEntry.put("byteCount", Long.valueOf(byteCount));
+            requestLogEntry.put("uncompressedByteCount", uncompressedByteCount);
             requestLogEntry.put("duration", Long.valueOf(duration));
             requestLogEntry.put("now", now);
             RequestLogLogger requestLogLogger = getRequestLogLogger();
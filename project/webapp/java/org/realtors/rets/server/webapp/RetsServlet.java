@@ -24,9 +24,11 @@ import org.apache.log4j.Logger;
 import org.realtors.rets.server.AccountingStatistics;
 import org.realtors.rets.server.ReplyCode;
 import org.realtors.rets.server.RetsReplyException;
+import org.realtors.rets.server.RetsServer;
 import org.realtors.rets.server.RetsServerException;
 import org.realtors.rets.server.RetsUtils;
 import org.realtors.rets.server.User;
+import org.realtors.rets.server.config.RetsConfig;
 import org.realtors.rets.server.webapp.auth.AuthenticationFilter;
 
 public abstract class RetsServlet extends HttpServlet implements Constants
@@ -81,6 +83,10 @@ public abstract class RetsServlet extends HttpServlet implements Constants
                                RetsServletResponse response)
         throws IOException
     {
+        if (isCompressible())
+        {
+            enableCompression(request, response);
+        }
         try
         {
             response.setRetsVersionHeader(request.getRetsVersion());
@@ -136,6 +142,41 @@ public abstract class RetsServlet extends HttpServlet implements Constants
                 }
             }
         }
+        finally
+        {
+            response.finishResponse();
+            long uncompressedByteCount = response.getUncompressedByteCount();
+            if (uncompressedByteCount >= 0)
+            {
+                request.setAttribute(
+                    RetsServletResponse.UNCOMPRESSED_BYTE_COUNT_KEY,
+                    Long.valueOf(uncompressedByteCount));
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if responses may be compressed for clients
+     * that accept it.  Only worth it for responses that can be large.
+     *
+     * @return <code>true</code> if the response may be compressed
+     */
+    protected boolean isCompressible()
+    {
+        return false;
+    }
+
+    private void enableCompression(RetsServletRequest request,
+                                   RetsServletResponse response)
+    {
+        RetsConfig config = RetsServer.getRetsConfiguration();
+        if ((config == null) || (config.getCompressionLevel() <= 0))
+        {
+            return;
+        }
+        response.enableCompression(request.getHeader("Accept-Encoding"),
+                                   config.getCompressionLevel(),
+                                   config.getCompressionMinSize());
     }
 
     protected void preDoRets(RetsServletRequest request,
@@ -11,12 +11,15 @@
 package org.realtors.rets.server.webapp;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.realtors.rets.client.RetsVersion;
+import org.realtors.rets.server.webapp.io.CompressingServletOutputStream;
 
 public class RetsServletResponse extends HttpServletResponseWrapper
 {
@@ -65,6 +68,91 @@ public class RetsServletResponse extends HttpServletResponseWrapper
         setRetsHttpHeaders();
     }
     
+    /**
+     * Compresses the response if the client accepts gzip or deflate and the
+     * response is at least <code>minSize</code> bytes.
+     * {@link #finishResponse} must be called once the response is written.
+     *
+     * @param acceptEncoding the request's Accept-Encoding header
+     * @param level compression level, from 1 to 9
+     * @param minSize smallest response to compress, in bytes
+     */
+    public void enableCompression(String acceptEncoding, int level,
+                                  int minSize)
+    {
+        mCompressionEncoding =
+            CompressingServletOutputStream.negotiateEncoding(acceptEncoding);
+        mCompressionLevel = level;
+        mCompressionMinSize = minSize;
+        mCompressionEnabled = true;
+        setRetsHttpHeaders();
+    }
+
+    public ServletOutputStream getOutputStream() throws IOException
+    {
+        if (mCompressionEncoding == null)
+        {
+            return super.getOutputStream();
+        }
+        if (mCompressingStream == null)
+        {
+            mCompressingStream = new CompressingServletOutputStream(
+                super.getOutputStream(), this, mCompressionEncoding,
+                mCompressionLevel, mCompressionMinSize);
+        }
+        return mCompressingStream;
+    }
+
+    public PrintWriter getWriter() throws IOException
+    {
+        if (mCompressionEncoding == null)
+        {
+            return super.getWriter();
+        }
+        if (mCompressingWriter == null)
+        {
+            mCompressingWriter = new PrintWriter(new OutputStreamWriter(
+                getOutputStream(), getCharacterEncoding()));
+        }
+        return mCompressingWriter;
+    }
+
+    /**
+     * Writes out anything held back for compression.  Does nothing if the
+     * response is not compressed.
+     *
+     * @throws IOException if the response could not be written
+     */
+    public void finishResponse() throws IOException
+    {
+        if (mCompressingWriter != null)
+        {
+            mCompressingWriter.flush();
+        }
+        if (mCompressingStream != null)
+        {
+            mCompressingStream.finish();
+        }
+    }
+
+    /**
+     * Returns the number of bytes written before compression, or -1 if
+     * compression is not enabled for this response or the client accepts
+     * no encoding to compress with.
+     */
+    public long getUncompressedByteCount()
+    {
+        if (mCompressionEncoding == null)
+        {
+            return -1;
+        }
+        if (mCompressingStream == null)
+        {
+            return 0;
+        }
+        return mCompressingStream.getByteCount();
+    }
+
     public void setRetsRequestID(String retsRequestID)
     {
         mRetsRequestID = retsRequestID;
@@ -81,16 +169,34 @@ public class RetsServletResponse extends HttpServletResponseWrapper
         setHeader("Cache-Control", "private");
         if (mRetsRequestID != null)
             setHeader("RETS-Request-ID", mRetsRequestID);
+        if (mCompressionEnabled)
+            setHeader("Vary", "Accept-Encoding");
     }
 
     public void reset()
     {
         super.reset();
+        // Anything written, compressed or not, was thrown away
+        mCompressingStream = null;
+        mCompressingWriter = null;
         setRetsHttpHeaders();
     }
 
     private String mRetsVersionheader;
     private String mRetsRequestID;
+    private boolean mCompressionEnabled;
+    /** Content coding to compress with, or null to not compress. */
+    private String mCompressionEncoding;
+    private int mCompressionLevel;
+    private int mCompressionMinSize;
+    private CompressingServletOutputStream mCompressingStream;
+    private PrintWriter mCompressingWriter;
+    /**
+     * Request attribute holding the number of bytes of a compressed
+     * response before compression, as a Long.
+     */
+    public static final String UNCOMPRESSED_BYTE_COUNT_KEY =
+        RetsServletResponse.class.getName() + ".UncompressedByteCount";
     public static final String sRetServerHeader =
         WebApp.SERVER_NAME + "/" + WebApp.getVersion();
 }
@@ -29,6 +29,11 @@ public class SearchServlet extends RetsServlet
 {
     public static final String SEARCH_TRANSACTION_STATISTICS_KEY = SearchTransactionStatistics.class.getName();
 
+    protected boolean isCompressible()
+    {
+        return true;
+    }
+
     protected void doRets(RetsServletRequest request,
                           RetsServletResponse response)
         throws RetsServerException, IOException
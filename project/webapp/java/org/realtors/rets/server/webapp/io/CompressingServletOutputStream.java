@@ -0,0 +1,253 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.webapp.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.realtors.rets.server.io.ByteCounter;
+
+/**
+ * Compresses the bytes written to the underlying {@link ServletOutputStream}
+ * with gzip or deflate. The first bytes are held back until there are at
+ * least {@code minSize} of them, so small responses are sent as they are.
+ * Once a response is large enough, the {@code Content-Encoding} header is
+ * set and everything written is compressed.
+ * <p>
+ * {@link #finish()} must be called once the response is complete, to send
+ * any bytes held back and the end of the compressed data.
+ */
+public class CompressingServletOutputStream extends ServletOutputStream implements ByteCounter {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    // Configuration Variables -----------------------------------------------
+    private final ServletOutputStream servletOutputStream;
+    private final HttpServletResponse response;
+    private final String encoding;
+    private final int level;
+
+    // State Variables -------------------------------------------------------
+    /** Bytes held back until there are enough to compress. */
+    private byte[] buffer;
+    private int buffered;
+    private Deflater deflater;
+    private DeflaterOutputStream deflaterOutputStream;
+    private boolean finished;
+    /** The count of uncompressed bytes written. */
+    private long count;
+
+    /**
+     * Constructs a new CompressingServletOutputStream.
+     *
+     * @param servletOutputStream The servlet output stream to write the
+     *            compressed bytes to. Must not be {@code null}.
+     * @param response The response whose {@code Content-Encoding} header is
+     *            set once compression starts. Must not be {@code null}.
+     * @param encoding Either {@link #GZIP} or {@link #DEFLATE}.
+     * @param level The compression level, from 1 to 9.
+     * @param minSize The smallest response that is compressed, in bytes.
+     */
+    public CompressingServletOutputStream(ServletOutputStream servletOutputStream, HttpServletResponse response,
+            String encoding, int level, int minSize) {
+        super();
+        this.servletOutputStream = servletOutputStream;
+        this.response = response;
+        this.encoding = encoding;
+        this.level = level;
+        this.buffer = new byte[Math.max(minSize, 0)];
+    }
+
+    /**
+     * Returns the content coding to use for a request, based on its
+     * {@code Accept-Encoding} header. gzip is preferred over deflate, unless
+     * the client gives deflate a higher quality.
+     *
+     * @param acceptEncoding The value of the {@code Accept-Encoding} header.
+     *            May be {@code null}.
+     * @return {@link #GZIP}, {@link #DEFLATE}, or {@code null} if the client
+     *         accepts neither.
+     */
+    public static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        String encoding = null;
+        float encodingQuality = 0;
+        String[] codings = acceptEncoding.split(",");
+        for (int i = 0; i < codings.length; i++) {
+            String[] parts = codings[i].split(";");
+            String coding = parts[0].trim().toLowerCase();
+            float quality = 1;
+            for (int j = 1; j < parts.length; j++) {
+                String parameter = parts[j].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("*") || coding.equals("x-gzip")) {
+                coding = GZIP;
+            }
+            if (!coding.equals(GZIP) && !coding.equals(DEFLATE)) {
+                continue;
+            }
+            if (quality > encodingQuality || (quality == encodingQuality && coding.equals(GZIP))) {
+                encoding = (quality > 0) ? coding : null;
+                encodingQuality = quality;
+            }
+        }
+        return encoding;
+    }
+
+    /*- (non-Javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        this.count += 1;
+        if (this.deflaterOutputStream != null) {
+            this.deflaterOutputStream.write(b);
+        } else if (this.buffered < this.buffer.length) {
+            this.buffer[this.buffered++] = (byte)b;
+        } else {
+            startCompression();
+            this.deflaterOutputStream.write(b);
+        }
+    }
+
+    /*- (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.count += len;
+        if (this.deflaterOutputStream != null) {
+            this.deflaterOutputStream.write(b, off, len);
+        } else if (this.buffered + len <= this.buffer.length) {
+            System.arraycopy(b, off, this.buffer, this.buffered, len);
+            this.buffered += len;
+        } else {
+            startCompression();
+            this.deflaterOutputStream.write(b, off, len);
+        }
+    }
+
+    /*- (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[])
+     */
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    /**
+     * Flushes compressed bytes to the underlying stream. Bytes held back
+     * because the response may still be too small to compress stay held
+     * back.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.deflaterOutputStream != null) {
+            this.deflaterOutputStream.flush();
+        }
+    }
+
+    /**
+     * Finishes the response without closing the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * Writes any bytes held back and, if the response was compressed, the
+     * end of the compressed data. Further calls do nothing.
+     *
+     * @throws IOException if the bytes could not be written
+     */
+    public void finish() throws IOException {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+        if (this.deflaterOutputStream != null) {
+            try {
+                this.deflaterOutputStream.finish();
+            } finally {
+                this.deflater.end();
+            }
+        } else if (this.buffered > 0) {
+            this.servletOutputStream.write(this.buffer, 0, this.buffered);
+        }
+        this.buffer = null;
+    }
+
+    /**
+     * Returns whether the response is being compressed.
+     *
+     * @return {@code true} once enough has been written to compress.
+     */
+    public boolean isCompressing() {
+        return this.deflaterOutputStream != null;
+    }
+
+    /**
+     * Returns the number of bytes written before compression.
+     *
+     * @return The uncompressed byte count. Never negative.
+     */
+    public long getByteCount() {
+        return this.count;
+    }
+
+    private void startCompression() throws IOException {
+        this.response.setHeader("Content-Encoding", this.encoding);
+        // The compressing streams are finished, never closed, so they leave
+        // the servlet output stream open.
+        OutputStream out = this.servletOutputStream;
+        if (GZIP.equals(this.encoding)) {
+            LevelGZIPOutputStream gzipOutputStream = new LevelGZIPOutputStream(out, this.level);
+            this.deflater = gzipOutputStream.getDeflater();
+            this.deflaterOutputStream = gzipOutputStream;
+        } else {
+            this.deflater = new Deflater(this.level);
+            this.deflaterOutputStream = new DeflaterOutputStream(out, this.deflater, BUFFER_SIZE);
+        }
+        this.deflaterOutputStream.write(this.buffer, 0, this.buffered);
+        this.buffer = null;
+        this.buffered = 0;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * A {@link GZIPOutputStream} with a compression level.
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            this.def.setLevel(level);
+        }
+
+        Deflater getDeflater() {
+            return this.def;
+        }
+    }
+
+}
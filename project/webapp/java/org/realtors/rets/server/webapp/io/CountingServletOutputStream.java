@@ -15,7 +15,8 @@ import org.realtors.rets.server.io.ByteCounter;
 
 /**
  * Counts the number of bytes written or printed to the underlying
- * {@link ServletOutputStream}.
+ * {@link ServletOutputStream}. Every write, bulk or not, is passed straight
+ * to the underlying stream as it is.
  * 
  * @author Danny
  * @since 0.40.15
@@ -54,8 +55,8 @@ public class CountingServletOutputStream extends ServletOutputStream implements
      */
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        this.servletOutputStream.write(b, off, len);
         this.count += len;
-        super.write(b, off, len);
     }
 
     /*- (non-Javadoc)
@@ -63,163 +64,23 @@ public class CountingServletOutputStream extends ServletOutputStream implements
      */
     @Override
     public void write(byte[] b) throws IOException {
+        this.servletOutputStream.write(b, 0, b.length);
         this.count += b.length;
-        super.write(b);
     }
 
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(boolean)
-     */
-    @Override
-    public void print(boolean b) throws IOException {
-        String str = Boolean.toString(b);
-        this.count += str.length();
-        super.print(b);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(char)
-     */
-    @Override
-    public void print(char c) throws IOException {
-        this.count += 1;
-        super.print(c);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(double)
-     */
-    @Override
-    public void print(double d) throws IOException {
-        String str = Double.toString(d);
-        this.count += str.length();
-        super.print(d);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(float)
-     */
-    @Override
-    public void print(float f) throws IOException {
-        String str = Float.toString(f);
-        this.count += str.length();
-        super.print(f);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(int)
-     */
-    @Override
-    public void print(int i) throws IOException {
-        String str = Integer.toString(i);
-        this.count += str.length();
-        super.print(i);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(long)
-     */
-    @Override
-    public void print(long l) throws IOException {
-        String str = Long.toString(l);
-        this.count += str.length();
-        super.print(l);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#print(java.lang.String)
+    /**
+     * Prints the string straight to the underlying stream. All of the other
+     * {@code print} and {@code println} methods of {@link ServletOutputStream}
+     * end up here, so they are counted here too.
      */
     @Override
     public void print(String str) throws IOException {
-        if (str != null) {
-            this.count += str.length();
-        } else {
-            // 4 characters in null.
-            this.count += 4;
+        if (str == null) {
+            str = "null";
         }
-        super.print(str);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println()
-     */
-    @Override
-    public void println() throws IOException {
-        this.count += 2;
-        super.println();
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(boolean)
-     */
-    @Override
-    public void println(boolean b) throws IOException {
-        String str = Boolean.toString(b);
-        this.count += str.length() + 2;
-        super.println(b);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(char)
-     */
-    @Override
-    public void println(char c) throws IOException {
-        this.count += 3;
-        super.println(c);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(double)
-     */
-    @Override
-    public void println(double d) throws IOException {
-        String str = Double.toString(d);
-        this.count += str.length() + 2;
-        super.println(d);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(float)
-     */
-    @Override
-    public void println(float f) throws IOException {
-        String str = Float.toString(f);
-        this.count += str.length() + 2;
-        super.println(f);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(int)
-     */
-    @Override
-    public void println(int i) throws IOException {
-        String str = Integer.toString(i);
-        this.count += str.length() + 2;
-        super.println(i);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(long)
-     */
-    @Override
-    public void println(long l) throws IOException {
-        String str = Long.toString(l);
-        this.count += str.length() + 2;
-        super.println(l);
-    }
-
-    /*- (non-Javadoc)
-     * @see javax.servlet.ServletOutputStream#println(java.lang.String)
-     */
-    @Override
-    public void println(String str) throws IOException {
-        if (str != null) {
-            this.count += str.length() + 2;
-        } else {
-            // 4 characters in null.
-            this.count += (4 + 2);
-        }
-        super.println(str);
+        this.servletOutputStream.print(str);
+        // ServletOutputStream writes one byte per character.
+        this.count += str.length();
     }
 
     /*- (non-Javadoc)
@@ -227,7 +88,7 @@ public class CountingServletOutputStream extends ServletOutputStream implements
      */
     @Override
     public void close() throws IOException {
-        super.close();
+        this.servletOutputStream.close();
     }
 
     /*- (non-Javadoc)
@@ -235,7 +96,17 @@ public class CountingServletOutputStream extends ServletOutputStream implements
      */
     @Override
     public void flush() throws IOException {
-        super.flush();
+        this.servletOutputStream.flush();
+    }
+
+    /**
+     * Adds bytes that were sent without passing through this stream, such
+     * as a file sent by the connector, to the byte count.
+     * 
+     * @param count The number of bytes sent. Must not be negative.
+     */
+    public void addByteCount(long count) {
+        this.count += count;
     }
 
     /**
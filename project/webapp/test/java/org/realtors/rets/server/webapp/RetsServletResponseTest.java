@@ -0,0 +1,114 @@
+/*
+ * Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.webapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+public class RetsServletResponseTest extends TestCase
+{
+    public void testUncompressedByteCountWithoutAcceptEncoding()
+        throws IOException
+    {
+        RetsServletResponse response = new RetsServletResponse(mResponse);
+        response.enableCompression(null, 6, 16);
+        writeResponse(response);
+        assertNull(mHeaders.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", mHeaders.get("Vary"));
+        assertEquals(-1, response.getUncompressedByteCount());
+    }
+
+    public void testUncompressedByteCountWithoutCompression()
+        throws IOException
+    {
+        RetsServletResponse response = new RetsServletResponse(mResponse);
+        writeResponse(response);
+        assertEquals(-1, response.getUncompressedByteCount());
+    }
+
+    public void testUncompressedByteCountWithGzip() throws IOException
+    {
+        RetsServletResponse response = new RetsServletResponse(mResponse);
+        response.enableCompression("gzip", 6, 16);
+        int length = writeResponse(response);
+        assertEquals("gzip", mHeaders.get("Content-Encoding"));
+        assertEquals(length, response.getUncompressedByteCount());
+        assertTrue(mBytes.size() < length);
+    }
+
+    private int writeResponse(RetsServletResponse response)
+        throws IOException
+    {
+        StringBuffer body = new StringBuffer();
+        for (int i = 0; i < 100; i++)
+        {
+            body.append("<DATA>\t").append(i).append("\t</DATA>\n");
+        }
+        PrintWriter out = response.getWriter();
+        out.print(body);
+        out.flush();
+        response.finishResponse();
+        return body.length();
+    }
+
+    protected void setUp()
+    {
+        mBytes = new ByteArrayOutputStream();
+        final ServletOutputStream out = new ServletOutputStream()
+        {
+            public void write(int b)
+            {
+                mBytes.write(b);
+            }
+        };
+        final PrintWriter writer = new PrintWriter(out);
+        mHeaders = new HashMap<String, String>();
+        mResponse = (HttpServletResponse) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class[] {HttpServletResponse.class},
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method,
+                                     Object[] args)
+                {
+                    String name = method.getName();
+                    if (name.equals("setHeader"))
+                    {
+                        mHeaders.put((String) args[0], (String) args[1]);
+                    }
+                    else if (name.equals("getOutputStream"))
+                    {
+                        return out;
+                    }
+                    else if (name.equals("getWriter"))
+                    {
+                        return writer;
+                    }
+                    else if (name.equals("getCharacterEncoding"))
+                    {
+                        return "ISO-8859-1";
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private ByteArrayOutputStream mBytes;
+    private Map<String, String> mHeaders;
+    private HttpServletResponse mResponse;
+}
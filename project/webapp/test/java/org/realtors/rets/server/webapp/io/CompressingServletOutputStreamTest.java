@@ -0,0 +1,118 @@
+/* Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.webapp.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+public class CompressingServletOutputStreamTest extends TestCase
+{
+    public void testNegotiateEncoding()
+    {
+        assertNull(CompressingServletOutputStream.negotiateEncoding(null));
+        assertNull(CompressingServletOutputStream.negotiateEncoding(
+            "identity"));
+        assertEquals("gzip", CompressingServletOutputStream.negotiateEncoding(
+            "deflate, gzip"));
+        assertEquals("deflate",
+                     CompressingServletOutputStream.negotiateEncoding(
+                         "gzip;q=0.5, deflate"));
+        assertEquals("gzip", CompressingServletOutputStream.negotiateEncoding(
+            "*"));
+        assertNull(CompressingServletOutputStream.negotiateEncoding(
+            "gzip;q=0"));
+    }
+
+    public void testSmallResponseNotCompressed() throws IOException
+    {
+        CompressingServletOutputStream out =
+            new CompressingServletOutputStream(mOut, mResponse, "gzip", 6,
+                                               1024);
+        out.write("small".getBytes("US-ASCII"));
+        out.finish();
+        assertFalse(out.isCompressing());
+        assertEquals("small", mBytes.toString("US-ASCII"));
+        assertNull(mHeaders.get("Content-Encoding"));
+        assertEquals(5, out.getByteCount());
+    }
+
+    public void testLargeResponseCompressed() throws IOException
+    {
+        CompressingServletOutputStream out =
+            new CompressingServletOutputStream(mOut, mResponse, "gzip", 6,
+                                               16);
+        StringBuffer expected = new StringBuffer();
+        for (int i = 0; i < 1000; i++)
+        {
+            expected.append("<DATA>\t").append(i).append("\t</DATA>\n");
+        }
+        byte[] bytes = expected.toString().getBytes("US-ASCII");
+        out.write(bytes, 0, 10);
+        out.write(bytes, 10, bytes.length - 10);
+        out.finish();
+        out.finish();
+        assertTrue(out.isCompressing());
+        assertEquals("gzip", mHeaders.get("Content-Encoding"));
+        assertEquals(bytes.length, out.getByteCount());
+        assertTrue(mBytes.size() < bytes.length);
+
+        GZIPInputStream in = new GZIPInputStream(
+            new ByteArrayInputStream(mBytes.toByteArray()));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            uncompressed.write(buffer, 0, read);
+        }
+        assertEquals(expected.toString(), uncompressed.toString("US-ASCII"));
+    }
+
+    protected void setUp()
+    {
+        mBytes = new ByteArrayOutputStream();
+        mOut = new ServletOutputStream()
+        {
+            public void write(int b)
+            {
+                mBytes.write(b);
+            }
+        };
+        mHeaders = new HashMap<String, String>();
+        mResponse = (HttpServletResponse) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class[] {HttpServletResponse.class},
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method,
+                                     Object[] args)
+                {
+                    if (method.getName().equals("setHeader"))
+                    {
+                        mHeaders.put((String) args[0], (String) args[1]);
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private ByteArrayOutputStream mBytes;
+    private ServletOutputStream mOut;
+    private Map<String, String> mHeaders;
+    private HttpServletResponse mResponse;
+}
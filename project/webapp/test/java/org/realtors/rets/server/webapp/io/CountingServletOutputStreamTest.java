@@ -0,0 +1,70 @@
+/* Variman RETS Server
+ *
+ * Copyright (c) 2010, The National Association of REALTORS
+ * Distributed under a BSD-style license.  See LICENSE.TXT for details.
+ */
+package org.realtors.rets.server.webapp.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+
+import junit.framework.TestCase;
+
+public class CountingServletOutputStreamTest extends TestCase
+{
+    public void testBulkWrites() throws IOException
+    {
+        byte[] bytes = "0123456789".getBytes("US-ASCII");
+        mCounting.write(bytes);
+        mCounting.write(bytes, 2, 3);
+        mCounting.write('x');
+        assertEquals("0123456789234x", mBytes.toString("US-ASCII"));
+        assertEquals(14, mCounting.getByteCount());
+        assertEquals(2, mBulkWrites);
+    }
+
+    public void testPrint() throws IOException
+    {
+        mCounting.print("abc");
+        mCounting.print(42);
+        mCounting.println('z');
+        mCounting.print((String) null);
+        assertEquals("abc42z\r\nnull", mBytes.toString("US-ASCII"));
+        assertEquals(mBytes.size(), mCounting.getByteCount());
+    }
+
+    public void testAddByteCount() throws IOException
+    {
+        mCounting.write('a');
+        mCounting.addByteCount(20000);
+        mCounting.write('b');
+        assertEquals("ab", mBytes.toString("US-ASCII"));
+        assertEquals(20002, mCounting.getByteCount());
+    }
+
+    protected void setUp()
+    {
+        mBytes = new ByteArrayOutputStream();
+        mBulkWrites = 0;
+        ServletOutputStream out = new ServletOutputStream()
+        {
+            public void write(int b)
+            {
+                mBytes.write(b);
+            }
+
+            public void write(byte[] b, int off, int len)
+            {
+                mBulkWrites++;
+                mBytes.write(b, off, len);
+            }
+        };
+        mCounting = new CountingServletOutputStream(out);
+    }
+
+    private ByteArrayOutputStream mBytes;
+    private int mBulkWrites;
+    private CountingServletOutputStream mCounting;
+}